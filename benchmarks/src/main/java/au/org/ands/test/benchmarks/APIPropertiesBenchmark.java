@@ -0,0 +1,53 @@
+package au.org.ands.test.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.Scanner;
+
+/**
+ * Property lookup and payload loading as every endpoint test does them.
+ */
+@State(Scope.Benchmark)
+public class APIPropertiesBenchmark {
+
+    private Object properties;
+
+    /**
+     * Loads benchmark.properties rather than a config.properties, which may hold real credentials.
+     */
+    @Setup
+    public void setUp() throws Throwable {
+        Properties props = new Properties();
+        InputStream in = APIPropertiesBenchmark.class.getResourceAsStream("/benchmark.properties");
+        try {
+            props.load(in);
+        } finally {
+            in.close();
+        }
+        properties = Suite.NEW_API_PROPERTIES.invokeExact(props);
+    }
+
+    @Benchmark
+    public String getProperty() throws Throwable {
+        return (String) Suite.GET_PROPERTY.invokeExact(properties, "grant_api_url");
+    }
+
+    @Benchmark
+    public String getFileContent() throws Throwable {
+        return (String) Suite.GET_FILE_CONTENT.invokeExact("sample.xml");
+    }
+
+    /**
+     * What getFileContent did before the resource cache, for comparison.
+     */
+    @Benchmark
+    public String getFileContentScanner() {
+        return new Scanner(Suite.API_PROPERTIES.getResourceAsStream("sample.xml"), "UTF-8")
+            .useDelimiter("\\A").next();
+    }
+}
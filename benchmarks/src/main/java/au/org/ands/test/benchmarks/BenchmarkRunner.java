@@ -0,0 +1,34 @@
+package au.org.ands.test.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the benchmarks matching the command line, with the usual JMH options, always
+ * adding the gc profiler so every result reports its allocation rate alongside ops/s.
+ * Without options a short run of everything is made: one fork, 3 warm up and 5
+ * measurement iterations of 1 s.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        Options options = new OptionsBuilder()
+            .parent(commandLine)
+            .addProfiler(GCProfiler.class)
+            .forks(commandLine.getForkCount().orElse(1))
+            .warmupIterations(commandLine.getWarmupIterations().orElse(3))
+            .warmupTime(commandLine.getWarmupTime().orElse(TimeValue.seconds(1)))
+            .measurementIterations(commandLine.getMeasurementIterations().orElse(5))
+            .measurementTime(commandLine.getMeasurementTime().orElse(TimeValue.seconds(1)))
+            .timeUnit(commandLine.getTimeUnit().orElse(TimeUnit.MILLISECONDS))
+            .build();
+        new Runner(options).run();
+    }
+}
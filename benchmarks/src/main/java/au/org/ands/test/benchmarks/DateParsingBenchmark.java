@@ -0,0 +1,49 @@
+package au.org.ands.test.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * The timestamp parsing of testParamAddedSince and testParamModifiedSince, per record.
+ */
+@State(Scope.Thread)
+public class DateParsingBenchmark {
+
+    private static final String TIMESTAMP = "2016-01-18T23:04:10Z";
+
+    private final DateFormat reused = new SimpleDateFormat("Y", Locale.ENGLISH);
+
+    /**
+     * As the tests did it, a new SimpleDateFormat for every response.
+     */
+    @Benchmark
+    public Date simpleDateFormatPerResponse() throws ParseException {
+        return new SimpleDateFormat("Y", Locale.ENGLISH).parse(TIMESTAMP);
+    }
+
+    @Benchmark
+    public Date simpleDateFormatReused() throws ParseException {
+        return reused.parse(TIMESTAMP);
+    }
+
+    @Benchmark
+    public Instant instantParse() {
+        return Instant.parse(TIMESTAMP);
+    }
+
+    /**
+     * As the tests do it now.
+     */
+    @Benchmark
+    public long isoTimestamps() throws Throwable {
+        return (long) Suite.TRY_PARSE_TIMESTAMP.invokeExact((CharSequence) TIMESTAMP);
+    }
+}
@@ -0,0 +1,68 @@
+package au.org.ands.test.benchmarks;
+
+import com.jayway.restassured.path.json.JsonPath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * GPath extraction of data.records.* as ActivitiesAPITest does through response.path,
+ * over an activities response of the given number of records.
+ */
+@State(Scope.Benchmark)
+public class GPathBenchmark {
+
+    @Param({"10", "100"})
+    public int rows;
+
+    private String json;
+    private JsonPath parsed;
+
+    @Setup
+    public void setUp() {
+        StringBuilder records = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                records.append(',');
+            }
+            records.append("{\"id\":\"").append(408717 + i).append("\",\"type\":\"grant\",\"status\":\"active\",")
+                .append("\"purl\":\"http://purl.org/au-research/grants/arc/LP07769").append(i).append("\",")
+                .append("\"identifiers\":[\"http://purl.org/au-research/grants/arc/LP07769").append(i)
+                .append("\",\"arc/LP07769").append(i).append("\"],")
+                .append("\"titles\":[\"Clustering of cancer cases in rural communities ").append(i).append("\"],")
+                .append("\"subjects\":[\"Intelligent agents\",\"Artificial Intelligence and Image Processing\"],")
+                .append("\"funder\":\"Australian Research Council\",\"fundingScheme\":\"Linkage Projects\",")
+                .append("\"researchers\":[{\"name\":\"Prof Jacob George\",\"role\":\"Chief Investigator\"}],")
+                .append("\"dateTimeCreated\":\"2015-11-30T02:11:47Z\",\"dateTimeModified\":\"2016-01-18T23:04:10Z\",")
+                .append("\"description\":null}");
+        }
+        json = "{\"status\":\"OK\",\"data\":{\"offset\":0,\"records\":[" + records
+            + "],\"numFound\":" + rows + "}}";
+        parsed = new JsonPath(json);
+    }
+
+    /**
+     * response.path parses the body on every call.
+     */
+    @Benchmark
+    public List<String> parseAndExtractTitles() {
+        return new JsonPath(json).getList("data.records.titles");
+    }
+
+    @Benchmark
+    public List<String> parseAndExtractDateTimeCreated() {
+        return new JsonPath(json).getList("data.records.dateTimeCreated");
+    }
+
+    /**
+     * The GPath evaluation alone, over an already parsed body.
+     */
+    @Benchmark
+    public List<String> extractDateTimeCreated() {
+        return parsed.getList("data.records.dateTimeCreated");
+    }
+}
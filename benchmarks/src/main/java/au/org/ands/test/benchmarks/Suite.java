@@ -0,0 +1,46 @@
+package au.org.ands.test.benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Properties;
+
+/**
+ * Handles on the suite's classes. They live in the default package, which Java code in a
+ * package cannot name and JMH will not generate benchmarks for, so they are reached through
+ * constant method handles that the JIT inlines like direct calls.
+ */
+final class Suite {
+
+    /** new APIProperties(Properties), as Object */
+    static final MethodHandle NEW_API_PROPERTIES;
+    /** APIProperties#getProperty(String) taking the instance as Object */
+    static final MethodHandle GET_PROPERTY;
+    /** APIProperties.getFileContent(String) */
+    static final MethodHandle GET_FILE_CONTENT;
+    /** IsoTimestamps.tryParse(CharSequence) */
+    static final MethodHandle TRY_PARSE_TIMESTAMP;
+    /** the class the suite loads its resources relative to */
+    static final Class<?> API_PROPERTIES;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            API_PROPERTIES = Class.forName("APIProperties");
+            NEW_API_PROPERTIES = lookup.findConstructor(API_PROPERTIES, MethodType.methodType(void.class, Properties.class))
+                .asType(MethodType.methodType(Object.class, Properties.class));
+            GET_PROPERTY = lookup.findVirtual(API_PROPERTIES, "getProperty",
+                    MethodType.methodType(String.class, String.class))
+                .asType(MethodType.methodType(String.class, Object.class, String.class));
+            GET_FILE_CONTENT = lookup.findStatic(API_PROPERTIES, "getFileContent",
+                MethodType.methodType(String.class, String.class));
+            TRY_PARSE_TIMESTAMP = lookup.findStatic(Class.forName("IsoTimestamps"), "tryParse",
+                MethodType.methodType(long.class, CharSequence.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Suite() {
+    }
+}
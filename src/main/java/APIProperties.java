@@ -1,7 +1,8 @@
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
-import java.util.Scanner;
 
 public class APIProperties {
 
@@ -13,8 +14,18 @@ public class APIProperties {
         prop.load(inputStream);
     }
 
+    /**
+     * Wraps properties loaded elsewhere, e.g. by ApiConfig.
+     */
+    public APIProperties(Properties prop) {
+        this.prop = prop;
+    }
+
+    /**
+     * The content of a class path resource, read once and then served from {@link ResourceCache}.
+     */
     public static String getFileContent(String fileName) {
-        return new Scanner(APIProperties.class.getResourceAsStream(fileName), "UTF-8").useDelimiter("\\A").next();
+        return ResourceCache.string(fileName);
     }
 
     public Properties getProp(){
@@ -24,4 +35,20 @@ public class APIProperties {
     public String getProperty(String key) {
         return prop.getProperty(key);
     }
-}
\ No newline at end of file
+
+    /**
+     * The latency_budget.* entries keyed by endpoint, blank entries are ignored.
+     */
+    public Map<String, LatencyBudget> getLatencyBudgets() {
+        int defaultSamples = Integer.parseInt(prop.getProperty("latency_budget_samples", "20").trim());
+        Map<String, LatencyBudget> budgets = new HashMap<String, LatencyBudget>();
+        for (String key : prop.stringPropertyNames()) {
+            String value = prop.getProperty(key);
+            if (key.startsWith(LatencyBudget.PREFIX) && !value.trim().isEmpty()) {
+                String endpoint = key.substring(LatencyBudget.PREFIX.length());
+                budgets.put(endpoint, LatencyBudget.parse(endpoint, value, defaultSamples));
+            }
+        }
+        return budgets;
+    }
+}
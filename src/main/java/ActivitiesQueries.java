@@ -0,0 +1,94 @@
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The query parameter matrix issued by ActivitiesAPITest, keyed by query shape,
+ * so that load and profiling modes can replay the same requests.
+ */
+public class ActivitiesQueries {
+
+    private static final Map<String, Map<String, String>> QUERIES = new LinkedHashMap<String, Map<String, String>>();
+
+    static {
+        add("default");
+        add("q", "q", "fish");
+        add("type", "type", "grant");
+        add("status", "status", "active");
+        add("purl", "purl", "http://purl.org/au-research/grants/arc/LP0776938");
+        add("purl-identifier", "purl", "LP0776938");
+        add("title", "title", "cancer clustering", "flags", "titles", "rows", "15");
+        add("subject", "subject", "intelligent agents");
+        add("description", "description", "\"unique biology\"");
+        add("institution", "institution", "\"University of Sydney\"");
+        add("funder", "funder", "\"Australian Research Council\"");
+        add("principalInvestigator", "principalInvestigator", "Jacob George");
+        add("researcher", "researcher", "Jacob George");
+        add("fundingScheme", "fundingScheme", "\"NHMRC Project Grants\"");
+        add("addedSince", "addedSince", "2015-11-28T13:15:30Z");
+        add("modifiedSince", "modifiedSince", "2015-11-28T13:15:30Z");
+        add("combination",
+            "description", "unique",
+            "type", "grant",
+            "title", "caves climate",
+            "subject", "Earth Sciences",
+            "funder", "Australian Research Council",
+            "flags", "titles");
+        add("identifier", "identifier", "chorizo risotto");
+        add("exact-q", "q", "\"chorizo risotto\"", "flags", "titles");
+        add("purl-in-identifier", "identifier", "http://AUT.org/au-research/grants/arc/LP100100422AUTx.Grant");
+        add("offset", "offset", "5");
+    }
+
+    private static void add(String shape, String... keyValues) {
+        Map<String, String> params = new LinkedHashMap<String, String>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            params.put(keyValues[i], keyValues[i + 1]);
+        }
+        QUERIES.put(shape, Collections.unmodifiableMap(params));
+    }
+
+    public static Map<String, Map<String, String>> all() {
+        return Collections.unmodifiableMap(QUERIES);
+    }
+
+    /**
+     * @param shapes comma separated list of query shapes, blank for all of them
+     */
+    public static Map<String, Map<String, String>> select(String shapes) {
+        if (shapes == null || shapes.trim().isEmpty()) {
+            return all();
+        }
+        Map<String, Map<String, String>> selected = new LinkedHashMap<String, Map<String, String>>();
+        for (String shape : shapes.split(",")) {
+            Map<String, String> params = QUERIES.get(shape.trim());
+            if (params == null) {
+                throw new IllegalArgumentException("Unknown activities query shape: " + shape.trim());
+            }
+            selected.put(shape.trim(), params);
+        }
+        return selected;
+    }
+
+    /**
+     * @return the parameters url encoded as a query string, without the leading '?'
+     */
+    public static String toQueryString(Map<String, String> params) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            for (Map.Entry<String, String> param : params.entrySet()) {
+                if (sb.length() > 0) {
+                    sb.append('&');
+                }
+                sb.append(URLEncoder.encode(param.getKey(), "UTF-8"))
+                    .append('=')
+                    .append(URLEncoder.encode(param.getValue(), "UTF-8"));
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,104 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One record of an activities response, holding the leaf values of each top level field.
+ * Scalars hold a single value, arrays and nested objects hold every string or number
+ * found beneath them in document order. Instances are reused by ActivityRecordReader,
+ * so only the record currently being read is ever in memory.
+ */
+public class ActivityRecord {
+
+    /**
+     * Returned by getTimestamp when the field is absent or not an ISO-8601 timestamp.
+     */
+    public static final long MISSING = IsoTimestamps.INVALID;
+
+    private final Map<String, List<String>> fields = new HashMap<String, List<String>>();
+    private final Map<String, long[]> timestamps = new HashMap<String, long[]>();
+    private long index = -1;
+
+    void clear(long index) {
+        this.index = index;
+        for (List<String> values : fields.values()) {
+            values.clear();
+        }
+        for (long[] timestamp : timestamps.values()) {
+            timestamp[0] = MISSING;
+        }
+    }
+
+    void add(String field, String value) {
+        List<String> values = fields.get(field);
+        if (values == null) {
+            values = new ArrayList<String>();
+            fields.put(field, values);
+        }
+        values.add(value);
+    }
+
+    /**
+     * Records the field's value already parsed to epoch milliseconds, so that checks
+     * need not parse it again.
+     */
+    void setTimestamp(String field, long millis) {
+        long[] timestamp = timestamps.get(field);
+        if (timestamp == null) {
+            timestamp = new long[1];
+            timestamps.put(field, timestamp);
+        }
+        timestamp[0] = millis;
+    }
+
+    /**
+     * @return position of this record in data.records
+     */
+    public long getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the first value of the field, or null if the record does not have it
+     */
+    public String get(String field) {
+        List<String> values = fields.get(field);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    public List<String> getAll(String field) {
+        List<String> values = fields.get(field);
+        return values == null ? Collections.<String>emptyList() : Collections.unmodifiableList(values);
+    }
+
+    /**
+     * @return the field's first value as epoch milliseconds, or MISSING
+     */
+    public long getTimestamp(String field) {
+        long[] timestamp = timestamps.get(field);
+        if (timestamp != null && timestamp[0] != MISSING) {
+            return timestamp[0];
+        }
+        return IsoTimestamps.tryParse(get(field));
+    }
+
+    public String getId() {
+        return get("id");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (Map.Entry<String, List<String>> field : fields.entrySet()) {
+            if (!field.getValue().isEmpty()) {
+                if (sb.length() > 1) {
+                    sb.append(", ");
+                }
+                sb.append(field.getKey()).append('=').append(field.getValue());
+            }
+        }
+        return sb.append('}').toString();
+    }
+}
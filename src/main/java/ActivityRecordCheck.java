@@ -0,0 +1,94 @@
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A per record check applied while streaming an activities response, the streaming
+ * counterpart of the everyItem/containsString matchers in ActivitiesAPITest.
+ */
+public abstract class ActivityRecordCheck {
+
+    private final String description;
+
+    protected ActivityRecordCheck(String description) {
+        this.description = description;
+    }
+
+    public abstract boolean matches(ActivityRecord record);
+
+    @Override
+    public String toString() {
+        return description;
+    }
+
+    /**
+     * The field's first value equals the expected value, e.g. type is grant.
+     */
+    public static ActivityRecordCheck fieldEquals(final String field, final String expected) {
+        return new ActivityRecordCheck(field + " equals \"" + expected + "\"") {
+            public boolean matches(ActivityRecord record) {
+                return expected.equals(record.get(field));
+            }
+        };
+    }
+
+    /**
+     * Every value of the field contains the given string, e.g. each of the
+     * identifiers contains LP0776938.
+     */
+    public static ActivityRecordCheck everyValueContains(final String field, final String needle) {
+        return new ActivityRecordCheck("every " + field + " contains \"" + needle + "\"") {
+            public boolean matches(ActivityRecord record) {
+                for (String value : record.getAll(field)) {
+                    if (!value.contains(needle)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Any value of the field contains any of the given strings, ignoring case,
+     * e.g. subjects contain "intel" or "agent".
+     */
+    public static ActivityRecordCheck fieldContainsAny(final String field, final String... needles) {
+        final String[] lowerNeedles = new String[needles.length];
+        StringBuilder description = new StringBuilder(field).append(" contains");
+        for (int i = 0; i < needles.length; i++) {
+            lowerNeedles[i] = needles[i].toLowerCase(Locale.ROOT);
+            description.append(i == 0 ? " \"" : " or \"").append(needles[i]).append('"');
+        }
+        return new ActivityRecordCheck(description.toString()) {
+            public boolean matches(ActivityRecord record) {
+                List<String> values = record.getAll(field);
+                for (String value : values) {
+                    String lower = value.toLowerCase(Locale.ROOT);
+                    for (String needle : lowerNeedles) {
+                        if (lower.contains(needle)) {
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * The field is a timestamp no earlier than since, e.g. dateTimeCreated is not before
+     * the addedSince parameter. Both are compared as instants, so differing zones or
+     * precisions do not matter.
+     *
+     * @throws IllegalArgumentException if since is not an ISO-8601 timestamp
+     */
+    public static ActivityRecordCheck timestampNotBefore(final String field, String since) {
+        final long sinceMillis = IsoTimestamps.parse(since);
+        return new ActivityRecordCheck(field + " not before " + since) {
+            public boolean matches(ActivityRecord record) {
+                long millis = record.getTimestamp(field);
+                return millis != ActivityRecord.MISSING && millis >= sinceMillis;
+            }
+        };
+    }
+}
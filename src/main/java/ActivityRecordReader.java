@@ -0,0 +1,293 @@
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Pull parser over an activities response that hands out data.records one at a time,
+ * so arbitrarily large pages are read in constant memory. status and data.numFound
+ * are picked up wherever they appear in the document.
+ */
+public class ActivityRecordReader implements Closeable {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    /**
+     * Fields parsed to epoch milliseconds as they are read, straight from the parser's buffer.
+     */
+    static final Set<String> TIMESTAMP_FIELDS = new HashSet<String>(Arrays.asList("dateTimeCreated", "dateTimeModified"));
+
+    private final CountingInputStream in;
+    private final JsonParser parser;
+    private final long started = System.nanoTime();
+
+    private String status;
+    private long numFound = -1;
+    private long offset = -1;
+    private long records;
+    private boolean inRecords;
+    private boolean finished;
+
+    public ActivityRecordReader(InputStream in) throws IOException {
+        this.in = new CountingInputStream(in);
+        this.parser = FACTORY.createParser(this.in);
+    }
+
+    /**
+     * Reads the next record into the given instance.
+     *
+     * @return false once data.records is exhausted
+     */
+    public boolean next(ActivityRecord record) throws IOException {
+        if (finished) {
+            return false;
+        }
+        if (!inRecords && !advanceToRecords()) {
+            finished = true;
+            return false;
+        }
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            inRecords = false;
+            finished = true;
+            // data.numFound may follow the records
+            advanceToRecords();
+            return false;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected a record object in data.records but found " + token);
+        }
+        record.clear(records);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            readValues(field, record);
+        }
+        records++;
+        return true;
+    }
+
+    private void readValues(String field, ActivityRecord record) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_ARRAY || token == JsonToken.START_OBJECT) {
+            int depth = 1;
+            while (depth > 0) {
+                token = parser.nextToken();
+                if (token == JsonToken.START_ARRAY || token == JsonToken.START_OBJECT) {
+                    depth++;
+                } else if (token == JsonToken.END_ARRAY || token == JsonToken.END_OBJECT) {
+                    depth--;
+                } else if (token != null && token.isScalarValue() && token != JsonToken.VALUE_NULL) {
+                    record.add(field, parser.getText());
+                } else if (token == null) {
+                    throw new JsonParseException(parser, "Unexpected end of input in field " + field);
+                }
+            }
+        } else if (token != JsonToken.VALUE_NULL) {
+            if (token == JsonToken.VALUE_STRING && TIMESTAMP_FIELDS.contains(field)) {
+                record.setTimestamp(field, IsoTimestamps.tryParse(parser.getTextCharacters(),
+                    parser.getTextOffset(), parser.getTextLength()));
+            }
+            record.add(field, parser.getText());
+        }
+    }
+
+    /**
+     * Moves to the start of data.records, picking up status, data.numFound and
+     * data.offset on the way and skipping everything else.
+     *
+     * @return false if the document ended first
+     */
+    private boolean advanceToRecords() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null) {
+            if (token != JsonToken.FIELD_NAME) {
+                continue;
+            }
+            String name = parser.getCurrentName();
+            JsonStreamContext object = parser.getParsingContext();
+            boolean inRoot = object.getParent() != null && object.getParent().inRoot();
+            boolean inData = !inRoot && object.getParent() != null && object.getParent().getParent() != null
+                && object.getParent().getParent().inRoot() && "data".equals(object.getParent().getCurrentName());
+
+            token = parser.nextToken();
+            if (inRoot && "data".equals(name) && token == JsonToken.START_OBJECT) {
+                continue;
+            }
+            if (inRoot && "status".equals(name)) {
+                status = parser.getText();
+            } else if (inData && "numFound".equals(name) && token.isNumeric()) {
+                numFound = parser.getLongValue();
+            } else if (inData && "offset".equals(name) && token.isNumeric()) {
+                offset = parser.getLongValue();
+            } else if (inData && "records".equals(name) && token == JsonToken.START_ARRAY) {
+                inRecords = true;
+                return true;
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return false;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * @return data.numFound, or -1 if it has not been read yet
+     */
+    public long getNumFound() {
+        return numFound;
+    }
+
+    /**
+     * @return data.offset, or -1 if it has not been read yet
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public long getBytes() {
+        return in.count;
+    }
+
+    public long getElapsedNanos() {
+        return System.nanoTime() - started;
+    }
+
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    /**
+     * Streams every record of the response through the checks.
+     */
+    public static Result validate(InputStream in, ActivityRecordCheck... checks) throws IOException {
+        ActivityRecordReader reader = new ActivityRecordReader(in);
+        Result result = new Result();
+        try {
+            ActivityRecord record = new ActivityRecord();
+            while (reader.next(record)) {
+                for (ActivityRecordCheck check : checks) {
+                    if (!check.matches(record)) {
+                        result.failures++;
+                        if (result.messages.size() < Result.MAX_MESSAGES) {
+                            result.messages.add("record " + record.getIndex() + " (" + record.getId() + ") failed: "
+                                + check + ", was " + record);
+                        }
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        result.status = reader.getStatus();
+        result.numFound = reader.getNumFound();
+        result.records = reader.getRecords();
+        result.bytes = reader.getBytes();
+        result.elapsedNanos = reader.getElapsedNanos();
+        return result;
+    }
+
+    public static class Result {
+
+        static final int MAX_MESSAGES = 10;
+
+        String status;
+        long numFound;
+        long records;
+        long failures;
+        long bytes;
+        long elapsedNanos;
+        final List<String> messages = new ArrayList<String>();
+
+        public String getStatus() {
+            return status;
+        }
+
+        public long getNumFound() {
+            return numFound;
+        }
+
+        public long getRecords() {
+            return records;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return descriptions of the first few failed checks
+         */
+        public List<String> getMessages() {
+            return messages;
+        }
+
+        public double getRecordsPerSecond() {
+            return elapsedNanos == 0 ? 0 : records / (elapsedNanos / 1e9);
+        }
+
+        public double getBytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : bytes / (elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                "%d records of %d found, %d failed checks, %d bytes in %.1f ms (%.0f records/s, %.1f MB/s)",
+                records, numFound, failures, bytes, elapsedNanos / 1e6,
+                getRecordsPerSecond(), getBytesPerSecond() / (1024 * 1024));
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
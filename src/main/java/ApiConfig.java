@@ -0,0 +1,370 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An immutable snapshot of config.properties with the endpoints, credentials, load settings
+ * and latency budgets resolved once, published through a volatile reference so that reading
+ * it on every request costs a field read rather than a Hashtable lock.
+ *
+ * The snapshot is config.properties from the class path, if there is one, then config_file
+ * when set, then any {@link #override(String, String)}s, such as the mock service and fixture server installed
+ * at run time. With config_reload=true the file is watched and a new snapshot is published
+ * whenever it changes, so long load and soak runs can be retargeted or throttled while they
+ * run; a file that fails to load leaves the previous snapshot in place.
+ */
+public final class ApiConfig {
+
+    /**
+     * Told about every snapshot published after the first.
+     */
+    public interface Listener {
+        void reloaded(ApiConfig previous, ApiConfig current);
+    }
+
+    private static volatile ApiConfig current;
+    private static final Map<String, String> OVERRIDES = new ConcurrentHashMap<String, String>();
+    private static final List<Listener> LISTENERS = new CopyOnWriteArrayList<Listener>();
+    private static WatchService watcher;
+
+    private final Map<String, String> values;
+    private final long version;
+    private final String baseUrl;
+    private final String serviceUrl;
+    private final String grantApiUrl;
+    private final String appId;
+    private final String authHeader;
+    private final String testUrl1;
+    private final String testUrl2;
+    private final String testDoi1;
+    private final String testDoi2;
+    private final String testDoi1Fail;
+    private final int loadWorkers;
+    private final double loadRate;
+    private final long loadDuration;
+    private final Map<String, LatencyBudget> latencyBudgets;
+
+    private ApiConfig(Properties props, long version) {
+        Map<String, String> values = new HashMap<String, String>();
+        for (String key : props.stringPropertyNames()) {
+            values.put(key, props.getProperty(key));
+        }
+        this.values = Collections.unmodifiableMap(values);
+        this.version = version;
+        baseUrl = url("base_url");
+        serviceUrl = url("service_url");
+        grantApiUrl = url("grant_api_url");
+        appId = get("app_id");
+        authHeader = get("auth_header");
+        testUrl1 = get("test_url1");
+        testUrl2 = get("test_url2");
+        testDoi1 = get("test_doi1");
+        testDoi2 = get("test_doi2");
+        testDoi1Fail = get("test_doi1_fail");
+        loadWorkers = getInt("load_workers", 8);
+        loadRate = getDouble("load_rate", 0);
+        loadDuration = getLong("load_duration", 0);
+        latencyBudgets = Collections.unmodifiableMap(new APIProperties(props).getLatencyBudgets());
+    }
+
+    /**
+     * A snapshot of the given properties alone, without config_file or overrides.
+     */
+    public static ApiConfig from(Properties props) {
+        return new ApiConfig(props, 0);
+    }
+
+    /**
+     * @return the published snapshot, loading it on first use
+     */
+    public static ApiConfig current() {
+        ApiConfig config = current;
+        if (config == null) {
+            synchronized (ApiConfig.class) {
+                if (current == null) {
+                    try {
+                        reload();
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Unable to load config.properties", e);
+                    }
+                }
+                config = current;
+            }
+        }
+        return config;
+    }
+
+    /**
+     * Loads and publishes a new snapshot, starting to watch the file when config_reload is set.
+     */
+    public static synchronized ApiConfig reload() throws IOException {
+        Properties props = new Properties();
+        if (ApiConfig.class.getClassLoader().getResource("config.properties") != null) {
+            props = new APIProperties().getProp();
+        }
+        // config_file may itself be overridden, e.g. by a test
+        props.putAll(OVERRIDES);
+        File file = file(props);
+        if (file != null && props.getProperty("config_file", "").trim().length() > 0) {
+            InputStream in = new FileInputStream(file);
+            try {
+                props.load(in);
+            } finally {
+                in.close();
+            }
+        }
+        props.putAll(OVERRIDES);
+        ApiConfig previous = current;
+        ApiConfig config = new ApiConfig(props, previous == null ? 1 : previous.version + 1);
+        current = config;
+        if (previous != null) {
+            for (Listener listener : LISTENERS) {
+                listener.reloaded(previous, config);
+            }
+        }
+        if (watcher == null && config.getBoolean("config_reload", false) && file != null) {
+            watch(file);
+        }
+        return config;
+    }
+
+    /**
+     * Replaces a setting in this and every later snapshot, whatever the file says.
+     */
+    public static synchronized void override(String key, String value) {
+        OVERRIDES.put(key, value);
+        try {
+            reload();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to reload config.properties", e);
+        }
+    }
+
+    /**
+     * Goes back to the file's value for a setting replaced by {@link #override(String, String)}.
+     */
+    public static synchronized void clearOverride(String key) {
+        if (OVERRIDES.remove(key) != null) {
+            try {
+                reload();
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to reload config.properties", e);
+            }
+        }
+    }
+
+    public static void addListener(Listener listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static void removeListener(Listener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    /**
+     * config_file, or config.properties itself when it is a file on the class path.
+     */
+    private static File file(Properties props) {
+        String configFile = props.getProperty("config_file", "").trim();
+        if (!configFile.isEmpty()) {
+            return new File(configFile);
+        }
+        URL resource = ApiConfig.class.getClassLoader().getResource("config.properties");
+        if (resource == null || !"file".equals(resource.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(resource.toURI());
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reloads whenever the file is written, from a daemon thread.
+     */
+    static synchronized void watch(File file) throws IOException {
+        final Path path = file.getAbsoluteFile().toPath();
+        final WatchService service = FileSystems.getDefault().newWatchService();
+        path.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        watcher = service;
+        Thread thread = new Thread("ApiConfig watcher " + path) {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        WatchKey key = service.take();
+                        boolean changed = false;
+                        for (WatchEvent<?> event : key.pollEvents()) {
+                            changed |= path.getFileName().equals(event.context());
+                        }
+                        key.reset();
+                        if (changed) {
+                            try {
+                                ApiConfig config = reload();
+                                System.out.println("Reloaded " + path + ", configuration version " + config.version);
+                            } catch (IOException | RuntimeException e) {
+                                System.err.println("Keeping the previous configuration, unable to reload "
+                                    + path + ": " + e);
+                            }
+                        }
+                    }
+                } catch (InterruptedException | ClosedWatchServiceException e) {
+                    // stopped
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching the file, if it is watched.
+     */
+    public static synchronized void stopWatching() throws IOException {
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+    }
+
+    private String url(String key) {
+        String value = get(key);
+        if (value == null || value.trim().isEmpty()) {
+            return value;
+        }
+        try {
+            return new URI(value.trim()).toString();
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(key + " is not a valid URL: " + value, e);
+        }
+    }
+
+    /**
+     * @return increases by one with every snapshot published
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public String get(String key) {
+        return values.get(key);
+    }
+
+    public String get(String key, String defaultValue) {
+        String value = values.get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = values.get(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = values.get(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        String value = values.get(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : Double.parseDouble(value.trim());
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = values.get(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * @return a copy of every setting, for the code that still takes Properties
+     */
+    public Properties toProperties() {
+        Properties props = new Properties();
+        props.putAll(values);
+        return props;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public String getServiceUrl() {
+        return serviceUrl;
+    }
+
+    public String getGrantApiUrl() {
+        return grantApiUrl;
+    }
+
+    public String getAppId() {
+        return appId;
+    }
+
+    public String getAuthHeader() {
+        return authHeader;
+    }
+
+    public String getTestUrl1() {
+        return testUrl1;
+    }
+
+    public String getTestUrl2() {
+        return testUrl2;
+    }
+
+    public String getTestDoi1() {
+        return testDoi1;
+    }
+
+    public String getTestDoi2() {
+        return testDoi2;
+    }
+
+    public String getTestDoi1Fail() {
+        return testDoi1Fail;
+    }
+
+    public int getLoadWorkers() {
+        return loadWorkers;
+    }
+
+    /**
+     * @return the load mode's target request rate, 0 for unthrottled
+     */
+    public double getLoadRate() {
+        return loadRate;
+    }
+
+    /**
+     * @return the load mode's duration in seconds, 0 when it is disabled
+     */
+    public long getLoadDuration() {
+        return loadDuration;
+    }
+
+    /**
+     * @return the latency_budget.* entries keyed by endpoint
+     */
+    public Map<String, LatencyBudget> getLatencyBudgets() {
+        return latencyBudgets;
+    }
+}
@@ -0,0 +1,326 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open model load: requests are started on a fixed arrival schedule whether or not earlier
+ * ones have finished, so a slow server cannot slow the load down and hide its own latency
+ * the way the closed loop of {@link LoadDriver} and the tests does. The schedule is a list
+ * of phases, each ramping linearly from one rate to another; steady and spike phases ramp
+ * between equal rates. Arrivals are spaced exactly for the rate at each instant and waited
+ * for with System.nanoTime, parking until shortly before and spinning the rest.
+ *
+ * Response time is measured from the intended send time, so it includes the time a request
+ * waited for one of the max in flight workers; service time is measured from when it was
+ * actually sent. Where the two part, requests were queueing. Requests are recorded against
+ * the phase they were scheduled in, even when they finish in a later one.
+ */
+public class ArrivalScheduler {
+
+    private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /**
+     * A stretch of the schedule with the rate going linearly from fromRate to toRate.
+     */
+    public static class Phase {
+        private final String name;
+        private final long durationNanos;
+        private final double fromRate;
+        private final double toRate;
+
+        /**
+         * @param fromRate requests per second at the start of the phase
+         * @param toRate   requests per second at its end
+         */
+        public Phase(String name, long durationMillis, double fromRate, double toRate) {
+            if (durationMillis <= 0 || fromRate < 0 || toRate < 0) {
+                throw new IllegalArgumentException("Invalid phase " + name + ": " + durationMillis + "ms at "
+                    + fromRate + "-" + toRate + " req/s");
+            }
+            this.name = name;
+            this.durationNanos = TimeUnit.MILLISECONDS.toNanos(durationMillis);
+            this.fromRate = fromRate;
+            this.toRate = toRate;
+        }
+
+        public static Phase ramp(long durationMillis, double fromRate, double toRate) {
+            return new Phase("ramp", durationMillis, fromRate, toRate);
+        }
+
+        public static Phase steady(long durationMillis, double rate) {
+            return new Phase("steady", durationMillis, rate, rate);
+        }
+
+        public static Phase spike(long durationMillis, double rate) {
+            return new Phase("spike", durationMillis, rate, rate);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        public double getFromRate() {
+            return fromRate;
+        }
+
+        public double getToRate() {
+            return toRate;
+        }
+
+        /**
+         * When the request numbered from 0 is due, solving for the time at which the
+         * integral of the rate reaches it.
+         *
+         * @return nanoseconds from the start of the phase, -1 if it is not reached within the phase
+         */
+        long offsetNanos(long arrival) {
+            double seconds = durationNanos / 1e9;
+            double slope = (toRate - fromRate) / seconds;
+            double offset;
+            if (slope == 0) {
+                offset = fromRate == 0 ? Double.POSITIVE_INFINITY : arrival / fromRate;
+            } else {
+                double discriminant = fromRate * fromRate + 2 * slope * arrival;
+                offset = discriminant < 0 ? Double.POSITIVE_INFINITY
+                    : (Math.sqrt(discriminant) - fromRate) / slope;
+            }
+            return offset < seconds ? (long) (offset * 1e9) : -1;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s %.0fs at %s req/s", name, durationNanos / 1e9,
+                fromRate == toRate ? format(fromRate) : format(fromRate) + "-" + format(toRate));
+        }
+
+        private static String format(double rate) {
+            return rate == Math.rint(rate) ? String.valueOf((long) rate) : String.valueOf(rate);
+        }
+    }
+
+    private final List<Phase> phases;
+    private final int maxInFlight;
+
+    /**
+     * @param maxInFlight workers, and so the most requests outstanding; later arrivals wait
+     *                    for one and the wait counts towards their response time
+     */
+    public ArrivalScheduler(List<Phase> phases, int maxInFlight) {
+        if (phases.isEmpty() || maxInFlight < 1) {
+            throw new IllegalArgumentException("At least one phase and one request in flight are needed");
+        }
+        this.phases = new ArrayList<Phase>(phases);
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Reads arrival_phases and arrival_max_in_flight.
+     */
+    public static ArrivalScheduler fromProperties(Properties props) {
+        return new ArrivalScheduler(parse(props.getProperty("arrival_phases", "")),
+            Integer.parseInt(props.getProperty("arrival_max_in_flight", "64").trim()));
+    }
+
+    /**
+     * @param phases comma separated phases, each ramp:&lt;duration&gt;:&lt;from&gt;-&lt;to&gt;,
+     *               steady:&lt;duration&gt;:&lt;rate&gt; or spike:&lt;duration&gt;:&lt;rate&gt;, durations
+     *               in s or ms and rates in requests per second, e.g. ramp:30s:0-20,steady:120s:20,spike:10s:100
+     */
+    public static List<Phase> parse(String phases) {
+        List<Phase> parsed = new ArrayList<Phase>();
+        for (String phase : phases.trim().split("\\s*,\\s*")) {
+            if (phase.isEmpty()) {
+                continue;
+            }
+            String[] parts = phase.split(":");
+            try {
+                if (parts.length != 3) {
+                    throw new IllegalArgumentException();
+                }
+                long millis = millis(parts[1]);
+                if (parts[0].equals("ramp")) {
+                    String[] rates = parts[2].split("-");
+                    if (rates.length != 2) {
+                        throw new IllegalArgumentException();
+                    }
+                    parsed.add(Phase.ramp(millis, Double.parseDouble(rates[0]), Double.parseDouble(rates[1])));
+                } else if (parts[0].equals("steady")) {
+                    parsed.add(Phase.steady(millis, Double.parseDouble(parts[2])));
+                } else if (parts[0].equals("spike")) {
+                    parsed.add(Phase.spike(millis, Double.parseDouble(parts[2])));
+                } else {
+                    throw new IllegalArgumentException();
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid arrival phase " + phase
+                    + ", expected ramp:<duration>:<from>-<to>, steady:<duration>:<rate> or spike:<duration>:<rate>", e);
+            }
+        }
+        return parsed;
+    }
+
+    private static long millis(String duration) {
+        if (duration.endsWith("ms")) {
+            return Long.parseLong(duration.substring(0, duration.length() - 2));
+        }
+        if (duration.endsWith("s")) {
+            duration = duration.substring(0, duration.length() - 1);
+        }
+        return TimeUnit.SECONDS.toMillis(Long.parseLong(duration));
+    }
+
+    /**
+     * Runs the whole schedule, issuing the shapes round robin, and waits for the last request.
+     */
+    public Result run(Map<String, LoadDriver.Request> shapes) throws InterruptedException {
+        final List<String> names = new ArrayList<String>(shapes.keySet());
+        final List<LoadDriver.Request> requests = new ArrayList<LoadDriver.Request>(shapes.values());
+        final Result result = new Result(phases, names);
+        final AtomicLong inFlight = new AtomicLong();
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxInFlight, maxInFlight, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<Runnable>());
+        pool.prestartAllCoreThreads();
+        long sequence = 0;
+        long phaseStart = System.nanoTime();
+        try {
+            for (int p = 0; p < phases.size(); p++) {
+                Phase phase = phases.get(p);
+                final LoadReport responseTimes = result.responseTimes.get(p);
+                final LoadReport serviceTimes = result.serviceTimes.get(p);
+                responseTimes.start();
+                serviceTimes.start();
+                long offset;
+                for (long arrival = 0; (offset = phase.offsetNanos(arrival)) >= 0; arrival++) {
+                    final long intended = phaseStart + offset;
+                    waitUntil(intended);
+                    result.recordDispatch(System.nanoTime() - intended, inFlight.incrementAndGet());
+                    final int index = (int) (sequence++ % names.size());
+                    pool.execute(new Runnable() {
+                        public void run() {
+                            boolean success = true;
+                            long sent = System.nanoTime();
+                            try {
+                                requests.get(index).execute();
+                            } catch (Throwable e) {
+                                success = false;
+                            }
+                            long done = System.nanoTime();
+                            inFlight.decrementAndGet();
+                            responseTimes.record(names.get(index), done - intended, success);
+                            serviceTimes.record(names.get(index), done - sent, success);
+                        }
+                    });
+                }
+                phaseStart += phase.getDurationNanos();
+                waitUntil(phaseStart);
+                responseTimes.stop();
+                serviceTimes.stop();
+            }
+        } finally {
+            pool.shutdown();
+            if (!pool.awaitTermination(5, TimeUnit.MINUTES)) {
+                pool.shutdownNow();
+            }
+        }
+        return result;
+    }
+
+    private static void waitUntil(long deadline) {
+        long wait;
+        while ((wait = deadline - System.nanoTime()) > SPIN_NANOS) {
+            LockSupport.parkNanos(wait - SPIN_NANOS);
+        }
+        while (System.nanoTime() < deadline) {
+            // spin for the last stretch, parking is not that precise
+        }
+    }
+
+    /**
+     * Response and service times of every phase.
+     */
+    public static class Result {
+        private final List<Phase> phases;
+        private final List<LoadReport> responseTimes = new ArrayList<LoadReport>();
+        private final List<LoadReport> serviceTimes = new ArrayList<LoadReport>();
+        private long arrivals;
+        private long maxDispatchLagNanos;
+        private long maxInFlight;
+
+        Result(List<Phase> phases, List<String> names) {
+            this.phases = Collections.unmodifiableList(phases);
+            for (int i = 0; i < phases.size(); i++) {
+                responseTimes.add(new LoadReport(names));
+                serviceTimes.add(new LoadReport(names));
+            }
+        }
+
+        // only called from the scheduling thread
+        void recordDispatch(long lagNanos, long inFlight) {
+            arrivals++;
+            maxDispatchLagNanos = Math.max(maxDispatchLagNanos, lagNanos);
+            maxInFlight = Math.max(maxInFlight, inFlight);
+        }
+
+        public List<Phase> getPhases() {
+            return phases;
+        }
+
+        /**
+         * @return latencies from the intended send time of the phase's requests
+         */
+        public LoadReport responseTimes(int phase) {
+            return responseTimes.get(phase);
+        }
+
+        /**
+         * @return latencies from the actual send time of the phase's requests
+         */
+        public LoadReport serviceTimes(int phase) {
+            return serviceTimes.get(phase);
+        }
+
+        public long getArrivals() {
+            return arrivals;
+        }
+
+        /**
+         * @return the furthest behind schedule a request was handed to the workers, a large
+         * value means the scheduling thread could not keep up and the rate was not met
+         */
+        public long getMaxDispatchLagNanos() {
+            return maxDispatchLagNanos;
+        }
+
+        /**
+         * @return the most requests scheduled but not finished at once
+         */
+        public long getMaxInFlight() {
+            return maxInFlight;
+        }
+
+        public void print(PrintStream out) {
+            for (int i = 0; i < phases.size(); i++) {
+                out.println("phase " + (i + 1) + ": " + phases.get(i) + ", response time from the intended send time");
+                responseTimes.get(i).print(out);
+                out.println("phase " + (i + 1) + ": " + phases.get(i) + ", service time from the actual send time");
+                serviceTimes.get(i).print(out);
+            }
+            out.printf(Locale.ROOT, "%d arrivals, at most %d in flight, dispatched at most %.2f ms late%n",
+                arrivals, maxInFlight, maxDispatchLagNanos / 1e6);
+        }
+    }
+}
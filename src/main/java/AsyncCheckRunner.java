@@ -0,0 +1,445 @@
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the status, metadata and activities checks of the endpoint tests on a non-blocking
+ * client, keeping thousands of requests in flight from a few I/O reactor threads where
+ * REST-assured would need a thread for each. A check passes on the expected status and,
+ * if one is given, the body containing the expected text.
+ *
+ * Alongside the latencies it reports what the client itself cost: the process CPU time and
+ * the bytes allocated per request, the heap retained per request in flight and the threads
+ * used, so that a run that is limited by the harness rather than the server shows as such.
+ * These are the whole JVM's, so they include an in-process mock service when there is one.
+ */
+public class AsyncCheckRunner {
+
+    /**
+     * A GET and what its response must look like.
+     */
+    public static class Check {
+        private final String name;
+        private final String url;
+        private final int status;
+        private final String expected;
+
+        /**
+         * @param expected text the body must contain, null to check the status alone
+         */
+        public Check(String name, String url, int status, String expected) {
+            this.name = name;
+            this.url = url;
+            this.status = status;
+            this.expected = expected;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * @return null if the response passes, otherwise why not
+         */
+        String failure(int status, String body) {
+            if (status != this.status) {
+                return "HTTP " + status;
+            }
+            return expected == null || (body != null && body.contains(expected)) ? null : "unexpected body";
+        }
+    }
+
+    private final int concurrency;
+    private final int ioThreads;
+    private final int timeoutMillis;
+
+    /**
+     * @param concurrency requests kept in flight, and connections opened
+     * @param ioThreads   I/O reactor threads
+     */
+    public AsyncCheckRunner(int concurrency, int ioThreads, int timeoutMillis) {
+        this.concurrency = concurrency;
+        this.ioThreads = ioThreads;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Reads async_concurrency and async_io_threads.
+     */
+    public static AsyncCheckRunner fromProperties(Properties props) {
+        return new AsyncCheckRunner(Integer.parseInt(props.getProperty("async_concurrency", "1000").trim()),
+            Integer.parseInt(props.getProperty("async_io_threads", "2").trim()), 30000);
+    }
+
+    /**
+     * The checks CMDEndPointTest.getServiceStatus and getMetadataTest and the ActivitiesQueries
+     * shapes make, named as in async_checks: status, metadata and activities.
+     */
+    public static List<Check> checks(ApiConfig config, String names) {
+        List<Check> checks = new ArrayList<Check>();
+        for (String name : names.trim().split("\\s*,\\s*")) {
+            if (name.equals("status")) {
+                checks.add(new Check("status.xml", config.getServiceUrl() + "status.xml/", 200, "MT090"));
+            } else if (name.equals("metadata")) {
+                checks.add(new Check("xml.xml", config.getServiceUrl() + "xml.xml?doi=" + config.getTestDoi1(), 200,
+                    config.getTestDoi1()));
+            } else if (name.equals("activities")) {
+                checks.addAll(activities(config, config.get("load_queries")));
+            } else if (!name.isEmpty()) {
+                throw new IllegalArgumentException("Unknown async check " + name + ", expected status, metadata or activities");
+            }
+        }
+        return checks;
+    }
+
+    /**
+     * The ActivitiesAPITest queries of the given ActivitiesQueries shapes, all of them when blank,
+     * passing on a 200 with status OK.
+     */
+    public static List<Check> activities(ApiConfig config, String shapes) {
+        List<Check> checks = new ArrayList<Check>();
+        for (Map.Entry<String, Map<String, String>> shape : ActivitiesQueries.select(shapes).entrySet()) {
+            String query = ActivitiesQueries.toQueryString(shape.getValue());
+            checks.add(new Check("activities " + shape.getKey(), config.getGrantApiUrl()
+                + (query.isEmpty() ? "" : "?" + query), 200, "\"OK\""));
+        }
+        return checks;
+    }
+
+    /**
+     * Issues the checks round robin, concurrency at a time, until the duration is up, then
+     * waits for the requests still in flight. Before the timed run the window is filled once
+     * to measure the heap retained per request in flight, so that the collections this needs
+     * pause none of the timed requests.
+     */
+    public Result run(List<Check> checks, long durationMillis) throws IOException, InterruptedException {
+        List<String> names = new ArrayList<String>();
+        for (Check check : checks) {
+            names.add(check.getName());
+        }
+        final LoadReport report = new LoadReport(names);
+        final Semaphore slots = new Semaphore(concurrency);
+        final Result result = new Result(report, concurrency);
+
+        CloseableHttpAsyncClient client = client();
+        client.start();
+        try {
+            long idleHeap = ClientCost.retainedHeap();
+            for (int i = 0; i < concurrency; i++) {
+                slots.acquire();
+                send(client, checks.get(i % checks.size()), slots, null);
+            }
+            int inFlight = concurrency - slots.availablePermits();
+            long fullHeap = ClientCost.retainedHeap();
+            result.heapPerInFlight = inFlight == 0 ? -1 : (double) Math.max(0, fullHeap - idleHeap) / inFlight;
+            slots.acquire(concurrency);
+            slots.release(concurrency);
+
+            ClientCost cost = new ClientCost();
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+            report.start();
+            for (long i = 0; System.nanoTime() < end; i++) {
+                if (!slots.tryAcquire(end - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    break;
+                }
+                send(client, checks.get((int) (i % checks.size())), slots, result);
+                result.requests++;
+                cost.sample();
+            }
+            slots.acquire(concurrency);
+            report.stop();
+            // before close, while the I/O reactor threads are still alive to be asked what they allocated
+            cost.finish(result);
+        } finally {
+            client.close();
+        }
+        return result;
+    }
+
+    /**
+     * @param result where the latency and any failure go, null for a request that is not timed
+     */
+    private static void send(CloseableHttpAsyncClient client, final Check check, final Semaphore slots,
+                             final Result result) {
+        final long sent = System.nanoTime();
+        client.execute(new HttpGet(check.getUrl()), new FutureCallback<HttpResponse>() {
+            public void completed(HttpResponse response) {
+                String failure;
+                try {
+                    String body = response.getEntity() == null ? null : EntityUtils.toString(response.getEntity());
+                    failure = check.failure(response.getStatusLine().getStatusCode(), body);
+                } catch (IOException e) {
+                    failure = e.getClass().getSimpleName();
+                }
+                done(failure);
+            }
+
+            public void failed(Exception e) {
+                done(e.getClass().getSimpleName());
+            }
+
+            public void cancelled() {
+                done("cancelled");
+            }
+
+            private void done(String failure) {
+                if (result != null) {
+                    result.report.record(check.getName(), System.nanoTime() - sent, failure == null);
+                    if (failure != null) {
+                        result.fail(failure);
+                    }
+                }
+                slots.release();
+            }
+        });
+    }
+
+    /**
+     * With relaxed_https on, https hosts are trusted whatever their certificate and name, as in the suite.
+     */
+    private CloseableHttpAsyncClient client() throws IOException {
+        IOReactorConfig reactor = IOReactorConfig.custom()
+            .setIoThreadCount(ioThreads)
+            .setConnectTimeout(timeoutMillis)
+            .setSoTimeout(timeoutMillis)
+            .build();
+        // the connection manager, not the client builder, decides how https sessions are set up
+        Registry<SchemeIOSessionStrategy> schemes = RegistryBuilder.<SchemeIOSessionStrategy>create()
+            .register("http", NoopIOSessionStrategy.INSTANCE)
+            .register("https", RelaxedHttps.isRelaxed()
+                ? new SSLIOSessionStrategy(RelaxedHttps.trustAllContext(), NoopHostnameVerifier.INSTANCE)
+                : SSLIOSessionStrategy.getDefaultStrategy())
+            .build();
+        PoolingNHttpClientConnectionManager connections =
+            new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(reactor), schemes);
+        connections.setMaxTotal(concurrency);
+        connections.setDefaultMaxPerRoute(concurrency);
+        return HttpAsyncClients.custom()
+            .setConnectionManager(connections)
+            .setDefaultRequestConfig(RequestConfig.custom()
+                .setConnectTimeout(timeoutMillis)
+                .setSocketTimeout(timeoutMillis)
+                .setConnectionRequestTimeout(timeoutMillis)
+                .build())
+            .build();
+    }
+
+    /**
+     * The JVM's CPU time, allocations and threads from the start of a run. Threads are sampled
+     * as requests are issued, at most every 10 ms.
+     */
+    private static class ClientCost {
+        private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        private final long startNanos = System.nanoTime();
+        private final long startCpuNanos = processCpuNanos();
+        private final Map<Long, Long> startAllocated = allocatedBytes();
+        private int peakThreads = threads.getThreadCount();
+        private long lastSample = startNanos;
+
+        void sample() {
+            long now = System.nanoTime();
+            if (now - lastSample >= TimeUnit.MILLISECONDS.toNanos(10)) {
+                lastSample = now;
+                peakThreads = Math.max(peakThreads, threads.getThreadCount());
+            }
+        }
+
+        void finish(Result result) {
+            sample();
+            result.wallNanos = System.nanoTime() - startNanos;
+            result.cpuNanos = processCpuNanos() - startCpuNanos;
+            Map<Long, Long> allocated = allocatedBytes();
+            if (allocated == null || startAllocated == null) {
+                result.allocatedBytes = -1;
+            } else {
+                long total = 0;
+                for (Map.Entry<Long, Long> thread : allocated.entrySet()) {
+                    Long before = startAllocated.get(thread.getKey());
+                    total += thread.getValue() - (before == null ? 0 : before);
+                }
+                result.allocatedBytes = total;
+            }
+            result.peakThreads = peakThreads;
+        }
+
+        private static long processCpuNanos() {
+            java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+            return os instanceof com.sun.management.OperatingSystemMXBean
+                ? ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime() : -1;
+        }
+
+        /**
+         * @return bytes allocated so far by each live thread, by id, null where the JVM cannot say
+         */
+        private Map<Long, Long> allocatedBytes() {
+            if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+                return null;
+            }
+            long[] ids = threads.getAllThreadIds();
+            long[] bytes = ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(ids);
+            Map<Long, Long> allocated = new HashMap<Long, Long>();
+            for (int i = 0; i < ids.length; i++) {
+                // -1 for a thread that exited in between
+                if (bytes[i] >= 0) {
+                    allocated.put(ids[i], bytes[i]);
+                }
+            }
+            return allocated;
+        }
+
+        /**
+         * @return the heap still in use after a full collection
+         */
+        static long retainedHeap() {
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            memory.gc();
+            return memory.getHeapMemoryUsage().getUsed();
+        }
+    }
+
+    /**
+     * Latencies per check and what the client spent on them.
+     */
+    public static class Result {
+        final LoadReport report;
+        private final int concurrency;
+        long requests;
+        long wallNanos;
+        long cpuNanos;
+        long allocatedBytes;
+        double heapPerInFlight;
+        int peakThreads;
+
+        private final Map<String, AtomicLong> failures = new ConcurrentHashMap<String, AtomicLong>();
+
+        Result(LoadReport report, int concurrency) {
+            this.report = report;
+            this.concurrency = concurrency;
+        }
+
+        void fail(String failure) {
+            AtomicLong count = failures.get(failure);
+            if (count == null) {
+                AtomicLong created = new AtomicLong();
+                count = failures.putIfAbsent(failure, created);
+                if (count == null) {
+                    count = created;
+                }
+            }
+            count.incrementAndGet();
+        }
+
+        /**
+         * @return failed requests by HTTP status, "unexpected body" or the exception's class name
+         */
+        public Map<String, Long> getFailures() {
+            Map<String, Long> counts = new TreeMap<String, Long>();
+            for (Map.Entry<String, AtomicLong> entry : failures.entrySet()) {
+                counts.put(entry.getKey(), entry.getValue().get());
+            }
+            return counts;
+        }
+
+        public LoadReport getReport() {
+            return report;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        /**
+         * @return process CPU time per request in nanoseconds, the whole JVM's and so an upper bound
+         */
+        public double getCpuNanosPerRequest() {
+            return requests == 0 ? 0 : (double) cpuNanos / requests;
+        }
+
+        /**
+         * @return cores the process kept busy on average
+         */
+        public double getCoresBusy() {
+            return wallNanos == 0 ? 0 : (double) cpuNanos / wallNanos;
+        }
+
+        /**
+         * @return bytes allocated per request, by threads alive at the end of the run, -1 if unknown
+         */
+        public double getAllocatedBytesPerRequest() {
+            return allocatedBytes < 0 || requests == 0 ? -1 : (double) allocatedBytes / requests;
+        }
+
+        /**
+         * @return heap retained after a full collection per request in flight, over that of an idle
+         * client, -1 if none were still in flight when measured
+         */
+        public double getHeapBytesPerInFlight() {
+            return heapPerInFlight;
+        }
+
+        public int getPeakThreads() {
+            return peakThreads;
+        }
+
+        public void print(PrintStream out) {
+            report.print(out);
+            if (!failures.isEmpty()) {
+                out.println("failures: " + getFailures());
+            }
+            int cores = Runtime.getRuntime().availableProcessors();
+            out.printf(Locale.ROOT, "client: %d requests, %d in flight with %d JVM threads, %.2f of %d cores busy, "
+                    + "%.0f us CPU and %.1f KB allocated per request, %.1f KB heap per request in flight%n",
+                requests, concurrency, peakThreads, getCoresBusy(), cores, getCpuNanosPerRequest() / 1e3,
+                getAllocatedBytesPerRequest() / 1024, getHeapBytesPerInFlight() / 1024);
+            if (getCoresBusy() > 0.8 * cores) {
+                out.println("client: the harness used most of the CPU, latencies may be its own and not the server's");
+            }
+        }
+    }
+
+    /**
+     * Usage: AsyncCheckRunner [duration_s], using async_checks and the async settings in config.properties.
+     */
+    public static void main(String[] args) throws Exception {
+        ApiConfig config = ApiConfig.current();
+        long duration = args.length > 0 ? Long.parseLong(args[0]) : config.getLong("async_duration_s", 60);
+        Result result = fromProperties(config.toProperties())
+            .run(checks(config, config.get("async_checks", "status,metadata,activities")),
+                TimeUnit.SECONDS.toMillis(duration));
+        result.print(System.out);
+    }
+}
@@ -0,0 +1,366 @@
+import org.xml.sax.SAXException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.ConnectException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mints or updates DOIs in bulk from a tab separated manifest of
+ * <pre>url TAB datacite-xml-file [TAB doi]</pre>
+ * lines, minting when the doi column is missing and updating otherwise. XML paths are
+ * relative to the manifest. Blank lines and lines starting with # are skipped.
+ *
+ * At most window requests are in flight; reading the manifest blocks while the window is
+ * full. Payloads can be checked against the DataCite schema before they are sent. Updates
+ * failing in ways the service may recover from (HTTP 5xx, MT005, MT010, I/O errors) are
+ * retried with exponential backoff. Minting is not idempotent, so a mint is only retried
+ * when it could not connect; after any other such failure the service may have minted a
+ * DOI, and the line is recorded as unknown rather than sent again, to be checked by hand.
+ * Every completed or unknown line is appended to a checkpoint file and skipped when the
+ * run is restarted with the same checkpoint.
+ */
+public class BulkMinter {
+
+    public static final String[] STAGES = {"read", "window", "validate", "service", "checkpoint", "item"};
+
+    private static final Set<String> RETRYABLE = new HashSet<String>(Arrays.asList("MT005", "MT010"));
+
+    private final DoiServiceClient client;
+    private final int window;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final Random random = new Random();
+    private DataCiteValidator validator;
+
+    /**
+     * @param window        maximum number of requests in flight
+     * @param maxAttempts   attempts per line before giving up on it
+     * @param backoffMillis delay before the first retry, doubled for every further one
+     */
+    public BulkMinter(DoiServiceClient client, int window, int maxAttempts, long backoffMillis) {
+        this.client = client;
+        this.window = window;
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+    }
+
+    /**
+     * Reads bulk_window, bulk_max_attempts, bulk_backoff_ms and bulk_validate, and the settings
+     * of DoiServiceClient and, when validating, DataCiteValidator.
+     */
+    public static BulkMinter fromProperties(Properties props) throws SAXException, IOException {
+        BulkMinter minter = new BulkMinter(DoiServiceClient.fromProperties(props),
+            Integer.parseInt(props.getProperty("bulk_window", "8").trim()),
+            Integer.parseInt(props.getProperty("bulk_max_attempts", "5").trim()),
+            Long.parseLong(props.getProperty("bulk_backoff_ms", "200").trim()));
+        if (Boolean.parseBoolean(props.getProperty("bulk_validate", "false").trim())) {
+            minter.setValidator(DataCiteValidator.fromProperties(props));
+        }
+        return minter;
+    }
+
+    /**
+     * Validates every payload before it is sent; invalid lines fail without being sent or retried.
+     */
+    public void setValidator(DataCiteValidator validator) {
+        this.validator = validator;
+    }
+
+    public Result run(File manifest, File checkpoint) throws IOException, InterruptedException {
+        final Set<Integer> done = readCheckpoint(checkpoint);
+        final Result result = new Result();
+        final Semaphore inFlight = new Semaphore(window);
+        final Writer checkpointOut = new BufferedWriter(
+            new OutputStreamWriter(new FileOutputStream(checkpoint, true), "UTF-8"));
+        ExecutorService pool = Executors.newFixedThreadPool(window);
+        File base = manifest.getAbsoluteFile().getParentFile();
+        BufferedReader lines = new BufferedReader(new InputStreamReader(new FileInputStream(manifest), "UTF-8"));
+        result.report.start();
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                if (done.contains(lineNumber)) {
+                    result.skipped.incrementAndGet();
+                    continue;
+                }
+                final String[] columns = line.split("\t");
+                if (columns.length < 2) {
+                    throw new IOException(manifest + ":" + lineNumber + ": expected url, xml file and optional doi");
+                }
+                long readStart = System.nanoTime();
+                final String xml = new String(Files.readAllBytes(new File(base, columns[1]).toPath()), "UTF-8");
+                result.report.record("read", System.nanoTime() - readStart, true);
+
+                long waitStart = System.nanoTime();
+                inFlight.acquire();
+                result.report.record("window", System.nanoTime() - waitStart, true);
+
+                final int item = lineNumber;
+                final long submitted = System.nanoTime();
+                pool.execute(new Runnable() {
+                    public void run() {
+                        boolean success = false;
+                        try {
+                            success = process(item, columns, xml, result, checkpointOut);
+                        } finally {
+                            result.report.record("item", System.nanoTime() - submitted, success);
+                            inFlight.release();
+                        }
+                    }
+                });
+            }
+        } finally {
+            lines.close();
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            result.report.stop();
+            checkpointOut.close();
+        }
+        return result;
+    }
+
+    /**
+     * @return whether the line was minted or updated
+     */
+    private boolean process(int item, String[] columns, String xml, Result result, Writer checkpointOut) {
+        String url = columns[0];
+        String doi = columns.length > 2 && !columns[2].trim().isEmpty() ? columns[2].trim() : null;
+        if (validator != null) {
+            long start = System.nanoTime();
+            String problem;
+            try {
+                problem = validator.check(xml.getBytes("UTF-8"));
+            } catch (IOException e) {
+                problem = e.toString();
+            }
+            result.report.record("validate", System.nanoTime() - start, problem == null);
+            if (problem != null) {
+                result.failed.incrementAndGet();
+                result.addFailure("line " + item + ": invalid DataCite, " + problem);
+                return false;
+            }
+        }
+        DoiServiceClient.Response response = null;
+        String failure = null;
+        boolean unknown = false;
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            if (attempt > 1) {
+                result.retries.incrementAndGet();
+                sleep(backoffMillis << Math.min(attempt - 2, 16));
+            }
+            long start = System.nanoTime();
+            try {
+                response = doi == null ? client.mint(url, xml) : client.update(doi, url, xml);
+                boolean success = response.isSuccess();
+                result.report.record("service", System.nanoTime() - start, success);
+                failure = success ? null : response.toString();
+                if (success || !(response.getHttpStatus() >= 500 || RETRYABLE.contains(response.getResponseCode()))) {
+                    break;
+                }
+                if (doi == null) {
+                    // the request reached the service, which may have minted before failing
+                    unknown = true;
+                    break;
+                }
+            } catch (ConnectException e) {
+                // never reached the service, so even a mint is safe to send again
+                result.report.record("service", System.nanoTime() - start, false);
+                failure = e.toString();
+            } catch (IOException e) {
+                result.report.record("service", System.nanoTime() - start, false);
+                failure = e.toString();
+                if (doi == null) {
+                    unknown = true;
+                    break;
+                }
+            }
+        }
+        if (unknown) {
+            result.unknown.incrementAndGet();
+            result.addFailure("line " + item + ": outcome unknown, not resent, " + failure);
+            checkpoint(item, "-\tunknown", result, checkpointOut);
+            return false;
+        }
+        if (failure != null) {
+            result.failed.incrementAndGet();
+            result.addFailure("line " + item + ": " + failure);
+            return false;
+        }
+        if (doi == null) {
+            result.minted.incrementAndGet();
+        } else {
+            result.updated.incrementAndGet();
+        }
+        checkpoint(item, response.getDoi() + "\t" + response.getResponseCode(), result, checkpointOut);
+        return true;
+    }
+
+    private void checkpoint(int item, String outcome, Result result, Writer checkpointOut) {
+        long start = System.nanoTime();
+        try {
+            synchronized (checkpointOut) {
+                checkpointOut.write(item + "\t" + outcome + "\n");
+                checkpointOut.flush();
+            }
+            result.report.record("checkpoint", System.nanoTime() - start, true);
+        } catch (IOException e) {
+            result.report.record("checkpoint", System.nanoTime() - start, false);
+            result.addFailure("line " + item + ": checkpoint not written, " + e);
+        }
+    }
+
+    private void sleep(long millis) {
+        long jitter;
+        synchronized (random) {
+            jitter = (long) (random.nextDouble() * millis / 2);
+        }
+        try {
+            Thread.sleep(millis + jitter);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the manifest line numbers recorded as done, or of unknown outcome, by an earlier run
+     */
+    static Set<Integer> readCheckpoint(File checkpoint) throws IOException {
+        Set<Integer> done = new HashSet<Integer>();
+        if (!checkpoint.exists()) {
+            return done;
+        }
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(checkpoint), "UTF-8"));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                // a line cut short by an interrupted run has no tab and is ignored
+                if (tab > 0) {
+                    done.add(Integer.parseInt(line.substring(0, tab)));
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return done;
+    }
+
+    public static class Result {
+
+        private final LoadReport report = new LoadReport(Arrays.asList(STAGES));
+        private final AtomicLong minted = new AtomicLong();
+        private final AtomicLong updated = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong unknown = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+        private final List<String> failures = new ArrayList<String>();
+
+        public long getMinted() {
+            return minted.get();
+        }
+
+        public long getUpdated() {
+            return updated.get();
+        }
+
+        public long getFailed() {
+            return failed.get();
+        }
+
+        /**
+         * @return mints that failed after reaching the service, which may or may not have minted
+         */
+        public long getUnknown() {
+            return unknown.get();
+        }
+
+        /**
+         * @return lines skipped because the checkpoint already had them
+         */
+        public long getSkipped() {
+            return skipped.get();
+        }
+
+        public long getRetries() {
+            return retries.get();
+        }
+
+        /**
+         * @return the first 10 failure messages
+         */
+        public synchronized List<String> getFailures() {
+            return new ArrayList<String>(failures);
+        }
+
+        public LoadReport getReport() {
+            return report;
+        }
+
+        /**
+         * @return successfully minted or updated DOIs per second over the whole run
+         */
+        public double getDoisPerSecond() {
+            double seconds = report.elapsedNanos() / 1e9;
+            return seconds == 0 ? 0 : (minted.get() + updated.get()) / seconds;
+        }
+
+        private synchronized void addFailure(String failure) {
+            if (failures.size() < 10) {
+                failures.add(failure);
+            }
+        }
+
+        public void print(PrintStream out) {
+            out.printf("minted %d, updated %d, failed %d, unknown %d, skipped %d, retries %d in %.1f s, %.1f DOIs/s%n",
+                getMinted(), getUpdated(), getFailed(), getUnknown(), getSkipped(), getRetries(),
+                report.elapsedNanos() / 1e9, getDoisPerSecond());
+            report.print(out);
+            for (String failure : getFailures()) {
+                out.println(failure);
+            }
+        }
+    }
+
+    /**
+     * Usage: BulkMinter manifest [checkpoint], using the service settings in config.properties.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: BulkMinter manifest [checkpoint]");
+            System.exit(2);
+        }
+        File manifest = new File(args[0]);
+        File checkpoint = new File(args.length > 1 ? args[1] : args[0] + ".checkpoint");
+        BulkMinter minter = fromProperties(ApiConfig.current().toProperties());
+        Result result = minter.run(manifest, checkpoint);
+        result.print(System.out);
+        System.exit(result.getFailed() == 0 && result.getUnknown() == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,298 @@
+import org.HdrHistogram.Histogram;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs TLS handshakes for each protocol version and default enabled cipher suite against a
+ * remote endpoint, or a local SSLServerSocket stand-in, and reports full handshake
+ * latency, resumed handshake latency and (locally) bulk throughput per suite.
+ */
+public class CipherBenchmark {
+
+    private static final String PASSWORD = "changeit";
+    private static final int BULK_BYTES = 16 * 1024 * 1024;
+
+    private final String host;
+    private final int port;
+    private final int iterations;
+    private final LocalServer server;
+
+    /**
+     * Benchmarks against a remote endpoint; suites the server refuses are reported as such.
+     */
+    public CipherBenchmark(String host, int port, int iterations) {
+        this.host = host;
+        this.port = port;
+        this.iterations = iterations;
+        this.server = null;
+    }
+
+    /**
+     * Benchmarks against a local SSLServerSocket using the given key store,
+     * which should hold an RSA and an EC key so both families of suites can be served.
+     */
+    public CipherBenchmark(File keyStore, int iterations) throws Exception {
+        this.server = new LocalServer(keyStore);
+        this.host = "localhost";
+        this.port = server.socket.getLocalPort();
+        this.iterations = iterations;
+    }
+
+    public void run() throws Exception {
+        SSLContext probe = clientContext();
+        Set<String> suites = new TreeSet<String>(Arrays.asList(probe.getDefaultSSLParameters().getCipherSuites()));
+        List<String> protocols = new ArrayList<String>();
+        for (String protocol : probe.getDefaultSSLParameters().getProtocols()) {
+            if (protocol.startsWith("TLS")) {
+                protocols.add(protocol);
+            }
+        }
+
+        System.out.println("Benchmarking TLS handshakes against " + host + ":" + port
+            + (server != null ? " (local stand-in)" : "") + ", " + iterations + " iterations per suite");
+        System.out.printf("%-8s %-48s %10s %10s %10s %10s %8s %9s%n", "protocol", "cipher",
+            "full p50", "full p99", "res p50", "res p99", "resumed", "MB/s");
+        for (String protocol : protocols) {
+            for (String suite : suites) {
+                // TLS 1.3 suites only name the AEAD and hash, and cannot be used with earlier versions
+                boolean tls13Suite = suite.startsWith("TLS_AES_") || suite.startsWith("TLS_CHACHA20_");
+                if (suite.startsWith("TLS_EMPTY") || tls13Suite != protocol.equals("TLSv1.3")) {
+                    continue;
+                }
+                bench(protocol, suite);
+            }
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private void bench(String protocol, String suite) throws Exception {
+        Histogram full = new Histogram(3);
+        Histogram resumed = new Histogram(3);
+        int resumedCount = 0;
+        try {
+            for (int i = 0; i < iterations; i++) {
+                // a fresh context has an empty session cache, so this is always a full handshake
+                SSLSocket socket = handshake(clientContext(), protocol, suite, full);
+                socket.close();
+            }
+            SSLContext context = clientContext();
+            SSLSocket first = handshake(context, protocol, suite, null);
+            byte[] firstId = first.getSession().getId();
+            first.close();
+            for (int i = 0; i < iterations; i++) {
+                SSLSocket socket = handshake(context, protocol, suite, resumed);
+                if (firstId.length > 0 && Arrays.equals(firstId, socket.getSession().getId())) {
+                    resumedCount++;
+                }
+                socket.close();
+            }
+        } catch (IOException e) {
+            System.out.printf("%-8s %-48s not negotiated: %s%n", protocol, suite, e.getMessage());
+            return;
+        }
+        String bulk = server != null ? String.format(Locale.ROOT, "%9.1f", bulk(protocol, suite)) : "      n/a";
+        System.out.printf(Locale.ROOT, "%-8s %-48s %10.2f %10.2f %10.2f %10.2f %8s %s%n",
+            protocol, suite,
+            full.getValueAtPercentile(50) / 1000.0, full.getValueAtPercentile(99) / 1000.0,
+            resumed.getValueAtPercentile(50) / 1000.0, resumed.getValueAtPercentile(99) / 1000.0,
+            // TLS 1.3 resumes through tickets without reusing the session id, so it cannot be confirmed here
+            protocol.equals("TLSv1.3") ? "n/a" : resumedCount + "/" + iterations,
+            bulk);
+    }
+
+    /**
+     * Connects and completes the handshake, recording its latency (excluding the TCP connect)
+     * in microseconds.
+     */
+    private SSLSocket handshake(SSLContext context, String protocol, String suite, Histogram histogram)
+        throws IOException {
+        Socket plain = new Socket();
+        SSLSocket socket = null;
+        try {
+            plain.setTcpNoDelay(true);
+            plain.connect(new InetSocketAddress(host, port), 10000);
+            socket = (SSLSocket) context.getSocketFactory().createSocket(plain, host, port, true);
+            socket.setEnabledProtocols(new String[]{protocol});
+            socket.setEnabledCipherSuites(new String[]{suite});
+            long start = System.nanoTime();
+            socket.startHandshake();
+            if (histogram != null) {
+                histogram.recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start)));
+            }
+            return socket;
+        } catch (IOException e) {
+            // e.g. a suite the server does not accept, which the caller skips and carries on
+            (socket != null ? socket : plain).close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return MB/s for BULK_BYTES written to the local stand-in, which acknowledges the last byte
+     */
+    private double bulk(String protocol, String suite) throws Exception {
+        SSLSocket socket = handshake(clientContext(), protocol, suite, null);
+        try {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+            byte[] chunk = new byte[16 * 1024];
+            long start = System.nanoTime();
+            for (int written = 0; written < BULK_BYTES; written += chunk.length) {
+                out.write(chunk);
+            }
+            out.flush();
+            if (in.read() < 0) {
+                throw new IOException("Stand-in closed before acknowledging the bulk transfer");
+            }
+            return BULK_BYTES / (1024.0 * 1024.0) / ((System.nanoTime() - start) / 1e9);
+        } finally {
+            socket.close();
+        }
+    }
+
+    private static SSLContext clientContext() throws Exception {
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, new TrustManager[]{new X509TrustManager() {
+            public X509Certificate[] getAcceptedIssuers() {
+                return new X509Certificate[0];
+            }
+
+            public void checkClientTrusted(X509Certificate[] certs, String authType) {
+            }
+
+            public void checkServerTrusted(X509Certificate[] certs, String authType) {
+            }
+        }}, null);
+        return context;
+    }
+
+    /**
+     * Creates a PKCS12 key store holding a self signed RSA and EC key for localhost with keytool.
+     */
+    public static File createKeyStore() throws Exception {
+        File keyStore = File.createTempFile("ciphers", ".p12");
+        if (!keyStore.delete()) {
+            throw new IOException("Unable to prepare " + keyStore);
+        }
+        keyStore.deleteOnExit();
+        String keytool = new File(new File(System.getProperty("java.home"), "bin"), "keytool").getPath();
+        for (String[] key : new String[][]{{"rsa", "RSA", "2048"}, {"ec", "EC", "256"}}) {
+            Process process = new ProcessBuilder(keytool, "-genkeypair", "-alias", key[0], "-keyalg", key[1],
+                "-keysize", key[2], "-dname", "CN=localhost", "-validity", "2",
+                "-keystore", keyStore.getPath(), "-storetype", "PKCS12",
+                "-storepass", PASSWORD, "-keypass", PASSWORD)
+                .redirectErrorStream(true)
+                .start();
+            InputStream output = process.getInputStream();
+            while (output.read() >= 0) {
+                // drain keytool's output so it cannot block
+            }
+            if (process.waitFor() != 0) {
+                throw new IOException("keytool failed to create the " + key[1] + " key");
+            }
+        }
+        return keyStore;
+    }
+
+    /**
+     * Accepts connections, completes handshakes with whatever the client offers and
+     * acknowledges BULK_BYTES with a single byte.
+     */
+    private static class LocalServer implements Runnable {
+
+        final SSLServerSocket socket;
+        private volatile boolean closed;
+
+        LocalServer(File keyStoreFile) throws Exception {
+            KeyStore keyStore = KeyStore.getInstance("PKCS12");
+            InputStream in = new FileInputStream(keyStoreFile);
+            try {
+                keyStore.load(in, PASSWORD.toCharArray());
+            } finally {
+                in.close();
+            }
+            KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            kmf.init(keyStore, PASSWORD.toCharArray());
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(kmf.getKeyManagers(), null, null);
+
+            socket = (SSLServerSocket) context.getServerSocketFactory().createServerSocket(0, 128);
+            socket.setEnabledCipherSuites(socket.getSupportedCipherSuites());
+            socket.setEnabledProtocols(socket.getSupportedProtocols());
+            Thread acceptor = new Thread(this, "cipher-benchmark-server");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        public void run() {
+            while (!closed) {
+                try {
+                    final Socket client = socket.accept();
+                    Thread handler = new Thread(new Runnable() {
+                        public void run() {
+                            serve(client);
+                        }
+                    });
+                    handler.setDaemon(true);
+                    handler.start();
+                } catch (IOException e) {
+                    if (!closed) {
+                        System.err.println("Stand-in accept failed: " + e.getMessage());
+                    }
+                }
+            }
+        }
+
+        private void serve(Socket client) {
+            try {
+                InputStream in = client.getInputStream();
+                byte[] buffer = new byte[64 * 1024];
+                long received = 0;
+                int n;
+                while ((n = in.read(buffer)) >= 0) {
+                    received += n;
+                    if (received >= BULK_BYTES) {
+                        client.getOutputStream().write(1);
+                        client.getOutputStream().flush();
+                        received = 0;
+                    }
+                }
+            } catch (IOException e) {
+                // handshake only connections are closed by the client
+            } finally {
+                try {
+                    client.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        void close() throws IOException {
+            closed = true;
+            socket.close();
+        }
+    }
+}
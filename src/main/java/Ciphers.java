@@ -1,10 +1,37 @@
 import javax.net.ssl.SSLServerSocketFactory;
+import java.io.File;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.TreeMap;
 
+/**
+ * Lists the supported cipher suites, marking the default ones with *.
+ *
+ * With "bench [local|host[:port]] [iterations]" it instead benchmarks handshakes for every
+ * default protocol version and suite, see {@link CipherBenchmark}. The local stand-in uses
+ * the PKCS12 key store named by -Dciphers.keystore (password changeit), or a throwaway one
+ * generated with keytool.
+ */
 public class Ciphers {
     public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("bench")) {
+            String target = args.length > 1 ? args[1] : "local";
+            int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+            CipherBenchmark benchmark;
+            if (target.equals("local")) {
+                String keyStore = System.getProperty("ciphers.keystore");
+                benchmark = new CipherBenchmark(
+                    keyStore != null ? new File(keyStore) : CipherBenchmark.createKeyStore(), iterations);
+            } else {
+                int colon = target.lastIndexOf(':');
+                benchmark = colon > 0
+                    ? new CipherBenchmark(target.substring(0, colon), Integer.parseInt(target.substring(colon + 1)), iterations)
+                    : new CipherBenchmark(target, 443, iterations);
+            }
+            benchmark.run();
+            return;
+        }
+
         SSLServerSocketFactory ssf = (SSLServerSocketFactory) SSLServerSocketFactory.getDefault();
 
         String[] defaultCiphers;
@@ -0,0 +1,304 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A client side cache of GET responses for the read endpoints (activities queries, xml.xml
+ * metadata), keyed by host, path and sorted query parameters so that parameter order does
+ * not matter. Entries are fresh for the response's Cache-Control max-age, or the default
+ * TTL without one, and are then revalidated with If-None-Match / If-Modified-Since, a 304
+ * refreshing the entry without its body being sent again. Responses marked no-store and
+ * responses other than 200 are not kept.
+ *
+ * The cache is bounded by the total size of the bodies it holds and evicts the least
+ * recently used entries first. It counts hits, revalidations and misses and estimates the
+ * latency saved: the time the original fetch took for every hit, and that time less the
+ * revalidation's for every 304. Instances are thread safe.
+ */
+public class ClientResponseCache {
+
+    private static final Pattern MAX_AGE = Pattern.compile("max-age\\s*=\\s*(\\d+)");
+
+    private final long maxBytes;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private long bytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong revalidated = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong savedNanos = new AtomicLong();
+
+    /**
+     * @param maxBytes  total size of the cached bodies
+     * @param ttlMillis how long a response without max-age stays fresh
+     */
+    public ClientResponseCache(long maxBytes, long ttlMillis) {
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Reads response_cache_max_bytes and response_cache_ttl_s.
+     */
+    public static ClientResponseCache fromProperties(Properties props) {
+        return new ClientResponseCache(
+            Long.parseLong(props.getProperty("response_cache_max_bytes", "16777216").trim()),
+            TimeUnit.SECONDS.toMillis(Long.parseLong(props.getProperty("response_cache_ttl_s", "60").trim())));
+    }
+
+    /**
+     * @return scheme, host and port followed by the path without trailing slashes and the
+     * decoded query parameters in sorted order
+     */
+    public static String key(String url) {
+        URI uri = URI.create(url);
+        String path = uri.getRawPath() == null ? "" : uri.getRawPath();
+        while (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        String authority = uri.getRawAuthority() == null ? "" : uri.getRawAuthority().toLowerCase(Locale.ROOT);
+        return (uri.getScheme() == null ? "" : uri.getScheme().toLowerCase(Locale.ROOT)) + "://" + authority
+            + FixtureStore.key(path, uri.getRawQuery());
+    }
+
+    /**
+     * @return the entry for the key, fresh or stale, or null
+     */
+    public synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Keeps a 200 response unless it says no-store or is larger than the whole cache.
+     *
+     * @param fetchNanos how long fetching the response took, credited to every later hit
+     * @return the new entry, or null if the response was not kept
+     */
+    public Entry put(String key, int status, String contentType, String etag, String lastModified,
+                     String cacheControl, byte[] body, long fetchNanos) {
+        if (status != 200 || body.length > maxBytes) {
+            return null;
+        }
+        long ttl = ttlMillis;
+        if (cacheControl != null) {
+            String directives = cacheControl.toLowerCase(Locale.ROOT);
+            if (directives.contains("no-store")) {
+                return null;
+            }
+            Matcher maxAge = MAX_AGE.matcher(directives);
+            if (directives.contains("no-cache")) {
+                ttl = 0;
+            } else if (maxAge.find()) {
+                ttl = TimeUnit.SECONDS.toMillis(Long.parseLong(maxAge.group(1)));
+            }
+        }
+        Entry entry = new Entry(key, contentType, etag, lastModified, body, ttl, fetchNanos);
+        synchronized (this) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                bytes -= previous.body.length;
+            }
+            bytes += body.length;
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                Entry evicted = eldest.next();
+                eldest.remove();
+                bytes -= evicted.body.length;
+                evictions.incrementAndGet();
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Counts a response served from a fresh entry without asking the server.
+     */
+    public void hit(Entry entry) {
+        hits.incrementAndGet();
+        savedNanos.addAndGet(entry.fetchNanos);
+    }
+
+    /**
+     * Counts a 304 for a stale entry and makes it fresh again.
+     *
+     * @param revalidationNanos how long the conditional request took
+     */
+    public void revalidated(Entry entry, long revalidationNanos) {
+        revalidated.incrementAndGet();
+        savedNanos.addAndGet(Math.max(0, entry.fetchNanos - revalidationNanos));
+        entry.expires = System.currentTimeMillis() + entry.ttl;
+    }
+
+    /**
+     * Counts a request the cache could not answer.
+     */
+    public void miss() {
+        misses.incrementAndGet();
+    }
+
+    /**
+     * A GET through the cache with HttpURLConnection, for callers outside REST-assured.
+     */
+    public Entry fetch(String url, int timeoutMillis) throws IOException {
+        String key = key(url);
+        Entry cached = get(key);
+        if (cached != null && cached.isFresh()) {
+            hit(cached);
+            return cached;
+        }
+        long started = System.nanoTime();
+        HttpURLConnection connection = RelaxedHttps.open(url, timeoutMillis);
+        if (cached != null) {
+            cached.addConditions(connection);
+        }
+        int status = connection.getResponseCode();
+        if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+            connection.disconnect();
+            revalidated(cached, System.nanoTime() - started);
+            return cached;
+        }
+        InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        byte[] body = in == null ? new byte[0] : ResourceCache.readFully(in);
+        long fetchNanos = System.nanoTime() - started;
+        miss();
+        Entry entry = put(key, status, connection.getContentType(), connection.getHeaderField("ETag"),
+            connection.getHeaderField("Last-Modified"), connection.getHeaderField("Cache-Control"), body, fetchNanos);
+        if (entry == null) {
+            // not cacheable, handed back without being kept
+            entry = new Entry(key, connection.getContentType(), null, null, body, 0, fetchNanos);
+            entry.status = status;
+        }
+        return entry;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getRevalidated() {
+        return revalidated.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return requests answered without a body being sent, fresh hits and 304s, over all requests
+     */
+    public double getHitRatio() {
+        long answered = hits.get() + revalidated.get();
+        long total = answered + misses.get();
+        return total == 0 ? 0 : (double) answered / total;
+    }
+
+    public long getSavedNanos() {
+        return savedNanos.get();
+    }
+
+    public void print(PrintStream out) {
+        out.printf(Locale.ROOT,
+            "response cache: %d hits, %d revalidated, %d misses (%.1f%% hit ratio), %.1f ms saved, "
+                + "%d entries of %d bytes, %d evicted%n",
+            getHits(), getRevalidated(), getMisses(), 100 * getHitRatio(), getSavedNanos() / 1e6,
+            size(), getBytes(), getEvictions());
+    }
+
+    /**
+     * A cached 200 response.
+     */
+    public static class Entry {
+        private final String key;
+        private final String contentType;
+        private final String etag;
+        private final String lastModified;
+        private final byte[] body;
+        private final long ttl;
+        private final long fetchNanos;
+        private volatile long expires;
+        private int status = 200;
+
+        Entry(String key, String contentType, String etag, String lastModified, byte[] body, long ttl,
+              long fetchNanos) {
+            this.key = key;
+            this.contentType = contentType;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.body = body;
+            this.ttl = ttl;
+            this.fetchNanos = fetchNanos;
+            this.expires = System.currentTimeMillis() + ttl;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return the body, shared between every user of the entry and not to be modified
+         */
+        public byte[] getBody() {
+            return body;
+        }
+
+        public boolean isFresh() {
+            return System.currentTimeMillis() < expires;
+        }
+
+        /**
+         * @return whether the server can be asked if the entry is still current
+         */
+        public boolean canRevalidate() {
+            return etag != null || lastModified != null;
+        }
+
+        void addConditions(HttpURLConnection connection) {
+            if (etag != null) {
+                connection.setRequestProperty("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                connection.setRequestProperty("If-Modified-Since", lastModified);
+            }
+        }
+    }
+}
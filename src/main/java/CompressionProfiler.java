@@ -0,0 +1,287 @@
+import org.brotli.dec.BrotliInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Measures what the activities queries cost on the wire: every query shape is requested with
+ * each rows and flags value and each Accept-Encoding, recording the body bytes received,
+ * the bytes after decoding, the time decoding takes and the bytes per record, to show which
+ * shapes and flags are worth trimming or compressing.
+ *
+ * HttpURLConnection leaves Content-Encoding alone, so the bytes read are the bytes sent.
+ * Headers are not counted. Decoding is timed separately on the buffered body, so the time
+ * is the client's CPU cost alone and not the network's.
+ */
+public class CompressionProfiler {
+
+    public static final String[] ENCODINGS = {"identity", "gzip", "deflate", "br"};
+
+    /**
+     * flags value standing for no flags parameter at all.
+     */
+    public static final String NO_FLAGS = "none";
+
+    private final String url;
+    private final int samples;
+    private final int timeoutMillis;
+
+    /**
+     * @param samples requests per combination, the median fetch and fastest decode are kept
+     */
+    public CompressionProfiler(String url, int samples, int timeoutMillis) {
+        this.url = url;
+        this.samples = Math.max(1, samples);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Reads grant_api_url and compression_samples.
+     */
+    public static CompressionProfiler fromProperties(Properties props) {
+        return new CompressionProfiler(props.getProperty("grant_api_url"),
+            Integer.parseInt(props.getProperty("compression_samples", "3").trim()), 30000);
+    }
+
+    /**
+     * Profiles every combination of shape, rows, flags and encoding.
+     */
+    public List<Sample> run(Map<String, Map<String, String>> shapes, int[] rows, String[] flags,
+                            String[] encodings) throws IOException {
+        List<Sample> results = new ArrayList<Sample>();
+        for (Map.Entry<String, Map<String, String>> shape : shapes.entrySet()) {
+            for (int r : rows) {
+                for (String flag : flags) {
+                    Map<String, String> params = new LinkedHashMap<String, String>(shape.getValue());
+                    params.put("rows", String.valueOf(r));
+                    if (flag.equals(NO_FLAGS)) {
+                        params.remove("flags");
+                    } else {
+                        params.put("flags", flag);
+                    }
+                    for (String encoding : encodings) {
+                        Sample sample = profile(params, encoding);
+                        sample.shape = shape.getKey();
+                        sample.rows = r;
+                        sample.flags = flag;
+                        results.add(sample);
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Requests the query with the given Accept-Encoding samples times.
+     */
+    public Sample profile(Map<String, String> params, String encoding) throws IOException {
+        Sample sample = new Sample();
+        sample.encoding = encoding;
+        long[] fetches = new long[samples];
+        sample.decodeNanos = Long.MAX_VALUE;
+        for (int i = 0; i < samples; i++) {
+            long started = System.nanoTime();
+            HttpURLConnection connection = RelaxedHttps.open(url + "?" + ActivitiesQueries.toQueryString(params),
+                timeoutMillis);
+            connection.setRequestProperty("Accept-Encoding", encoding);
+            int status = connection.getResponseCode();
+            if (status != 200) {
+                connection.disconnect();
+                throw new IOException("HTTP " + status + " for " + connection.getURL());
+            }
+            sample.contentEncoding = connection.getContentEncoding();
+            byte[] wire = ResourceCache.readFully(connection.getInputStream());
+            fetches[i] = System.nanoTime() - started;
+
+            long decodeStarted = System.nanoTime();
+            byte[] decoded = decode(sample.contentEncoding, wire);
+            sample.decodeNanos = Math.min(sample.decodeNanos, System.nanoTime() - decodeStarted);
+
+            sample.wireBytes = wire.length;
+            sample.decodedBytes = decoded.length;
+            ActivityRecordReader reader = new ActivityRecordReader(new ByteArrayInputStream(decoded));
+            try {
+                while (reader.next(new ActivityRecord())) {
+                    // counting only
+                }
+            } finally {
+                reader.close();
+            }
+            sample.records = reader.getRecords();
+        }
+        Arrays.sort(fetches);
+        sample.fetchNanos = fetches[fetches.length / 2];
+        return sample;
+    }
+
+    /**
+     * Decodes a body sent with the given Content-Encoding; null or identity returns it as is.
+     *
+     * @throws IOException for an encoding that is not supported or a corrupt body
+     */
+    public static byte[] decode(String contentEncoding, byte[] body) throws IOException {
+        String encoding = contentEncoding == null ? "identity" : contentEncoding.trim().toLowerCase(Locale.ROOT);
+        InputStream in = new ByteArrayInputStream(body);
+        if (encoding.isEmpty() || encoding.equals("identity")) {
+            return body;
+        } else if (encoding.equals("gzip") || encoding.equals("x-gzip")) {
+            in = new GZIPInputStream(in);
+        } else if (encoding.equals("deflate")) {
+            // deflate should be zlib wrapped, but some servers send the raw stream
+            in = isZlib(body) ? new InflaterInputStream(in) : new InflaterInputStream(in, new Inflater(true));
+        } else if (encoding.equals("br")) {
+            in = new BrotliInputStream(in);
+        } else {
+            throw new IOException("Unsupported Content-Encoding: " + contentEncoding);
+        }
+        return ResourceCache.readFully(in);
+    }
+
+    private static boolean isZlib(byte[] body) {
+        return body.length >= 2 && (body[0] & 0x0F) == 8 && (((body[0] & 0xFF) << 8) | (body[1] & 0xFF)) % 31 == 0;
+    }
+
+    /**
+     * Prints one line per sample. "vs base" compares the bytes received with those of the same
+     * shape and rows requested with the first flags value and without compression.
+     */
+    public static void print(List<Sample> samples, PrintStream out) {
+        Map<String, Long> base = new LinkedHashMap<String, Long>();
+        for (Sample sample : samples) {
+            String key = sample.shape + "\t" + sample.rows;
+            if (!base.containsKey(key)) {
+                base.put(key, sample.wireBytes);
+            }
+        }
+        out.printf("%-22s %5s %-8s %-9s %-8s %7s %10s %10s %6s %8s %9s %9s %9s%n",
+            "shape", "rows", "flags", "accept", "received", "records", "wire B", "decoded B", "ratio",
+            "vs base", "wire B/r", "decode us", "fetch ms");
+        for (Sample sample : samples) {
+            Long baseBytes = base.get(sample.shape + "\t" + sample.rows);
+            out.printf(Locale.ROOT, "%-22s %5d %-8s %-9s %-8s %7d %10d %10d %6.2f %7.0f%% %9.0f %9.1f %9.1f%n",
+                sample.shape, sample.rows, sample.flags, sample.encoding,
+                sample.contentEncoding == null ? "identity" : sample.contentEncoding,
+                sample.records, sample.wireBytes, sample.decodedBytes, sample.getRatio(),
+                baseBytes == null || baseBytes == 0 ? 0.0 : 100.0 * sample.wireBytes / baseBytes,
+                sample.getWireBytesPerRecord(), sample.decodeNanos / 1e3, sample.fetchNanos / 1e6);
+        }
+    }
+
+    /**
+     * One shape, rows, flags and Accept-Encoding combination.
+     */
+    public static class Sample {
+        String shape;
+        int rows;
+        String flags;
+        String encoding;
+        String contentEncoding;
+        long records;
+        long wireBytes;
+        long decodedBytes;
+        long decodeNanos;
+        long fetchNanos;
+
+        public String getShape() {
+            return shape;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public String getFlags() {
+            return flags;
+        }
+
+        /**
+         * @return the Accept-Encoding sent
+         */
+        public String getEncoding() {
+            return encoding;
+        }
+
+        /**
+         * @return the Content-Encoding received, null if the body was not encoded
+         */
+        public String getContentEncoding() {
+            return contentEncoding;
+        }
+
+        public long getRecords() {
+            return records;
+        }
+
+        public long getWireBytes() {
+            return wireBytes;
+        }
+
+        public long getDecodedBytes() {
+            return decodedBytes;
+        }
+
+        /**
+         * @return the fastest of the decodes, 0 for an unencoded body
+         */
+        public long getDecodeNanos() {
+            return decodeNanos;
+        }
+
+        /**
+         * @return the median time from sending the request to having read the whole body
+         */
+        public long getFetchNanos() {
+            return fetchNanos;
+        }
+
+        /**
+         * @return decoded over wire bytes
+         */
+        public double getRatio() {
+            return wireBytes == 0 ? 0 : (double) decodedBytes / wireBytes;
+        }
+
+        public double getWireBytesPerRecord() {
+            return records == 0 ? 0 : (double) wireBytes / records;
+        }
+    }
+
+    /**
+     * Usage: CompressionProfiler, using grant_api_url and the compression settings in config.properties.
+     */
+    public static void main(String[] args) throws Exception {
+        Properties props = ApiConfig.current().toProperties();
+        CompressionProfiler profiler = fromProperties(props);
+        List<Sample> samples = profiler.run(ActivitiesQueries.select(props.getProperty("compression_queries")),
+            parseRows(props.getProperty("compression_rows", "10,100")),
+            props.getProperty("compression_flags", NO_FLAGS + ",titles").split("\\s*,\\s*"),
+            props.getProperty("compression_encodings", "identity,gzip,deflate,br").split("\\s*,\\s*"));
+        print(samples, System.out);
+    }
+
+    /**
+     * @param rows comma separated list of rows values
+     */
+    public static int[] parseRows(String rows) {
+        String[] values = rows.trim().split("\\s*,\\s*");
+        int[] parsed = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            parsed[i] = Integer.parseInt(values[i]);
+        }
+        return parsed;
+    }
+}
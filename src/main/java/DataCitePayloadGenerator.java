@@ -0,0 +1,276 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Produces unique variants of a DataCite resource, by default sample.xml, for mint and
+ * update load tests. The template is split once into literal byte ranges around the text
+ * of its identifier, first title, first creatorName and publicationYear; each variant is
+ * those ranges copied in order with generated values written between them, so no XML is
+ * parsed or built per document.
+ *
+ * Variant n always has the same content, with DOI prefix + n, a title and creator picked
+ * from fixed word lists and a year between 1990 and 2025.
+ */
+public class DataCitePayloadGenerator {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private static final byte[][] ADJECTIVES = words("Coastal", "Alpine", "Urban", "Marine", "Arid", "Tropical",
+        "Subantarctic", "Riverine", "Temperate", "Remote", "Volcanic", "Estuarine");
+    private static final byte[][] SUBJECTS = words("fish survey", "soil moisture", "bird census", "reef imagery",
+        "rainfall record", "seagrass mapping", "frog acoustics", "sediment cores", "bat telemetry", "weed spread");
+    private static final byte[][] SURNAMES = words("Nguyen", "Smith", "Williams", "Brown", "Wilson", "Taylor",
+        "Johnson", "White", "Martin", "Anderson", "Thompson", "Walker", "Tran", "Harris", "Lee");
+    private static final byte[][] GIVEN_NAMES = words("Minh", "Olivia", "Jack", "Charlotte", "William", "Mia",
+        "Noah", "Amelia", "Duc", "Isla", "Oliver", "Grace");
+    private static final byte[] DATASET = " dataset ".getBytes(ASCII);
+    private static final byte[] COMMA = ", ".getBytes(ASCII);
+
+    private enum Slot {IDENTIFIER, TITLE, CREATOR, YEAR}
+
+    private final byte[] template;
+    private final byte[] doiPrefix;
+    private final Slot[] slots;
+    private final int[] literalStart;
+    private final int[] literalEnd;
+    private final int maxLength;
+
+    /**
+     * Uses sample.xml as the template.
+     */
+    public DataCitePayloadGenerator(String doiPrefix) {
+        this(toArray(ResourceCache.bytes("sample.xml")), doiPrefix);
+    }
+
+    /**
+     * @param template  a DataCite resource with identifier, title, creatorName and publicationYear elements
+     * @param doiPrefix prepended to the variant number to form its DOI
+     */
+    public DataCitePayloadGenerator(byte[] template, String doiPrefix) {
+        this.template = template;
+        this.doiPrefix = doiPrefix.getBytes(ASCII);
+
+        final int[][] ranges = new int[Slot.values().length][];
+        ranges[Slot.IDENTIFIER.ordinal()] = textOf(template, "identifier");
+        ranges[Slot.TITLE.ordinal()] = textOf(template, "title");
+        ranges[Slot.CREATOR.ordinal()] = textOf(template, "creatorName");
+        ranges[Slot.YEAR.ordinal()] = textOf(template, "publicationYear");
+        List<Slot> ordered = new ArrayList<Slot>(Arrays.asList(Slot.values()));
+        Collections.sort(ordered, new Comparator<Slot>() {
+            public int compare(Slot a, Slot b) {
+                return ranges[a.ordinal()][0] - ranges[b.ordinal()][0];
+            }
+        });
+
+        slots = ordered.toArray(new Slot[ordered.size()]);
+        literalStart = new int[slots.length + 1];
+        literalEnd = new int[slots.length + 1];
+        int position = 0;
+        int literalLength = 0;
+        for (int i = 0; i < slots.length; i++) {
+            int[] range = ranges[slots[i].ordinal()];
+            literalStart[i] = position;
+            literalEnd[i] = range[0];
+            literalLength += range[0] - position;
+            position = range[1];
+        }
+        literalStart[slots.length] = position;
+        literalEnd[slots.length] = template.length;
+        literalLength += template.length - position;
+        maxLength = literalLength + this.doiPrefix.length + 20
+            + longest(ADJECTIVES) + 1 + longest(SUBJECTS) + DATASET.length + 20
+            + longest(SURNAMES) + COMMA.length + longest(GIVEN_NAMES) + 4;
+    }
+
+    /**
+     * @return an upper bound of the length of any variant, for sizing buffers
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    public String doi(long n) {
+        return new String(doiPrefix, ASCII) + n;
+    }
+
+    public byte[] generate(long n) {
+        ByteBuffer out = ByteBuffer.allocate(maxLength);
+        writeTo(n, out);
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    /**
+     * Writes variant n at the buffer's position without allocating.
+     *
+     * @return the number of bytes written
+     */
+    public int writeTo(long n, ByteBuffer out) {
+        int start = out.position();
+        for (int i = 0; i < slots.length; i++) {
+            out.put(template, literalStart[i], literalEnd[i] - literalStart[i]);
+            switch (slots[i]) {
+                case IDENTIFIER:
+                    out.put(doiPrefix);
+                    putLong(out, n);
+                    break;
+                case TITLE:
+                    out.put(pick(ADJECTIVES, n)).put((byte) ' ').put(pick(SUBJECTS, n / ADJECTIVES.length))
+                        .put(DATASET);
+                    putLong(out, n);
+                    break;
+                case CREATOR:
+                    long mixed = mix(n);
+                    out.put(pick(SURNAMES, mixed)).put(COMMA).put(pick(GIVEN_NAMES, mixed / SURNAMES.length));
+                    break;
+                case YEAR:
+                    putLong(out, 1990 + (n % 36));
+                    break;
+            }
+        }
+        out.put(template, literalStart[slots.length], literalEnd[slots.length] - literalStart[slots.length]);
+        return out.position() - start;
+    }
+
+    /**
+     * @return the offsets of the text of the first element with the given name
+     */
+    private static int[] textOf(byte[] xml, String element) {
+        byte[] open = ("<" + element).getBytes(ASCII);
+        byte[] close = ("</" + element + ">").getBytes(ASCII);
+        for (int i = indexOf(xml, open, 0); i >= 0; i = indexOf(xml, open, i + 1)) {
+            int next = i + open.length;
+            // skip longer names sharing the prefix, e.g. titles for title
+            if (next < xml.length && (xml[next] == '>' || xml[next] == ' ')) {
+                int start = indexOf(xml, new byte[]{'>'}, next) + 1;
+                int end = indexOf(xml, close, start);
+                if (start <= 0 || end < 0) {
+                    break;
+                }
+                return new int[]{start, end};
+            }
+        }
+        throw new IllegalArgumentException("The template has no " + element + " element");
+    }
+
+    private static int indexOf(byte[] bytes, byte[] target, int from) {
+        outer:
+        for (int i = from; i <= bytes.length - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (bytes[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static void putLong(ByteBuffer out, long value) {
+        if (value < 0) {
+            out.put((byte) '-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            out.put((byte) ('0' + (value / divisor) % 10));
+        }
+    }
+
+    private static byte[] pick(byte[][] words, long n) {
+        return words[(int) (n % words.length)];
+    }
+
+    /**
+     * Spreads consecutive variant numbers over the creator names, so neighbours differ.
+     */
+    private static long mix(long n) {
+        n = (n ^ (n >>> 33)) * 0xff51afd7ed558ccdL;
+        return (n ^ (n >>> 33)) & Long.MAX_VALUE;
+    }
+
+    private static byte[][] words(String... words) {
+        byte[][] bytes = new byte[words.length][];
+        for (int i = 0; i < words.length; i++) {
+            bytes[i] = words[i].getBytes(ASCII);
+        }
+        return bytes;
+    }
+
+    private static int longest(byte[][] words) {
+        int longest = 0;
+        for (byte[] word : words) {
+            longest = Math.max(longest, word.length);
+        }
+        return longest;
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Usage: DataCitePayloadGenerator count [dir]
+     *
+     * With a directory, writes count variants and a BulkMinter manifest.tsv pointing at them.
+     * Without one, generates count variants in memory and prints the generation rate.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: DataCitePayloadGenerator count [dir]");
+            System.exit(2);
+        }
+        long count = Long.parseLong(args[0]);
+        DataCitePayloadGenerator generator = new DataCitePayloadGenerator("10.5072/00/load-");
+        ByteBuffer buffer = ByteBuffer.allocate(generator.getMaxLength());
+        if (args.length > 1) {
+            File dir = new File(args[1]);
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Unable to create " + dir);
+            }
+            Writer manifest = new OutputStreamWriter(new FileOutputStream(new File(dir, "manifest.tsv")), "UTF-8");
+            try {
+                for (long n = 0; n < count; n++) {
+                    buffer.clear();
+                    generator.writeTo(n, buffer);
+                    String name = "payload-" + n + ".xml";
+                    OutputStream out = new FileOutputStream(new File(dir, name));
+                    try {
+                        out.write(buffer.array(), 0, buffer.position());
+                    } finally {
+                        out.close();
+                    }
+                    manifest.write("http://example.org/load/" + n + "\t" + name + "\n");
+                }
+            } finally {
+                manifest.close();
+            }
+            System.out.println("Wrote " + count + " payloads and manifest.tsv to " + dir);
+        } else {
+            long bytes = 0;
+            long start = System.nanoTime();
+            for (long n = 0; n < count; n++) {
+                buffer.clear();
+                bytes += generator.writeTo(n, buffer);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d payloads, %d bytes in %.2f s: %.0f payloads/s, %.1f MB/s%n",
+                count, bytes, seconds, count / seconds, bytes / seconds / (1024 * 1024));
+        }
+    }
+}
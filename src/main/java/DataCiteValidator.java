@@ -0,0 +1,248 @@
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Validates DataCite documents against an XML schema compiled once per schema URL.
+ * The compiled Schema is thread safe but Validators are not, so every thread keeps
+ * its own. Documents are streamed through the validator's SAX parser, never built
+ * into a tree. Counts of validated and rejected documents are kept across calls.
+ */
+public class DataCiteValidator {
+
+    public static final String KERNEL_3 = "http://schema.datacite.org/meta/kernel-3/metadata.xsd";
+
+    private static final ConcurrentMap<String, Schema> SCHEMAS = new ConcurrentHashMap<String, Schema>();
+
+    private final Schema schema;
+    private final ThreadLocal<Validator> validators = new ThreadLocal<Validator>() {
+        @Override
+        protected Validator initialValue() {
+            return schema.newValidator();
+        }
+    };
+    private final AtomicLong validated = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong nanos = new AtomicLong();
+
+    public DataCiteValidator(Schema schema) {
+        this.schema = schema;
+    }
+
+    /**
+     * @param schemaUrl location of the XSD; schemas it includes are resolved relative to it
+     */
+    public static DataCiteValidator forSchema(URL schemaUrl) throws SAXException {
+        return new DataCiteValidator(compile(schemaUrl));
+    }
+
+    /**
+     * Reads datacite_schema, defaulting to the kernel-3 schema sample.xml refers to.
+     */
+    public static DataCiteValidator fromProperties(Properties props) throws SAXException, IOException {
+        String location = props.getProperty("datacite_schema", "").trim();
+        return forSchema(new URL(location.isEmpty() ? KERNEL_3 : location));
+    }
+
+    /**
+     * @return the schema at the URL, compiled on first use only
+     */
+    static Schema compile(URL schemaUrl) throws SAXException {
+        String key = schemaUrl.toExternalForm();
+        Schema schema = SCHEMAS.get(key);
+        if (schema == null) {
+            // SchemaFactory is not thread safe, and compiling twice would waste the point of caching
+            synchronized (SCHEMAS) {
+                schema = SCHEMAS.get(key);
+                if (schema == null) {
+                    schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(schemaUrl);
+                    SCHEMAS.put(key, schema);
+                }
+            }
+        }
+        return schema;
+    }
+
+    /**
+     * @return null if the document is valid, otherwise the first problem found
+     */
+    public String check(byte[] document) throws IOException {
+        return check(new ByteArrayInputStream(document), document.length);
+    }
+
+    /**
+     * @return null if the document is valid, otherwise the first problem found
+     */
+    public String check(InputStream document) throws IOException {
+        return check(document, 0);
+    }
+
+    private String check(InputStream document, long length) throws IOException {
+        Validator validator = validators.get();
+        long start = System.nanoTime();
+        try {
+            validator.validate(new StreamSource(document));
+            return null;
+        } catch (SAXException e) {
+            rejected.incrementAndGet();
+            return e.getMessage();
+        } finally {
+            validator.reset();
+            nanos.addAndGet(System.nanoTime() - start);
+            validated.incrementAndGet();
+            bytes.addAndGet(length);
+        }
+    }
+
+    /**
+     * Validates the documents on the given number of threads.
+     */
+    public Batch checkAll(final List<byte[]> documents, int threads) throws InterruptedException {
+        final Batch batch = new Batch();
+        final AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            pool.execute(new Runnable() {
+                public void run() {
+                    for (int i = next.getAndIncrement(); i < documents.size(); i = next.getAndIncrement()) {
+                        byte[] document = documents.get(i);
+                        String problem;
+                        try {
+                            problem = check(document);
+                        } catch (IOException e) {
+                            problem = e.toString();
+                        }
+                        batch.documents.incrementAndGet();
+                        batch.bytes.addAndGet(document.length);
+                        if (problem != null) {
+                            batch.reject(i, problem);
+                        }
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        batch.elapsedNanos = System.nanoTime() - start;
+        return batch;
+    }
+
+    public long getValidated() {
+        return validated.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return mean validation time per document, in microseconds of one thread's time
+     */
+    public double getMeanMicros() {
+        long count = validated.get();
+        return count == 0 ? 0 : nanos.get() / 1000.0 / count;
+    }
+
+    public void print(PrintStream out) {
+        out.printf("validated %d, rejected %d, %.1f us per document, %d bytes%n",
+            getValidated(), getRejected(), getMeanMicros(), bytes.get());
+    }
+
+    /**
+     * Outcome of {@link #checkAll(List, int)}.
+     */
+    public static class Batch {
+
+        private final AtomicLong documents = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final List<String> rejections = new ArrayList<String>();
+        private long elapsedNanos;
+
+        private void reject(int index, String problem) {
+            rejected.incrementAndGet();
+            synchronized (rejections) {
+                if (rejections.size() < 10) {
+                    rejections.add("document " + index + ": " + problem);
+                }
+            }
+        }
+
+        public long getDocuments() {
+            return documents.get();
+        }
+
+        public long getRejected() {
+            return rejected.get();
+        }
+
+        /**
+         * @return the first 10 rejections
+         */
+        public List<String> getRejections() {
+            synchronized (rejections) {
+                return new ArrayList<String>(rejections);
+            }
+        }
+
+        public double getDocumentsPerSecond() {
+            return elapsedNanos == 0 ? 0 : documents.get() / (elapsedNanos / 1e9);
+        }
+
+        public double getBytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : bytes.get() / (elapsedNanos / 1e9);
+        }
+
+        public void print(PrintStream out) {
+            out.printf("%d documents, %d rejected in %.2f s: %.0f documents/s, %.1f MB/s%n",
+                getDocuments(), getRejected(), elapsedNanos / 1e9, getDocumentsPerSecond(),
+                getBytesPerSecond() / (1024 * 1024));
+            for (String rejection : getRejections()) {
+                out.println(rejection);
+            }
+        }
+    }
+
+    /**
+     * Usage: DataCiteValidator count [threads], validating count generated payloads against
+     * datacite_schema from config.properties on threads threads, one per core by default.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: DataCiteValidator count [threads]");
+            System.exit(2);
+        }
+        int count = Integer.parseInt(args[0]);
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        DataCiteValidator validator = fromProperties(ApiConfig.current().toProperties());
+        DataCitePayloadGenerator generator = new DataCitePayloadGenerator("10.5072/00/load-");
+        List<byte[]> documents = new ArrayList<byte[]>(count);
+        for (int i = 0; i < count; i++) {
+            documents.add(generator.generate(i));
+        }
+        // one pass to warm up the validators and the JIT
+        validator.checkAll(documents, threads);
+        validator.checkAll(documents, threads).print(System.out);
+    }
+}
@@ -0,0 +1,207 @@
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URLEncoder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Minimal client for the DOI (CMD) service used outside of the REST-assured tests,
+ * sending requests with HttpURLConnection, through {@link RelaxedHttps} as the tests accept
+ * the test hosts' certificates, and reading the response element with StAX.
+ * Instances are thread safe.
+ */
+public class DoiServiceClient {
+
+    private static final XMLInputFactory XML = XMLInputFactory.newInstance();
+
+    private final String serviceUrl;
+    private final String appId;
+    private final String authHeader;
+    private final int timeoutMillis;
+
+    public DoiServiceClient(String serviceUrl, String appId, String authHeader, int timeoutMillis) {
+        this.serviceUrl = serviceUrl.endsWith("/") ? serviceUrl : serviceUrl + "/";
+        this.appId = appId;
+        this.authHeader = authHeader;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Reads service_url, app_id and auth_header.
+     */
+    public static DoiServiceClient fromProperties(Properties props) {
+        return new DoiServiceClient(props.getProperty("service_url"), props.getProperty("app_id"),
+            props.getProperty("auth_header"), 30000);
+    }
+
+    public Response status() throws IOException {
+        return call("status.xml", new LinkedHashMap<String, String>(), null);
+    }
+
+    public Response mint(String url, String xml) throws IOException {
+        Map<String, String> query = new LinkedHashMap<String, String>();
+        query.put("url", url);
+        query.put("app_id", appId);
+        return call("mint.xml", query, xml);
+    }
+
+    /**
+     * @param url the new landing page, or null to keep it
+     * @param xml the new metadata, or null to keep it
+     */
+    public Response update(String doi, String url, String xml) throws IOException {
+        Map<String, String> query = new LinkedHashMap<String, String>();
+        query.put("doi", doi);
+        if (url != null) {
+            query.put("url", url);
+        }
+        query.put("app_id", appId);
+        return call("update.xml", query, xml);
+    }
+
+    public Response activate(String doi) throws IOException {
+        return change("activate.xml", doi);
+    }
+
+    public Response deactivate(String doi) throws IOException {
+        return change("deactivate.xml", doi);
+    }
+
+    private Response change(String operation, String doi) throws IOException {
+        Map<String, String> query = new LinkedHashMap<String, String>();
+        query.put("doi", doi);
+        query.put("app_id", appId);
+        return call(operation, query, null);
+    }
+
+    /**
+     * Sends the query parameters in the URL and the xml, if any, as a form encoded POST body.
+     */
+    private Response call(String operation, Map<String, String> query, String xml) throws IOException {
+        StringBuilder url = new StringBuilder(serviceUrl).append(operation).append('/');
+        char separator = '?';
+        for (Map.Entry<String, String> entry : query.entrySet()) {
+            url.append(separator).append(entry.getKey()).append('=')
+                .append(URLEncoder.encode(entry.getValue() == null ? "" : entry.getValue(), "UTF-8"));
+            separator = '&';
+        }
+        HttpURLConnection connection = RelaxedHttps.open(url.toString(), timeoutMillis);
+        if (authHeader != null && !authHeader.isEmpty()) {
+            connection.setRequestProperty("Authorization", authHeader);
+        }
+        if (xml != null) {
+            byte[] body = ("xml=" + URLEncoder.encode(xml, "UTF-8")).getBytes("UTF-8");
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded; charset=UTF-8");
+            OutputStream out = connection.getOutputStream();
+            try {
+                out.write(body);
+            } finally {
+                out.close();
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        byte[] body = in == null ? new byte[0] : ResourceCache.readFully(in);
+        return Response.parse(status, body);
+    }
+
+    /**
+     * The service's &lt;response type="..."&gt; element. Responses that are not of that
+     * shape have a null type and response code.
+     */
+    public static class Response {
+
+        private final int httpStatus;
+        private String type;
+        private String responseCode;
+        private String message;
+        private String doi;
+        private String url;
+
+        private Response(int httpStatus) {
+            this.httpStatus = httpStatus;
+        }
+
+        static Response parse(int httpStatus, byte[] body) {
+            Response response = new Response(httpStatus);
+            if (body.length == 0) {
+                return response;
+            }
+            try {
+                XMLStreamReader reader = XML.createXMLStreamReader(new ByteArrayInputStream(body));
+                try {
+                    while (reader.hasNext()) {
+                        if (reader.next() == XMLStreamReader.START_ELEMENT) {
+                            String element = reader.getLocalName();
+                            if (element.equals("response")) {
+                                response.type = reader.getAttributeValue(null, "type");
+                            } else if (response.type != null) {
+                                String text = reader.getElementText();
+                                if (element.equals("responsecode")) {
+                                    response.responseCode = text.trim();
+                                } else if (element.equals("message")) {
+                                    response.message = text.trim();
+                                } else if (element.equals("doi")) {
+                                    response.doi = text.trim();
+                                } else if (element.equals("url")) {
+                                    response.url = text.trim();
+                                }
+                            } else {
+                                // not a service response, e.g. the metadata returned by xml.xml
+                                break;
+                            }
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            } catch (XMLStreamException e) {
+                // an HTML error page or similar, leave the code empty
+            }
+            return response;
+        }
+
+        public int getHttpStatus() {
+            return httpStatus;
+        }
+
+        public boolean isSuccess() {
+            return "success".equals(type) && httpStatus < 400;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getResponseCode() {
+            return responseCode;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public String getDoi() {
+            return doi;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        @Override
+        public String toString() {
+            return "HTTP " + httpStatus + " " + type + " " + responseCode + (message != null ? " " + message : "");
+        }
+    }
+}
@@ -0,0 +1,406 @@
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives a pool of DOIs through random but valid lifecycle transitions from several threads
+ * for a long time, checking every response against a client side model of each DOI: minted
+ * DOIs start active, update keeps the state and replaces the URL, deactivate is only sent to
+ * active DOIs and activate only to inactive ones. Each DOI has at most one request in flight.
+ *
+ * A response with another response code, DOI or URL than the model expects is a violation.
+ * Unavailable responses (HTTP 5xx, MT005) leave the model as it was and are counted as
+ * errors; when a request fails without a response its outcome is unknown, so the DOI is
+ * abandoned and a new one minted in its place.
+ *
+ * Latency is recorded per transition, cumulatively and for every report interval so that
+ * a service slowing down over the run shows up in the interval lines and the drift column.
+ */
+public class DoiSoak {
+
+    public enum Transition {
+        MINT("MT001"), UPDATE("MT002"), DEACTIVATE("MT003"), ACTIVATE("MT004");
+
+        private final String responseCode;
+
+        Transition(String responseCode) {
+            this.responseCode = responseCode;
+        }
+
+        public String getResponseCode() {
+            return responseCode;
+        }
+    }
+
+    private static final int MAX_MESSAGES = 10;
+
+    private final DoiServiceClient client;
+    private final String landingUrl;
+    private final int dois;
+    private final int threads;
+    private final long durationMillis;
+    private final long intervalMillis;
+    private PrintStream out = System.out;
+
+    /**
+     * @param landingUrl     URL the DOIs resolve to, updates add a #fragment to it
+     * @param dois           size of the pool of DOIs, at least threads
+     * @param threads        requests in flight
+     * @param durationMillis length of the run
+     * @param intervalMillis how often to print the latency of the last interval
+     */
+    public DoiSoak(DoiServiceClient client, String landingUrl, int dois, int threads,
+                   long durationMillis, long intervalMillis) {
+        this.client = client;
+        this.landingUrl = landingUrl;
+        this.dois = Math.max(dois, threads);
+        this.threads = threads;
+        this.durationMillis = durationMillis;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Reads soak_dois, soak_threads, soak_duration_s and soak_report_interval_s, the landing
+     * page from test_url1 and the settings of DoiServiceClient.
+     */
+    public static DoiSoak fromProperties(Properties props) {
+        return new DoiSoak(DoiServiceClient.fromProperties(props), props.getProperty("test_url1"),
+            Integer.parseInt(props.getProperty("soak_dois", "20").trim()),
+            Integer.parseInt(props.getProperty("soak_threads", "4").trim()),
+            TimeUnit.SECONDS.toMillis(Long.parseLong(props.getProperty("soak_duration_s", "3600").trim())),
+            TimeUnit.SECONDS.toMillis(Long.parseLong(props.getProperty("soak_report_interval_s", "60").trim())));
+    }
+
+    /**
+     * Where interval lines are printed, System.out by default.
+     */
+    public void setOut(PrintStream out) {
+        this.out = out;
+    }
+
+    public Result run() throws InterruptedException {
+        final Result result = new Result();
+        final BlockingQueue<Slot> idle = new ArrayBlockingQueue<Slot>(dois);
+        for (int i = 0; i < dois; i++) {
+            idle.add(new Slot(i));
+        }
+        final String xml = ResourceCache.string("sample.xml");
+        final long deadline = System.currentTimeMillis() + durationMillis;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        result.started = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            final Random random = new Random();
+            pool.execute(new Runnable() {
+                public void run() {
+                    try {
+                        while (System.currentTimeMillis() < deadline && !Thread.currentThread().isInterrupted()) {
+                            Slot slot = idle.poll(100, TimeUnit.MILLISECONDS);
+                            if (slot != null) {
+                                try {
+                                    step(slot, random, xml, result);
+                                } finally {
+                                    idle.add(slot);
+                                }
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+
+        long nextReport = System.currentTimeMillis() + intervalMillis;
+        result.printIntervalHeader(out);
+        while (!pool.awaitTermination(Math.max(1, nextReport - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+            if (System.currentTimeMillis() >= nextReport) {
+                result.printInterval(out);
+                nextReport += intervalMillis;
+            }
+        }
+        result.printInterval(out);
+        result.elapsedNanos = System.nanoTime() - result.started;
+        return result;
+    }
+
+    /**
+     * Sends one transition that is valid in the slot's current state and checks the response.
+     */
+    private void step(Slot slot, Random random, String xml, Result result) {
+        Transition transition = next(slot, random);
+        String url = transition == Transition.MINT ? landingUrl
+            : transition == Transition.UPDATE ? landingUrl + "#soak-" + slot.index + "-" + (++slot.version) : null;
+
+        DoiServiceClient.Response response;
+        long started = System.nanoTime();
+        try {
+            switch (transition) {
+                case MINT:
+                    response = client.mint(url, xml);
+                    break;
+                case UPDATE:
+                    response = client.update(slot.doi, url, null);
+                    break;
+                case DEACTIVATE:
+                    response = client.deactivate(slot.doi);
+                    break;
+                default:
+                    response = client.activate(slot.doi);
+                    break;
+            }
+        } catch (IOException e) {
+            result.record(transition, System.nanoTime() - started, false);
+            result.errors.incrementAndGet();
+            result.message(transition + " " + slot.doi + ": " + e + ", abandoning it");
+            abandon(slot, result);
+            return;
+        }
+        long latency = System.nanoTime() - started;
+
+        if (response.getHttpStatus() >= 500 || "MT005".equals(response.getResponseCode())) {
+            result.record(transition, latency, false);
+            result.errors.incrementAndGet();
+            return;
+        }
+        String violation = verify(transition, slot, url, response);
+        result.record(transition, latency, violation == null);
+        if (violation != null) {
+            result.violations.incrementAndGet();
+            result.message(transition + " " + slot.doi + ": " + violation);
+            // the service no longer agrees with the model, start over with a new DOI
+            abandon(slot, result);
+            return;
+        }
+        apply(transition, slot, url, response);
+    }
+
+    private static Transition next(Slot slot, Random random) {
+        if (slot.doi == null) {
+            return Transition.MINT;
+        }
+        if (random.nextBoolean()) {
+            return Transition.UPDATE;
+        }
+        return slot.active ? Transition.DEACTIVATE : Transition.ACTIVATE;
+    }
+
+    /**
+     * @return what the response got wrong according to the model, or null if it is as expected
+     */
+    static String verify(Transition transition, Slot slot, String url, DoiServiceClient.Response response) {
+        if (!response.isSuccess() || !transition.getResponseCode().equals(response.getResponseCode())) {
+            return "expected " + transition.getResponseCode() + " but was " + response;
+        }
+        if (transition == Transition.MINT) {
+            if (response.getDoi() == null || response.getDoi().isEmpty()) {
+                return "no DOI in " + response;
+            }
+        } else if (response.getDoi() != null && !response.getDoi().equals(slot.doi)) {
+            return "expected DOI " + slot.doi + " but was " + response.getDoi();
+        }
+        String expectedUrl = url != null ? url : slot.url;
+        if (response.getUrl() != null && !response.getUrl().isEmpty() && expectedUrl != null
+            && !response.getUrl().equals(expectedUrl)) {
+            return "expected URL " + expectedUrl + " but was " + response.getUrl();
+        }
+        return null;
+    }
+
+    static void apply(Transition transition, Slot slot, String url, DoiServiceClient.Response response) {
+        switch (transition) {
+            case MINT:
+                slot.doi = response.getDoi();
+                slot.url = url;
+                slot.active = true;
+                break;
+            case UPDATE:
+                slot.url = url;
+                break;
+            case DEACTIVATE:
+                slot.active = false;
+                break;
+            default:
+                slot.active = true;
+                break;
+        }
+    }
+
+    private static void abandon(Slot slot, Result result) {
+        if (slot.doi != null) {
+            result.abandoned.incrementAndGet();
+        }
+        slot.doi = null;
+        slot.url = null;
+        slot.active = false;
+    }
+
+    /**
+     * The model of one DOI of the pool, only touched by the thread that took it from the pool.
+     */
+    static class Slot {
+        final int index;
+        String doi;
+        String url;
+        boolean active;
+        int version;
+
+        Slot(int index) {
+            this.index = index;
+        }
+    }
+
+    public static class Result {
+
+        private final Map<Transition, Recorder> intervals = new EnumMap<Transition, Recorder>(Transition.class);
+        private final Map<Transition, Histogram> firstIntervals = new EnumMap<Transition, Histogram>(Transition.class);
+        private final Map<Transition, Histogram> lastIntervals = new EnumMap<Transition, Histogram>(Transition.class);
+        private final LoadReport report;
+        private final AtomicLong violations = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong abandoned = new AtomicLong();
+        private final List<String> messages = new ArrayList<String>();
+        private long started;
+        private long elapsedNanos;
+
+        Result() {
+            List<String> names = new ArrayList<String>();
+            for (Transition transition : Transition.values()) {
+                intervals.put(transition, new Recorder(3));
+                names.add(transition.name().toLowerCase(Locale.ROOT));
+            }
+            report = new LoadReport(names);
+            report.start();
+        }
+
+        void record(Transition transition, long latencyNanos, boolean success) {
+            intervals.get(transition).recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+            report.record(transition.name().toLowerCase(Locale.ROOT), latencyNanos, success);
+        }
+
+        synchronized void message(String message) {
+            if (messages.size() < MAX_MESSAGES) {
+                messages.add(message);
+            }
+        }
+
+        void printIntervalHeader(PrintStream out) {
+            out.printf("%8s %-12s %8s %9s %9s %9s%n", "time s", "transition", "requests", "p50 ms", "p99 ms", "max ms");
+        }
+
+        /**
+         * Prints and resets the latency of every transition since the previous interval.
+         */
+        void printInterval(PrintStream out) {
+            double seconds = (System.nanoTime() - started) / 1e9;
+            for (Transition transition : Transition.values()) {
+                Histogram interval = intervals.get(transition).getIntervalHistogram();
+                if (interval.getTotalCount() == 0) {
+                    continue;
+                }
+                if (!firstIntervals.containsKey(transition)) {
+                    firstIntervals.put(transition, interval);
+                }
+                lastIntervals.put(transition, interval);
+                out.printf(Locale.ROOT, "%8.1f %-12s %8d %9.1f %9.1f %9.1f%n", seconds,
+                    transition.name().toLowerCase(Locale.ROOT), interval.getTotalCount(),
+                    interval.getValueAtPercentile(50) / 1000.0, interval.getValueAtPercentile(99) / 1000.0,
+                    interval.getMaxValue() / 1000.0);
+            }
+        }
+
+        /**
+         * @return responses that contradicted the model
+         */
+        public long getViolations() {
+            return violations.get();
+        }
+
+        /**
+         * @return requests that failed with HTTP 5xx, MT005 or without a response
+         */
+        public long getErrors() {
+            return errors.get();
+        }
+
+        /**
+         * @return DOIs given up on after a violation or a request with an unknown outcome
+         */
+        public long getAbandoned() {
+            return abandoned.get();
+        }
+
+        public long getCount(Transition transition) {
+            return report.histogram(transition.name().toLowerCase(Locale.ROOT)).getTotalCount();
+        }
+
+        public Histogram getHistogram(Transition transition) {
+            return report.histogram(transition.name().toLowerCase(Locale.ROOT));
+        }
+
+        /**
+         * @return p99 of the last report interval over p99 of the first, 0 without both
+         */
+        public double getDrift(Transition transition) {
+            Histogram first = firstIntervals.get(transition);
+            Histogram last = lastIntervals.get(transition);
+            if (first == null || last == null || first == last) {
+                return 0;
+            }
+            return (double) last.getValueAtPercentile(99) / first.getValueAtPercentile(99);
+        }
+
+        /**
+         * @return the first 10 violation and error messages
+         */
+        public synchronized List<String> getMessages() {
+            return new ArrayList<String>(messages);
+        }
+
+        public void print(PrintStream out) {
+            report.stop();
+            out.printf(Locale.ROOT, "%d violations, %d errors, %d DOIs abandoned in %.1f s%n",
+                getViolations(), getErrors(), getAbandoned(), elapsedNanos / 1e9);
+            report.print(out);
+            for (Transition transition : Transition.values()) {
+                double drift = getDrift(transition);
+                if (drift > 0) {
+                    out.printf(Locale.ROOT, "%-12s p99 drift %.2fx, first to last interval%n",
+                        transition.name().toLowerCase(Locale.ROOT), drift);
+                }
+            }
+            for (String message : getMessages()) {
+                out.println(message);
+            }
+        }
+    }
+
+    /**
+     * Usage: DoiSoak [duration_s], using the service and soak settings in config.properties.
+     */
+    public static void main(String[] args) throws Exception {
+        Properties props = ApiConfig.current().toProperties();
+        if (args.length > 0) {
+            props.setProperty("soak_duration_s", args[0]);
+        }
+        Result result = fromProperties(props).run();
+        result.print(System.out);
+        System.exit(result.getViolations() == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,274 @@
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays the responses of a FixtureStore over HTTP/1.1 with keep-alive, on a single
+ * NIO selector thread. Bodies are sent from disk with FileChannel.transferTo, so they
+ * never pass through the heap and serving cost stays flat as fixtures get larger.
+ * Requests without a fixture get a 404.
+ */
+public class FixtureServer implements Runnable {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private final Map<String, FixtureStore.Fixture> fixtures;
+    private final Map<File, FileChannel> bodies = new HashMap<File, FileChannel>();
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile boolean running;
+
+    /**
+     * @param port port to listen on, 0 for any free port
+     */
+    public FixtureServer(FixtureStore store, int port) throws IOException {
+        fixtures = store.load();
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress("localhost", port), 128);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public FixtureServer start() {
+        running = true;
+        Thread thread = new Thread(this, "fixture-server");
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    public int getFixtureCount() {
+        return fixtures.size();
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return requests that had no recorded fixture
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else if (key.isReadable()) {
+                            read(key);
+                        } else if (key.isWritable()) {
+                            write(key);
+                        }
+                    } catch (IOException e) {
+                        close(key);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Fixture server stopped: " + e.getMessage());
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                close(key);
+            }
+            try {
+                selector.close();
+                server.close();
+            } catch (IOException ignored) {
+            }
+            for (FileChannel body : bodies.values()) {
+                try {
+                    body.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            channel.register(selector, SelectionKey.OP_READ, new Connection());
+        }
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        if (((SocketChannel) key.channel()).read(connection.in) < 0) {
+            close(key);
+            return;
+        }
+        handle(key, connection);
+    }
+
+    /**
+     * Starts the response to the next complete request in the buffer, if there is one.
+     */
+    private void handle(SelectionKey key, Connection connection) throws IOException {
+        ByteBuffer in = connection.in;
+        int end = headersEnd(in);
+        if (end < 0) {
+            if (!in.hasRemaining()) {
+                throw new IOException("Request headers too large");
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            return;
+        }
+        String head = new String(in.array(), 0, end, ASCII);
+        in.flip();
+        in.position(end + 4);
+        in.compact();
+
+        String[] lines = head.split("\r\n");
+        String[] requestLine = lines[0].split(" ");
+        connection.close = requestLine.length < 3 || !requestLine[2].equals("HTTP/1.1");
+        for (int i = 1; i < lines.length; i++) {
+            String line = lines[i].toLowerCase();
+            if (line.startsWith("connection:")) {
+                connection.close = line.contains("close");
+            }
+        }
+        requests.incrementAndGet();
+        if (requestLine.length < 2 || !(requestLine[0].equals("GET") || requestLine[0].equals("HEAD"))) {
+            respond(connection, 405, "text/plain", "Only GET and HEAD are supported\n");
+        } else {
+            String target = requestLine[1];
+            int query = target.indexOf('?');
+            String request = query < 0
+                ? FixtureStore.key(target, null)
+                : FixtureStore.key(target.substring(0, query), target.substring(query + 1));
+            FixtureStore.Fixture fixture = fixtures.get(request);
+            if (fixture == null) {
+                misses.incrementAndGet();
+                respond(connection, 404, "text/plain", "No fixture recorded for " + request + "\n");
+            } else {
+                FileChannel body = body(fixture.getBody());
+                connection.header = header(fixture.getStatus(), fixture.getContentType(), body.size(), connection.close);
+                connection.body = requestLine[0].equals("GET") ? body : null;
+                connection.position = 0;
+                connection.end = body.size();
+            }
+        }
+        key.interestOps(SelectionKey.OP_WRITE);
+        write(key);
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        SocketChannel channel = (SocketChannel) key.channel();
+        if (connection.header.hasRemaining()) {
+            channel.write(connection.header);
+            if (connection.header.hasRemaining()) {
+                return;
+            }
+        }
+        while (connection.body != null && connection.position < connection.end) {
+            long sent = connection.body.transferTo(connection.position, connection.end - connection.position, channel);
+            if (sent == 0) {
+                return;
+            }
+            connection.position += sent;
+        }
+        connection.body = null;
+        if (connection.close) {
+            close(key);
+        } else {
+            handle(key, connection);
+        }
+    }
+
+    private void respond(Connection connection, int status, String contentType, String message) {
+        byte[] body = message.getBytes(ASCII);
+        ByteBuffer header = header(status, contentType, body.length, connection.close);
+        ByteBuffer response = ByteBuffer.allocate(header.remaining() + body.length);
+        response.put(header).put(body).flip();
+        connection.header = response;
+        connection.body = null;
+    }
+
+    private static ByteBuffer header(int status, String contentType, long length, boolean close) {
+        String header = "HTTP/1.1 " + status + " " + (status == 200 ? "OK" : status == 404 ? "Not Found" : "Status") + "\r\n"
+            + (contentType.isEmpty() ? "" : "Content-Type: " + contentType + "\r\n")
+            + "Content-Length: " + length + "\r\n"
+            + (close ? "Connection: close\r\n" : "")
+            + "\r\n";
+        return ByteBuffer.wrap(header.getBytes(ASCII));
+    }
+
+    private FileChannel body(File file) throws IOException {
+        FileChannel body = bodies.get(file);
+        if (body == null) {
+            body = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            bodies.put(file, body);
+        }
+        return body;
+    }
+
+    /**
+     * @return the offset of the blank line ending the request headers, or -1 if it has not arrived yet
+     */
+    private static int headersEnd(ByteBuffer in) {
+        byte[] bytes = in.array();
+        for (int i = 0; i + 3 < in.position(); i++) {
+            if (bytes[i] == '\r' && bytes[i + 1] == '\n' && bytes[i + 2] == '\r' && bytes[i + 3] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static class Connection {
+
+        final ByteBuffer in = ByteBuffer.allocate(16 * 1024);
+        ByteBuffer header;
+        FileChannel body;
+        long position;
+        long end;
+        boolean close;
+    }
+}
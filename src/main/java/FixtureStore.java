@@ -0,0 +1,157 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * On-disk store of recorded HTTP responses, keyed by request path and query parameters
+ * regardless of their order. Each response is kept as a raw body file next to a small
+ * properties file holding the request, status and content type, so bodies can be served
+ * straight from disk.
+ */
+public class FixtureStore {
+
+    private final File dir;
+
+    public FixtureStore(File dir) {
+        this.dir = dir;
+    }
+
+    public File getDir() {
+        return dir;
+    }
+
+    /**
+     * @return the path followed by the decoded query parameters in sorted order
+     */
+    public static String key(String rawPath, String rawQuery) {
+        List<String> pairs = new ArrayList<String>();
+        if (rawQuery != null && !rawQuery.isEmpty()) {
+            for (String pair : rawQuery.split("&")) {
+                if (!pair.isEmpty()) {
+                    pairs.add(decode(pair));
+                }
+            }
+        }
+        Collections.sort(pairs);
+        StringBuilder key = new StringBuilder(decode(rawPath));
+        for (int i = 0; i < pairs.size(); i++) {
+            key.append(i == 0 ? '?' : '&').append(pairs.get(i));
+        }
+        return key.toString();
+    }
+
+    public void save(String rawPath, String rawQuery, int status, String contentType, byte[] body) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir);
+        }
+        String key = key(rawPath, rawQuery);
+        String name = fileName(key);
+        OutputStream out = new FileOutputStream(new File(dir, name + ".body"));
+        try {
+            out.write(body);
+        } finally {
+            out.close();
+        }
+        Properties meta = new Properties();
+        meta.setProperty("request", key);
+        meta.setProperty("status", Integer.toString(status));
+        meta.setProperty("content_type", contentType == null ? "" : contentType);
+        out = new FileOutputStream(new File(dir, name + ".properties"));
+        try {
+            meta.store(out, null);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads the metadata of every fixture in the store.
+     *
+     * @return fixtures keyed by {@link #key(String, String)}
+     */
+    public Map<String, Fixture> load() throws IOException {
+        Map<String, Fixture> fixtures = new HashMap<String, Fixture>();
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return fixtures;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.endsWith(".properties")) {
+                continue;
+            }
+            Properties meta = new Properties();
+            InputStream in = new FileInputStream(file);
+            try {
+                meta.load(in);
+            } finally {
+                in.close();
+            }
+            File body = new File(dir, name.substring(0, name.length() - ".properties".length()) + ".body");
+            fixtures.put(meta.getProperty("request"), new Fixture(
+                Integer.parseInt(meta.getProperty("status", "200")), meta.getProperty("content_type", ""), body));
+        }
+        return fixtures;
+    }
+
+    private static String fileName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes("UTF-8"));
+            StringBuilder name = new StringBuilder();
+            for (byte b : digest) {
+                name.append(String.format("%02x", b & 0xff));
+            }
+            return name.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static class Fixture {
+
+        private final int status;
+        private final String contentType;
+        private final File body;
+
+        Fixture(int status, String contentType, File body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public File getBody() {
+            return body;
+        }
+    }
+}
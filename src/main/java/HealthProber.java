@@ -0,0 +1,287 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the checks of CMDEndPointTest.getBaseUrl, getServiceUrl and getServiceStatus, and a
+ * choice of the ActivitiesQueries shapes, every probe_interval_s for as long as it is left
+ * running, and serves their rolling window latency and availability on /metrics in the
+ * Prometheus text format.
+ *
+ * Each probe keeps its results in a {@link ProbeWindow} of probe_ring_size, so memory does
+ * not grow with uptime. Windows are the probe_windows in seconds, each reported as gauges of
+ * the availability, latency quantiles and count of the results in it. The latency summary
+ * itself only has the cumulative sum and count, which Prometheus expects never to go down.
+ */
+public class HealthProber {
+
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99, 1};
+
+    private final List<Probe> probes;
+    private final long intervalMillis;
+    private final int timeoutMillis;
+    private final long[] windowsSeconds;
+    private final int threads;
+    private ScheduledExecutorService scheduler;
+    private HttpServer server;
+
+    /**
+     * @param windowsSeconds the rolling windows reported
+     * @param ringSize       results kept per probe
+     */
+    public HealthProber(List<AsyncCheckRunner.Check> checks, long intervalMillis, int timeoutMillis,
+                        long[] windowsSeconds, int ringSize, int threads) {
+        long now = System.currentTimeMillis();
+        probes = new ArrayList<Probe>();
+        for (AsyncCheckRunner.Check check : checks) {
+            probes.add(new Probe(check, new ProbeWindow(ringSize, now)));
+        }
+        this.intervalMillis = intervalMillis;
+        this.timeoutMillis = timeoutMillis;
+        this.windowsSeconds = windowsSeconds.clone();
+        this.threads = threads;
+        long longest = 0;
+        for (long window : windowsSeconds) {
+            longest = Math.max(longest, window);
+        }
+        long coveredMillis = intervalMillis * ringSize;
+        if (TimeUnit.SECONDS.toMillis(longest) > coveredMillis) {
+            System.out.println("probe_ring_size " + ringSize + " only holds " + coveredMillis / 1000.0
+                + "s of results at " + intervalMillis + "ms intervals, the " + longest + "s window will be partial");
+        }
+    }
+
+    /**
+     * Reads base_url, service_url, grant_api_url, probe_queries and the other probe settings.
+     */
+    public static HealthProber fromConfig(ApiConfig config) {
+        String[] windows = config.get("probe_windows", "60,300,3600").trim().split("\\s*,\\s*");
+        long[] windowsSeconds = new long[windows.length];
+        for (int i = 0; i < windows.length; i++) {
+            windowsSeconds[i] = Long.parseLong(windows[i]);
+        }
+        return new HealthProber(checks(config), TimeUnit.SECONDS.toMillis(config.getLong("probe_interval_s", 15)),
+            config.getInt("probe_timeout_ms", 10000), windowsSeconds, config.getInt("probe_ring_size", 4096),
+            config.getInt("probe_threads", 2));
+    }
+
+    /**
+     * The base, service and status checks, and the probe_queries shapes, none when blank.
+     */
+    public static List<AsyncCheckRunner.Check> checks(ApiConfig config) {
+        List<AsyncCheckRunner.Check> checks = new ArrayList<AsyncCheckRunner.Check>();
+        checks.add(new AsyncCheckRunner.Check("base", config.getBaseUrl(), 200, null));
+        checks.add(new AsyncCheckRunner.Check("service", config.getServiceUrl(), 200, null));
+        checks.addAll(AsyncCheckRunner.checks(config, "status"));
+        String queries = config.get("probe_queries", "").trim();
+        if (!queries.isEmpty()) {
+            checks.addAll(AsyncCheckRunner.activities(config, queries));
+        }
+        return checks;
+    }
+
+    /**
+     * Starts probing, spreading the probes over the interval, and serves /metrics on the port.
+     *
+     * @param port 0 for any free port
+     */
+    public HealthProber start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 16);
+        server.setExecutor(Executors.newSingleThreadExecutor(daemon("prober metrics")));
+        server.createContext("/metrics", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = metrics().getBytes("UTF-8");
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+
+        scheduler = Executors.newScheduledThreadPool(threads, daemon("prober"));
+        for (int i = 0; i < probes.size(); i++) {
+            final Probe probe = probes.get(i);
+            // fixed rate tasks never overlap themselves, so each ring has a single writer
+            scheduler.scheduleAtFixedRate(new Runnable() {
+                public void run() {
+                    probe(probe);
+                }
+            }, i * intervalMillis / probes.size(), intervalMillis, TimeUnit.MILLISECONDS);
+        }
+        return this;
+    }
+
+    private static ThreadFactory daemon(final String name) {
+        return new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Runs every probe once on the calling thread.
+     */
+    public void probeAll() {
+        for (Probe probe : probes) {
+            probe(probe);
+        }
+    }
+
+    private void probe(Probe probe) {
+        long started = System.nanoTime();
+        boolean success;
+        try {
+            success = fetch(probe.check);
+        } catch (IOException e) {
+            success = false;
+        } catch (RuntimeException e) {
+            // a scheduled task that throws is never run again
+            success = false;
+        }
+        probe.window.record(System.currentTimeMillis(), System.nanoTime() - started, success);
+        probe.up = success;
+    }
+
+    private boolean fetch(AsyncCheckRunner.Check check) throws IOException {
+        HttpURLConnection connection = RelaxedHttps.open(check.getUrl(), timeoutMillis);
+        int status = connection.getResponseCode();
+        InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        String body = in == null ? null : new String(ResourceCache.readFully(in), "UTF-8");
+        return check.failure(status, body) == null;
+    }
+
+    /**
+     * @return every probe's state in the Prometheus text exposition format
+     */
+    public String metrics() {
+        long now = System.currentTimeMillis();
+        StringBuilder out = new StringBuilder();
+        out.append("# HELP ands_probe_up Whether the last probe succeeded.\n");
+        out.append("# TYPE ands_probe_up gauge\n");
+        for (Probe probe : probes) {
+            out.append("ands_probe_up{probe=\"").append(label(probe)).append("\"} ").append(probe.up ? 1 : 0).append('\n');
+        }
+        out.append("# HELP ands_probe_total Probes run since the prober started.\n");
+        out.append("# TYPE ands_probe_total counter\n");
+        for (Probe probe : probes) {
+            out.append("ands_probe_total{probe=\"").append(label(probe)).append("\"} ")
+                .append(probe.window.getTotal()).append('\n');
+        }
+
+        List<ProbeWindow.Stats[]> stats = new ArrayList<ProbeWindow.Stats[]>();
+        for (Probe probe : probes) {
+            ProbeWindow.Stats[] windows = new ProbeWindow.Stats[windowsSeconds.length];
+            for (int w = 0; w < windowsSeconds.length; w++) {
+                windows[w] = probe.window.stats(TimeUnit.SECONDS.toMillis(windowsSeconds[w]), now);
+            }
+            stats.add(windows);
+        }
+        out.append("# HELP ands_probe_availability Fraction of the probes in the window that succeeded.\n");
+        out.append("# TYPE ands_probe_availability gauge\n");
+        for (int p = 0; p < probes.size(); p++) {
+            for (int w = 0; w < windowsSeconds.length; w++) {
+                out.append("ands_probe_availability{").append(labels(p, w)).append("} ")
+                    .append(format(stats.get(p)[w].getAvailability())).append('\n');
+            }
+        }
+        out.append("# HELP ands_probe_window_latency_seconds Latency of the probes in the window, failed ones included.\n");
+        out.append("# TYPE ands_probe_window_latency_seconds gauge\n");
+        for (int p = 0; p < probes.size(); p++) {
+            for (int w = 0; w < windowsSeconds.length; w++) {
+                for (double quantile : QUANTILES) {
+                    out.append("ands_probe_window_latency_seconds{").append(labels(p, w)).append(",quantile=\"")
+                        .append(format(quantile)).append("\"} ")
+                        .append(format(stats.get(p)[w].getLatencyMicros(quantile) / 1e6)).append('\n');
+                }
+            }
+        }
+        out.append("# HELP ands_probe_window_count Probes in the window.\n");
+        out.append("# TYPE ands_probe_window_count gauge\n");
+        for (int p = 0; p < probes.size(); p++) {
+            for (int w = 0; w < windowsSeconds.length; w++) {
+                out.append("ands_probe_window_count{").append(labels(p, w)).append("} ")
+                    .append(stats.get(p)[w].getCount()).append('\n');
+            }
+        }
+        out.append("# HELP ands_probe_latency_seconds Latency of every probe since the prober started.\n");
+        out.append("# TYPE ands_probe_latency_seconds summary\n");
+        for (Probe probe : probes) {
+            out.append("ands_probe_latency_seconds_sum{probe=\"").append(label(probe)).append("\"} ")
+                .append(format(probe.window.getTotalMicros() / 1e6)).append('\n');
+            out.append("ands_probe_latency_seconds_count{probe=\"").append(label(probe)).append("\"} ")
+                .append(probe.window.getTotal()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private String labels(int probe, int window) {
+        return "probe=\"" + label(probes.get(probe)) + "\",window=\"" + windowsSeconds[window] + "s\"";
+    }
+
+    private static String label(Probe probe) {
+        return probe.check.getName().replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static String format(double value) {
+        return Double.isNaN(value) ? "NaN" : String.format(Locale.ROOT, "%s", value);
+    }
+
+    private static class Probe {
+        final AsyncCheckRunner.Check check;
+        final ProbeWindow window;
+        volatile boolean up;
+
+        Probe(AsyncCheckRunner.Check check, ProbeWindow window) {
+            this.check = check;
+            this.window = window;
+        }
+    }
+
+    /**
+     * Usage: HealthProber, using the probe settings in config.properties, until it is killed.
+     */
+    public static void main(String[] args) throws Exception {
+        ApiConfig config = ApiConfig.current();
+        final HealthProber prober = fromConfig(config).start(config.getInt("probe_port", 9464));
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                prober.stop();
+            }
+        });
+        System.out.println("Probing " + prober.probes.size() + " endpoints every " + prober.intervalMillis
+            + "ms, metrics on http://localhost:" + prober.getPort() + "/metrics");
+        Thread.currentThread().join();
+    }
+}
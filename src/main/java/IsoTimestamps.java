@@ -0,0 +1,198 @@
+/**
+ * Parses ISO-8601 timestamps such as 2015-11-28T13:15:30Z straight into epoch milliseconds,
+ * from bytes, chars or any CharSequence, without creating Strings, Dates or Calendars.
+ * Stateless, so safe to share between any number of threads.
+ *
+ * Accepted: yyyy-MM-dd, optionally followed by T or a space and HH:mm[:ss[.fraction]], then
+ * optionally Z, +HH:mm, +HHmm or +HH. Timestamps without a zone are taken as UTC, as the
+ * activities API writes some dateTimeModified values without one.
+ */
+public final class IsoTimestamps {
+
+    /**
+     * Returned by the tryParse methods for anything that is not a valid timestamp.
+     */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private interface Source {
+        int at(Object source, int index);
+    }
+
+    private static final Source BYTES = new Source() {
+        public int at(Object source, int index) {
+            return ((byte[]) source)[index];
+        }
+    };
+
+    private static final Source CHARS = new Source() {
+        public int at(Object source, int index) {
+            return ((char[]) source)[index];
+        }
+    };
+
+    private static final Source SEQUENCE = new Source() {
+        public int at(Object source, int index) {
+            return ((CharSequence) source).charAt(index);
+        }
+    };
+
+    private static final int[] DAYS_BEFORE_MONTH = {0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334};
+
+    private IsoTimestamps() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if the value is not a valid timestamp
+     */
+    public static long parse(CharSequence value) {
+        long millis = tryParse(value);
+        if (millis == INVALID) {
+            throw new IllegalArgumentException("Not an ISO-8601 timestamp: " + value);
+        }
+        return millis;
+    }
+
+    public static long tryParse(CharSequence value) {
+        return value == null ? INVALID : parse(SEQUENCE, value, 0, value.length());
+    }
+
+    /**
+     * Parses ASCII bytes, e.g. straight out of a response buffer.
+     */
+    public static long tryParse(byte[] bytes, int offset, int length) {
+        return parse(BYTES, bytes, offset, length);
+    }
+
+    /**
+     * Parses chars, e.g. a JSON parser's text buffer.
+     */
+    public static long tryParse(char[] chars, int offset, int length) {
+        return parse(CHARS, chars, offset, length);
+    }
+
+    private static long parse(Source in, Object source, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        // yyyy-MM-dd
+        if (length < 10 || in.at(source, i + 4) != '-' || in.at(source, i + 7) != '-') {
+            return INVALID;
+        }
+        int year = digits(in, source, i, 4);
+        int month = digits(in, source, i + 5, 2);
+        int day = digits(in, source, i + 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return INVALID;
+        }
+        i += 10;
+
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        int millis = 0;
+        if (i < end && (in.at(source, i) == 'T' || in.at(source, i) == ' ')) {
+            // HH:mm
+            if (end - i < 6 || in.at(source, i + 3) != ':') {
+                return INVALID;
+            }
+            hour = digits(in, source, i + 1, 2);
+            minute = digits(in, source, i + 4, 2);
+            i += 6;
+            // :ss
+            if (i < end && in.at(source, i) == ':') {
+                if (end - i < 3) {
+                    return INVALID;
+                }
+                second = digits(in, source, i + 1, 2);
+                i += 3;
+                // .fraction, of which milliseconds are kept
+                if (i < end && (in.at(source, i) == '.' || in.at(source, i) == ',')) {
+                    i++;
+                    int start = i;
+                    int scale = 100;
+                    while (i < end && isDigit(in.at(source, i))) {
+                        millis += (in.at(source, i) - '0') * scale;
+                        scale /= 10;
+                        i++;
+                    }
+                    if (i == start) {
+                        return INVALID;
+                    }
+                }
+            }
+            if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+                return INVALID;
+            }
+        }
+
+        int offsetMinutes = 0;
+        if (i < end) {
+            int c = in.at(source, i);
+            if (c == 'Z' || c == 'z') {
+                i++;
+            } else if (c == '+' || c == '-') {
+                int sign = c == '-' ? -1 : 1;
+                int zoneHours = end - i >= 3 ? digits(in, source, i + 1, 2) : -1;
+                int zoneMinutes = 0;
+                i += 3;
+                if (i < end && in.at(source, i) == ':') {
+                    i++;
+                }
+                if (i < end) {
+                    zoneMinutes = end - i >= 2 ? digits(in, source, i, 2) : -1;
+                    i += 2;
+                }
+                if (zoneHours < 0 || zoneHours > 18 || zoneMinutes < 0 || zoneMinutes > 59) {
+                    return INVALID;
+                }
+                offsetMinutes = sign * (zoneHours * 60 + zoneMinutes);
+            }
+        }
+        if (i != end) {
+            return INVALID;
+        }
+
+        long seconds = daysSinceEpoch(year, month, day) * 86400L + hour * 3600 + minute * 60 + second
+            - offsetMinutes * 60L;
+        return seconds * 1000 + millis;
+    }
+
+    /**
+     * @return the value of count decimal digits, or -1 if any of them is not a digit
+     */
+    private static int digits(Source in, Object source, int index, int count) {
+        int value = 0;
+        for (int i = index; i < index + count; i++) {
+            int c = in.at(source, i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + c - '0';
+        }
+        return value;
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            return isLeapYear(year) ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    private static long daysSinceEpoch(int year, int month, int day) {
+        long y = year - 1;
+        long days = 365 * y + y / 4 - y / 100 + y / 400 + DAYS_BEFORE_MONTH[month - 1] + day - 1;
+        if (month > 2 && isLeapYear(year)) {
+            days++;
+        }
+        // days from 0001-01-01 to 1970-01-01
+        return days - 719162;
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * A response time budget for one endpoint, declared in config.properties as
+ * <pre>latency_budget.&lt;endpoint&gt;=p&lt;percentile&gt;:&lt;millis&gt;[:&lt;samples&gt;]</pre>
+ * e.g. <code>latency_budget.activities?q=p95:300:20</code> for "p95 of activities?q= under
+ * 300 ms over 20 samples".
+ */
+public class LatencyBudget {
+
+    public static final String PREFIX = "latency_budget.";
+
+    private final String endpoint;
+    private final double percentile;
+    private final long millis;
+    private final int samples;
+
+    public LatencyBudget(String endpoint, double percentile, long millis, int samples) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile out of range for " + endpoint + ": " + percentile);
+        }
+        if (samples < 1) {
+            throw new IllegalArgumentException("Samples must be at least 1 for " + endpoint);
+        }
+        this.endpoint = endpoint;
+        this.percentile = percentile;
+        this.millis = millis;
+        this.samples = samples;
+    }
+
+    /**
+     * @param endpoint       endpoint name as recorded by the latency instrumentation
+     * @param value          p&lt;percentile&gt;:&lt;millis&gt;[:&lt;samples&gt;]
+     * @param defaultSamples samples to take when the value does not specify them
+     */
+    public static LatencyBudget parse(String endpoint, String value, int defaultSamples) {
+        String[] parts = value.trim().split(":");
+        if (parts.length < 2 || parts.length > 3 || !parts[0].startsWith("p")) {
+            throw new IllegalArgumentException(
+                "Invalid latency budget for " + endpoint + ", expected p<percentile>:<millis>[:<samples>]: " + value);
+        }
+        try {
+            return new LatencyBudget(endpoint,
+                Double.parseDouble(parts[0].substring(1)),
+                Long.parseLong(parts[1].trim()),
+                parts.length == 3 ? Integer.parseInt(parts[2].trim()) : defaultSamples);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid latency budget for " + endpoint + ": " + value, e);
+        }
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public double getPercentile() {
+        return percentile;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+
+    @Override
+    public String toString() {
+        return "p" + (percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile))
+            + " of " + endpoint + " under " + millis + " ms over " + samples + " samples";
+    }
+}
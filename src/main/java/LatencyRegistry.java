@@ -0,0 +1,205 @@
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per endpoint latency histograms, split by the phase of the HTTP exchange.
+ * Values are recorded in microseconds.
+ */
+public class LatencyRegistry {
+
+    public enum Phase {
+        TOTAL, CONNECT, TLS, TTFB, DOWNLOAD
+    }
+
+    private static final double[] PERCENTILES = {50, 90, 95, 99, 99.9};
+
+    private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<String, Endpoint>();
+    private final long startMillis = System.currentTimeMillis();
+
+    public void record(String endpoint, Phase phase, long nanos) {
+        endpoint(endpoint).histograms[phase.ordinal()]
+            .recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(nanos)));
+    }
+
+    public void recordError(String endpoint) {
+        endpoint(endpoint).errors.incrementAndGet();
+    }
+
+    /**
+     * @param tls     whether a TLS handshake was made on the new connection
+     * @param resumed whether that handshake resumed an earlier session
+     */
+    public void recordConnection(String endpoint, boolean tls, boolean resumed) {
+        Endpoint e = endpoint(endpoint);
+        e.connections.incrementAndGet();
+        if (tls) {
+            (resumed ? e.resumedHandshakes : e.fullHandshakes).incrementAndGet();
+        }
+    }
+
+    public Histogram histogram(String endpoint, Phase phase) {
+        return endpoint(endpoint).histograms[phase.ordinal()];
+    }
+
+    public long errors(String endpoint) {
+        return endpoint(endpoint).errors.get();
+    }
+
+    public long connections(String endpoint) {
+        return endpoint(endpoint).connections.get();
+    }
+
+    public long fullHandshakes(String endpoint) {
+        return endpoint(endpoint).fullHandshakes.get();
+    }
+
+    public long resumedHandshakes(String endpoint) {
+        return endpoint(endpoint).resumedHandshakes.get();
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public Iterable<String> endpoints() {
+        return new TreeMap<String, Endpoint>(endpoints).keySet();
+    }
+
+    private Endpoint endpoint(String name) {
+        Endpoint endpoint = endpoints.get(name);
+        if (endpoint == null) {
+            Endpoint created = new Endpoint();
+            endpoint = endpoints.putIfAbsent(name, created);
+            if (endpoint == null) {
+                endpoint = created;
+            }
+        }
+        return endpoint;
+    }
+
+    /**
+     * Writes latency-summary.json and latency-summary.csv into the given directory.
+     */
+    public void writeSummary(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir);
+        }
+        writeJson(new File(dir, "latency-summary.json"));
+        writeCsv(new File(dir, "latency-summary.csv"));
+    }
+
+    private void writeJson(File file) throws IOException {
+        SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        iso.setTimeZone(TimeZone.getTimeZone("UTC"));
+        PrintWriter out = writer(file);
+        try {
+            out.println("{");
+            out.println("  \"started\": \"" + iso.format(new Date(startMillis)) + "\",");
+            out.println("  \"unit\": \"ms\",");
+            out.println("  \"endpoints\": {");
+            String separator = "";
+            for (String name : endpoints()) {
+                out.print(separator);
+                out.println("    \"" + escape(name) + "\": {");
+                out.println("      \"errors\": " + errors(name) + ",");
+                out.println("      \"connections\": " + connections(name) + ",");
+                out.println("      \"fullHandshakes\": " + fullHandshakes(name) + ",");
+                out.println("      \"resumedHandshakes\": " + resumedHandshakes(name) + ",");
+                String phaseSeparator = "";
+                for (Phase phase : Phase.values()) {
+                    Histogram h = histogram(name, phase);
+                    out.print(phaseSeparator);
+                    out.print("      \"" + phase.name().toLowerCase() + "\": {\"count\": " + h.getTotalCount());
+                    out.print(", \"mean\": " + String.format(Locale.ROOT, "%.3f", h.getMean() / 1000.0));
+                    for (double p : PERCENTILES) {
+                        out.print(", \"p" + label(p) + "\": " + millis(h.getValueAtPercentile(p)));
+                    }
+                    out.print(", \"max\": " + millis(h.getMaxValue()) + "}");
+                    phaseSeparator = ",\n";
+                }
+                out.println();
+                out.print("    }");
+                separator = ",\n";
+            }
+            out.println();
+            out.println("  }");
+            out.println("}");
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeCsv(File file) throws IOException {
+        PrintWriter out = writer(file);
+        try {
+            out.print("endpoint,phase,count,errors,connections,full_handshakes,resumed_handshakes,mean_ms");
+            for (double p : PERCENTILES) {
+                out.print(",p" + label(p) + "_ms");
+            }
+            out.println(",max_ms");
+            for (String name : endpoints()) {
+                for (Phase phase : Phase.values()) {
+                    Histogram h = histogram(name, phase);
+                    out.print("\"" + name.replace("\"", "\"\"") + "\"," + phase.name().toLowerCase() + ","
+                        + h.getTotalCount() + "," + errors(name) + "," + connections(name) + ","
+                        + fullHandshakes(name) + "," + resumedHandshakes(name) + ","
+                        + String.format(Locale.ROOT, "%.3f", h.getMean() / 1000.0));
+                    for (double p : PERCENTILES) {
+                        out.print("," + millis(h.getValueAtPercentile(p)));
+                    }
+                    out.println("," + millis(h.getMaxValue()));
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static PrintWriter writer(File file) throws IOException {
+        return new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+    }
+
+    private static String label(double percentile) {
+        return percentile == Math.rint(percentile)
+            ? String.valueOf((long) percentile)
+            : String.valueOf(percentile).replace(".", "_");
+    }
+
+    private static String millis(long micros) {
+        return String.format(Locale.ROOT, "%.3f", micros / 1000.0);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static class Endpoint {
+        final Histogram[] histograms = new Histogram[Phase.values().length];
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong connections = new AtomicLong();
+        final AtomicLong fullHandshakes = new AtomicLong();
+        final AtomicLong resumedHandshakes = new AtomicLong();
+
+        Endpoint() {
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new ConcurrentHistogram(3);
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a set of named requests from a fixed pool of workers at a target
+ * request rate for a fixed duration. The shapes are issued round robin so every
+ * shape receives the same share of the traffic. The rate can be changed while running.
+ */
+public class LoadDriver {
+
+    public interface Request {
+        /**
+         * Issues the request, throwing on any failed status or assertion.
+         */
+        void execute() throws Exception;
+    }
+
+    private final int workers;
+    private volatile double ratePerSecond;
+    private volatile long rateChangedNanos = Long.MIN_VALUE;
+    private final long durationMillis;
+
+    /**
+     * How long a worker waiting for its slot goes without checking for a rate change.
+     */
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * @param workers        number of concurrent workers
+     * @param ratePerSecond  target request rate across all workers, 0 for unthrottled
+     * @param durationMillis how long to generate load for
+     */
+    public LoadDriver(int workers, double ratePerSecond, long durationMillis) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers must be at least 1");
+        }
+        this.workers = workers;
+        this.ratePerSecond = ratePerSecond;
+        this.durationMillis = durationMillis;
+    }
+
+    /**
+     * Changes the target request rate of a run in progress, 0 for unthrottled.
+     */
+    public void setRate(double ratePerSecond) {
+        this.ratePerSecond = ratePerSecond;
+        rateChangedNanos = System.nanoTime();
+    }
+
+    public LoadReport run(Map<String, Request> shapes) throws InterruptedException {
+        final List<String> names = new ArrayList<String>(shapes.keySet());
+        final List<Request> requests = new ArrayList<Request>(shapes.values());
+        final LoadReport report = new LoadReport(names);
+
+        final long start = System.nanoTime();
+        final long end = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        final AtomicLong nextSlot = new AtomicLong(start);
+        final AtomicLong sequence = new AtomicLong();
+        final AtomicLong plannedFor = new AtomicLong(rateChangedNanos);
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        report.start();
+        for (int i = 0; i < workers; i++) {
+            pool.execute(new Runnable() {
+                public void run() {
+                    claim:
+                    while (true) {
+                        // after a rate change the schedule restarts from the change, dropping the
+                        // slots claimed at the old rate rather than working through them first
+                        long changed = rateChangedNanos;
+                        long planned = plannedFor.get();
+                        if (changed != planned && plannedFor.compareAndSet(planned, changed)) {
+                            nextSlot.set(changed);
+                        }
+                        double rate = ratePerSecond;
+                        long intervalNanos = rate > 0 ? (long) (1e9 / rate) : 0;
+                        long slot = nextSlot.getAndAdd(intervalNanos);
+                        if (slot >= end || System.nanoTime() >= end) {
+                            return;
+                        }
+                        long wait;
+                        while ((wait = slot - System.nanoTime()) > 0) {
+                            if (rateChangedNanos != changed) {
+                                continue claim;
+                            }
+                            LockSupport.parkNanos(Math.min(wait, MAX_PARK_NANOS));
+                        }
+                        int index = (int) (sequence.getAndIncrement() % names.size());
+                        boolean success = true;
+                        long sent = System.nanoTime();
+                        try {
+                            requests.get(index).execute();
+                        } catch (Throwable e) {
+                            success = false;
+                        }
+                        report.record(names.get(index), System.nanoTime() - sent, success);
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        if (!pool.awaitTermination(durationMillis + TimeUnit.MINUTES.toMillis(5), TimeUnit.MILLISECONDS)) {
+            pool.shutdownNow();
+        }
+        report.stop();
+        return report;
+    }
+}
@@ -0,0 +1,81 @@
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per query shape latency and error counts collected during a load run.
+ * Latencies are recorded in microseconds.
+ */
+public class LoadReport {
+
+    private final Map<String, Shape> shapes = new LinkedHashMap<String, Shape>();
+    private long startNanos;
+    private long elapsedNanos;
+
+    public LoadReport(Iterable<String> shapeNames) {
+        for (String name : shapeNames) {
+            shapes.put(name, new Shape());
+        }
+    }
+
+    public void start() {
+        startNanos = System.nanoTime();
+    }
+
+    public void stop() {
+        elapsedNanos = System.nanoTime() - startNanos;
+    }
+
+    public void record(String shape, long latencyNanos, boolean success) {
+        Shape s = shapes.get(shape);
+        s.histogram.recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+        if (!success) {
+            s.errors.incrementAndGet();
+        }
+    }
+
+    public Histogram histogram(String shape) {
+        return shapes.get(shape).histogram;
+    }
+
+    public long errors(String shape) {
+        return shapes.get(shape).errors.get();
+    }
+
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public void print(PrintStream out) {
+        double seconds = elapsedNanos / 1e9;
+        out.printf("%-24s %8s %7s %8s %9s %9s %9s %9s %9s%n",
+            "shape", "requests", "errors", "error%", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        for (Map.Entry<String, Shape> entry : shapes.entrySet()) {
+            Histogram h = entry.getValue().histogram;
+            long count = h.getTotalCount();
+            long errors = entry.getValue().errors.get();
+            out.printf("%-24s %8d %7d %7.2f%% %9.2f %9.1f %9.1f %9.1f %9.1f%n",
+                entry.getKey(), count, errors,
+                count == 0 ? 0.0 : 100.0 * errors / count,
+                seconds == 0 ? 0.0 : count / seconds,
+                millis(h.getValueAtPercentile(50)),
+                millis(h.getValueAtPercentile(95)),
+                millis(h.getValueAtPercentile(99)),
+                millis(h.getMaxValue()));
+        }
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static class Shape {
+        final Histogram histogram = new ConcurrentHistogram(3);
+        final AtomicLong errors = new AtomicLong();
+    }
+}
@@ -0,0 +1,354 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+
+/**
+ * In-process stand-in for the DOI (CMD) service, serving status, xml, mint, update,
+ * activate and deactivate with the MT0xx response codes of the real service so the
+ * endpoint tests and load modes can run offline without touching real DOIs. Like the
+ * real service it fails with MT010 to deactivate an inactive DOI or activate an active one.
+ *
+ * Every response can be delayed by a fixed latency plus random jitter, and a fraction
+ * of requests can be failed with HTTP 503 and MT005 to exercise error handling. Another
+ * fraction of update, activate and deactivate requests can be answered wrongly, to check
+ * that clients such as DoiSoak notice a service that disagrees with them.
+ */
+public class MockDoiService {
+
+    public static final String SERVICE_PATH = "/apps/mydois/";
+    public static final String DOI_PREFIX = "10.5072/mock/";
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double errorRate;
+    private final double wrongAnswerRate;
+    private final Random random = new Random();
+    private final Map<String, Doi> dois = new ConcurrentHashMap<String, Doi>();
+    private final AtomicLong minted = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicLong wrongAnswers = new AtomicLong();
+
+    /**
+     * @param port          port to listen on, 0 for any free port
+     * @param latencyMillis delay added to every response
+     * @param jitterMillis  up to this much random delay on top of latencyMillis
+     * @param errorRate     fraction of requests, 0 to 1, failed with HTTP 503
+     */
+    public MockDoiService(int port, long latencyMillis, long jitterMillis, double errorRate) throws IOException {
+        this(port, latencyMillis, jitterMillis, errorRate, 0);
+    }
+
+    /**
+     * @param wrongAnswerRate fraction of update, activate and deactivate requests, 0 to 1, answered
+     *                        wrongly: an update echoes the old URL and is not applied, activate and
+     *                        deactivate report each other's response code
+     */
+    public MockDoiService(int port, long latencyMillis, long jitterMillis, double errorRate,
+                          double wrongAnswerRate) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.errorRate = errorRate;
+        this.wrongAnswerRate = wrongAnswerRate;
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 128);
+        server.setExecutor(executor);
+        server.createContext("/", new Handler());
+    }
+
+    /**
+     * Reads mock_port, mock_latency_ms, mock_jitter_ms, mock_error_rate and mock_wrong_answer_rate.
+     */
+    public static MockDoiService fromProperties(Properties props) throws IOException {
+        return new MockDoiService(
+            Integer.parseInt(props.getProperty("mock_port", "0").trim()),
+            Long.parseLong(props.getProperty("mock_latency_ms", "0").trim()),
+            Long.parseLong(props.getProperty("mock_jitter_ms", "0").trim()),
+            Double.parseDouble(props.getProperty("mock_error_rate", "0").trim()),
+            Double.parseDouble(props.getProperty("mock_wrong_answer_rate", "0").trim()));
+    }
+
+    public MockDoiService start() {
+        server.start();
+        return this;
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String getBaseUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    public String getServiceUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + SERVICE_PATH;
+    }
+
+    /**
+     * Makes an existing, active DOI known to the service, as test_doi1 and test_doi2 are on the real one.
+     */
+    public void register(String doi, String url) {
+        dois.put(doi, new Doi(url, null));
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getInjectedErrorCount() {
+        return injectedErrors.get();
+    }
+
+    public long getWrongAnswerCount() {
+        return wrongAnswers.get();
+    }
+
+    private class Handler implements HttpHandler {
+
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                requests.incrementAndGet();
+                delay();
+                String path = exchange.getRequestURI().getPath();
+                if (!path.startsWith(SERVICE_PATH)) {
+                    send(exchange, 200, "text/html", "<html><body>Mock DOI service</body></html>");
+                    return;
+                }
+                String operation = path.substring(SERVICE_PATH.length());
+                if (operation.endsWith("/")) {
+                    operation = operation.substring(0, operation.length() - 1);
+                }
+                if (operation.isEmpty()) {
+                    send(exchange, 200, "text/html", "<html><body>Mock DOI service</body></html>");
+                    return;
+                }
+                if (errorRate > 0 && nextDouble() < errorRate) {
+                    injectedErrors.incrementAndGet();
+                    send(exchange, 503, "application/xml", response("failure", "MT005",
+                        "The DOI service is unavailable (injected error)", null, null, null));
+                    return;
+                }
+                Map<String, String> params = params(exchange);
+                if (operation.equals("status.xml")) {
+                    send(exchange, 200, "application/xml", response("success", "MT090",
+                        "The Minting Service is working", null, null, null));
+                } else if (operation.equals("xml.xml")) {
+                    metadata(exchange, params);
+                } else if (operation.equals("mint.xml") || operation.equals("update.xml")
+                    || operation.equals("activate.xml") || operation.equals("deactivate.xml")) {
+                    if (isEmpty(exchange.getRequestHeaders().getFirst("Authorization")) || isEmpty(params.get("app_id"))) {
+                        send(exchange, 415, "application/xml", response("failure", "MT009",
+                            "You are not authorised to use this service", params.get("doi"), null, params.get("app_id")));
+                    } else {
+                        change(exchange, operation, params);
+                    }
+                } else {
+                    send(exchange, 404, "application/xml", response("failure", "MT010",
+                        "Unknown service point " + operation, null, null, null));
+                }
+            } catch (RuntimeException e) {
+                send(exchange, 500, "application/xml", response("failure", "MT010", e.toString(), null, null, null));
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private void metadata(HttpExchange exchange, Map<String, String> params) throws IOException {
+            String doi = params.get("doi");
+            Doi record = doi == null ? null : dois.get(doi);
+            if (record == null) {
+                send(exchange, 200, "application/xml", response("failure", "MT011",
+                    "DOI doesn't exist", doi, null, null));
+            } else if (record.xml != null) {
+                send(exchange, 200, "application/xml", record.xml);
+            } else {
+                // DOIs registered without metadata get sample.xml, so the stand-in stays schema valid
+                send(exchange, 200, "application/xml", withIdentifier(ResourceCache.string("sample.xml"), doi));
+            }
+        }
+
+        private void change(HttpExchange exchange, String operation, Map<String, String> params) throws IOException {
+            String appId = params.get("app_id");
+            String url = params.get("url");
+            if (operation.equals("mint.xml")) {
+                String doi = DOI_PREFIX + Long.toHexString(System.currentTimeMillis()).toUpperCase()
+                    + "-" + minted.incrementAndGet();
+                String xml = params.get("xml");
+                if (xml != null) {
+                    xml = withIdentifier(xml, doi);
+                }
+                dois.put(doi, new Doi(url, xml));
+                send(exchange, 200, "application/xml", response("success", "MT001",
+                    "DOI " + doi + " was successfully minted", doi, url, appId));
+                return;
+            }
+            String doi = params.get("doi");
+            Doi record = doi == null ? null : dois.get(doi);
+            if (record == null) {
+                send(exchange, 200, "application/xml", response("failure", "MT011",
+                    "DOI doesn't exist", doi, url, appId));
+            } else if (wrongAnswerRate > 0 && nextDouble() < wrongAnswerRate) {
+                wrongAnswers.incrementAndGet();
+                if (operation.equals("update.xml")) {
+                    send(exchange, 200, "application/xml", response("success", "MT002",
+                        "DOI " + doi + " was successfully updated", doi, record.url, appId));
+                } else if (operation.equals("deactivate.xml")) {
+                    send(exchange, 200, "application/xml", response("success", "MT004",
+                        "DOI " + doi + " was successfully activated", doi, record.url, appId));
+                } else {
+                    send(exchange, 200, "application/xml", response("success", "MT003",
+                        "DOI " + doi + " was successfully inactivated", doi, record.url, appId));
+                }
+            } else if (operation.equals("update.xml")) {
+                if (url != null) {
+                    record.url = url;
+                }
+                if (params.get("xml") != null) {
+                    record.xml = params.get("xml");
+                }
+                send(exchange, 200, "application/xml", response("success", "MT002",
+                    "DOI " + doi + " was successfully updated", doi, record.url, appId));
+            } else if (operation.equals("deactivate.xml")) {
+                if (!record.setActive(false)) {
+                    send(exchange, 200, "application/xml", response("failure", "MT010",
+                        "DOI " + doi + " is not set to active so cannot deactivate it", doi, record.url, appId));
+                    return;
+                }
+                send(exchange, 200, "application/xml", response("success", "MT003",
+                    "DOI " + doi + " was successfully inactivated", doi, record.url, appId));
+            } else {
+                if (!record.setActive(true)) {
+                    send(exchange, 200, "application/xml", response("failure", "MT010",
+                        "DOI " + doi + " is not set to inactive so cannot activate it", doi, record.url, appId));
+                    return;
+                }
+                send(exchange, 200, "application/xml", response("success", "MT004",
+                    "DOI " + doi + " was successfully activated", doi, record.url, appId));
+            }
+        }
+    }
+
+    private void delay() {
+        long millis = latencyMillis + (jitterMillis > 0 ? (long) (nextDouble() * jitterMillis) : 0);
+        if (millis > 0) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private double nextDouble() {
+        synchronized (random) {
+            return random.nextDouble();
+        }
+    }
+
+    /**
+     * Query parameters merged with a form encoded body; any other body is taken as the xml parameter.
+     */
+    private static Map<String, String> params(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<String, String>();
+        decode(exchange.getRequestURI().getRawQuery(), params);
+        String body = new String(ResourceCache.readFully(exchange.getRequestBody()), "UTF-8");
+        if (!body.isEmpty()) {
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+                decode(body, params);
+            } else if (!params.containsKey("xml")) {
+                params.put("xml", body);
+            }
+        }
+        return params;
+    }
+
+    private static void decode(String encoded, Map<String, String> params) throws IOException {
+        if (encoded == null || encoded.isEmpty()) {
+            return;
+        }
+        for (String pair : encoded.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), "UTF-8");
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), "UTF-8");
+            params.put(name, value);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }
+
+    static String response(String type, String code, String message, String doi, String url, String appId) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<response type=\"" + type + "\">\n"
+            + "    <responsecode>" + code + "</responsecode>\n"
+            + "    <message>" + escape(message) + "</message>\n"
+            + "    <doi>" + escape(doi) + "</doi>\n"
+            + "    <url>" + escape(url) + "</url>\n"
+            + "    <app_id>" + escape(appId) + "</app_id>\n"
+            + "    <verbosemessage/>\n"
+            + "</response>\n";
+    }
+
+    private static String withIdentifier(String xml, String doi) {
+        return xml.replaceFirst("(<identifier[^>]*>)[^<]*(</identifier>)",
+            "$1" + Matcher.quoteReplacement(escape(doi)) + "$2");
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    private static class Doi {
+
+        volatile String url;
+        volatile String xml;
+        private boolean active = true;
+
+        Doi(String url, String xml) {
+            this.url = url;
+            this.xml = xml;
+        }
+
+        /**
+         * @return false, leaving the DOI as it is, when it already was in that state
+         */
+        synchronized boolean setActive(boolean active) {
+            if (this.active == active) {
+                return false;
+            }
+            this.active = active;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The most recent results of one probe in a fixed size ring, so that memory stays the same
+ * however long the prober runs. Each result is packed into a single long, the seconds since
+ * the window was created, a failure bit and the latency in microseconds, and written with
+ * one volatile store: writers claim a slot with an atomic increment and readers never see a
+ * half written result, without either taking a lock. Results older than the ring can hold
+ * are overwritten, so a window is only complete while capacity covers it.
+ */
+public class ProbeWindow {
+
+    private static final long LATENCY_MASK = (1L << 31) - 1;
+    private static final long FAILED = 1L << 31;
+
+    private final AtomicLongArray samples;
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final long originMillis;
+
+    /**
+     * @param capacity results kept, rounded up to a power of two
+     */
+    public ProbeWindow(int capacity, long originMillis) {
+        if (capacity < 1 || capacity > 1 << 24) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^24: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        samples = new AtomicLongArray(size);
+        mask = size - 1;
+        this.originMillis = originMillis;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @param nowMillis when the probe finished, not before the window's origin
+     */
+    public void record(long nowMillis, long latencyNanos, boolean success) {
+        long seconds = TimeUnit.MILLISECONDS.toSeconds(nowMillis - originMillis) + 1;
+        long micros = Math.min(LATENCY_MASK, Math.max(0, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+        totalMicros.addAndGet(micros);
+        samples.set((int) (cursor.getAndIncrement() & mask), (seconds << 32) | (success ? 0 : FAILED) | micros);
+    }
+
+    /**
+     * @return the results from the last windowMillis, 0 for everything still in the ring
+     */
+    public Stats stats(long windowMillis, long nowMillis) {
+        long since = windowMillis <= 0 ? 0
+            : TimeUnit.MILLISECONDS.toSeconds(nowMillis - windowMillis - originMillis) + 1;
+        long[] latencies = new long[capacity()];
+        int count = 0;
+        int failures = 0;
+        for (int i = 0; i < latencies.length; i++) {
+            long sample = samples.get(i);
+            // 0 is a slot never written, seconds start at 1
+            if (sample == 0 || (sample >>> 32) < since) {
+                continue;
+            }
+            if ((sample & FAILED) != 0) {
+                failures++;
+            }
+            latencies[count++] = sample & LATENCY_MASK;
+        }
+        long[] window = Arrays.copyOf(latencies, count);
+        Arrays.sort(window);
+        return new Stats(window, failures);
+    }
+
+    /**
+     * @return results recorded since the window was created, including those overwritten
+     */
+    public long getTotal() {
+        return cursor.get();
+    }
+
+    /**
+     * @return the latency of every result recorded since the window was created
+     */
+    public long getTotalMicros() {
+        return totalMicros.get();
+    }
+
+    /**
+     * Latencies, successful or not, and failures within a window.
+     */
+    public static class Stats {
+        private final long[] latencyMicros;
+        private final int failures;
+
+        Stats(long[] sortedLatencyMicros, int failures) {
+            this.latencyMicros = sortedLatencyMicros;
+            this.failures = failures;
+        }
+
+        public int getCount() {
+            return latencyMicros.length;
+        }
+
+        public int getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return the fraction of results that succeeded, NaN without any
+         */
+        public double getAvailability() {
+            return latencyMicros.length == 0 ? Double.NaN
+                : (double) (latencyMicros.length - failures) / latencyMicros.length;
+        }
+
+        /**
+         * @param quantile 0 to 1
+         * @return the nearest rank latency, 0 without any results
+         */
+        public long getLatencyMicros(double quantile) {
+            if (latencyMicros.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(quantile * latencyMicros.length);
+            return latencyMicros[Math.min(latencyMicros.length - 1, Math.max(0, rank - 1))];
+        }
+
+        public long getSumMicros() {
+            long sum = 0;
+            for (long latency : latencyMicros) {
+                sum += latency;
+            }
+            return sum;
+        }
+    }
+}
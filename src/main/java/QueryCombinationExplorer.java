@@ -0,0 +1,294 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Looks for slow combinations of the activities filters. Each parameter is a factor that is
+ * either left out or set to the value ActivitiesAPITest uses for it. Combinations are
+ * generated either pairwise, so that every two parameters appear together, apart and each
+ * without the other at least once, or by random sampling. Every combination is requested a
+ * number of times and the results are ranked by median latency, slowest first, alongside
+ * numFound and how much slower than the unfiltered query they are.
+ */
+public class QueryCombinationExplorer {
+
+    /**
+     * The ActivitiesAPITest parameters explored, valued as in ActivitiesQueries.
+     */
+    public static final String[] PARAMETERS = {"q", "type", "status", "title", "subject", "institution",
+        "funder", "principalInvestigator", "researcher", "fundingScheme", "addedSince"};
+
+    private final String url;
+    private final int repeats;
+    private final int timeoutMillis;
+
+    /**
+     * @param repeats requests per combination
+     */
+    public QueryCombinationExplorer(String url, int repeats, int timeoutMillis) {
+        this.url = url;
+        this.repeats = Math.max(1, repeats);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Reads grant_api_url and explore_repeats.
+     */
+    public static QueryCombinationExplorer fromProperties(Properties props) {
+        return new QueryCombinationExplorer(props.getProperty("grant_api_url"),
+            Integer.parseInt(props.getProperty("explore_repeats", "5").trim()), 30000);
+    }
+
+    /**
+     * @return the parameter values of the single parameter queries in ActivitiesQueries
+     */
+    public static Map<String, String> parameterValues() {
+        Map<String, String> values = new LinkedHashMap<String, String>();
+        for (String parameter : PARAMETERS) {
+            values.put(parameter, ActivitiesQueries.all().get(parameter).get(parameter));
+        }
+        return values;
+    }
+
+    /**
+     * Greedily builds a set of rows, each saying which of the factors are present, in which
+     * every pair of factors takes all four present/absent combinations. Each row is the best
+     * of a number of random candidates at covering pairs not yet covered, so the result is
+     * small but depends on the seed.
+     */
+    public static List<boolean[]> pairwise(int factors, long seed) {
+        Random random = new Random(seed);
+        // uncovered[i][j][a * 2 + b], for i < j, factor i being a and factor j being b
+        boolean[][][] uncovered = new boolean[factors][factors][4];
+        int remaining = 0;
+        for (int i = 0; i < factors; i++) {
+            for (int j = i + 1; j < factors; j++) {
+                Arrays.fill(uncovered[i][j], true);
+                remaining += 4;
+            }
+        }
+        List<boolean[]> rows = new ArrayList<boolean[]>();
+        while (remaining > 0) {
+            boolean[] best = null;
+            int bestCovered = -1;
+            for (int candidate = 0; candidate < 50; candidate++) {
+                boolean[] row = new boolean[factors];
+                for (int i = 0; i < factors; i++) {
+                    row[i] = random.nextBoolean();
+                }
+                int covered = 0;
+                for (int i = 0; i < factors; i++) {
+                    for (int j = i + 1; j < factors; j++) {
+                        if (uncovered[i][j][pair(row, i, j)]) {
+                            covered++;
+                        }
+                    }
+                }
+                if (covered > bestCovered) {
+                    best = row;
+                    bestCovered = covered;
+                }
+            }
+            for (int i = 0; i < factors; i++) {
+                for (int j = i + 1; j < factors; j++) {
+                    if (uncovered[i][j][pair(best, i, j)]) {
+                        uncovered[i][j][pair(best, i, j)] = false;
+                        remaining--;
+                    }
+                }
+            }
+            rows.add(best);
+        }
+        return rows;
+    }
+
+    private static int pair(boolean[] row, int i, int j) {
+        return (row[i] ? 2 : 0) + (row[j] ? 1 : 0);
+    }
+
+    /**
+     * @return count rows with each factor present with probability one half
+     */
+    public static List<boolean[]> sample(int factors, int count, long seed) {
+        Random random = new Random(seed);
+        List<boolean[]> rows = new ArrayList<boolean[]>();
+        for (int n = 0; n < count; n++) {
+            boolean[] row = new boolean[factors];
+            for (int i = 0; i < factors; i++) {
+                row[i] = random.nextBoolean();
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Times the unfiltered query and every distinct combination of the rows, ranked slowest first.
+     */
+    public List<Combination> explore(Map<String, String> values, List<boolean[]> rows) throws IOException {
+        String[] names = values.keySet().toArray(new String[values.size()]);
+        Map<String, Map<String, String>> queries = new LinkedHashMap<String, Map<String, String>>();
+        // keyed like the rows, so an all-absent row is the same query as the unfiltered one
+        Map<String, String> none = new LinkedHashMap<String, String>();
+        queries.put(none.keySet().toString(), none);
+        for (boolean[] row : rows) {
+            Map<String, String> params = new LinkedHashMap<String, String>();
+            for (int i = 0; i < names.length; i++) {
+                if (row[i]) {
+                    params.put(names[i], values.get(names[i]));
+                }
+            }
+            queries.put(params.keySet().toString(), params);
+        }
+
+        List<Combination> combinations = new ArrayList<Combination>();
+        Combination unfiltered = null;
+        for (Map<String, String> params : queries.values()) {
+            Combination combination = time(params);
+            if (unfiltered == null) {
+                unfiltered = combination;
+            }
+            combination.baselineNanos = unfiltered.getMedianNanos();
+            combinations.add(combination);
+        }
+        Collections.sort(combinations, new Comparator<Combination>() {
+            public int compare(Combination a, Combination b) {
+                return Long.compare(b.getMedianNanos(), a.getMedianNanos());
+            }
+        });
+        return combinations;
+    }
+
+    private Combination time(Map<String, String> params) throws IOException {
+        Combination combination = new Combination(params);
+        long[] latencies = new long[repeats];
+        for (int i = 0; i < repeats; i++) {
+            long started = System.nanoTime();
+            HttpURLConnection connection = RelaxedHttps.open(params.isEmpty() ? url
+                : url + "?" + ActivitiesQueries.toQueryString(params), timeoutMillis);
+            int status = connection.getResponseCode();
+            if (status != 200) {
+                connection.disconnect();
+                combination.errors++;
+                latencies[i] = System.nanoTime() - started;
+                continue;
+            }
+            InputStream in = connection.getInputStream();
+            ActivityRecordReader reader = new ActivityRecordReader(in);
+            try {
+                ActivityRecord record = new ActivityRecord();
+                while (reader.next(record)) {
+                    // numFound may follow the records
+                }
+            } finally {
+                reader.close();
+            }
+            latencies[i] = System.nanoTime() - started;
+            combination.numFound = reader.getNumFound();
+            combination.bytes = reader.getBytes();
+        }
+        Arrays.sort(latencies);
+        combination.medianNanos = latencies[latencies.length / 2];
+        combination.maxNanos = latencies[latencies.length - 1];
+        return combination;
+    }
+
+    /**
+     * Prints the top combinations, slowest first.
+     */
+    public static void print(List<Combination> combinations, int top, PrintStream out) {
+        out.printf("%4s %9s %9s %7s %9s %8s %6s  %s%n",
+            "rank", "p50 ms", "max ms", "x base", "numFound", "bytes", "errors", "parameters");
+        for (int i = 0; i < Math.min(top, combinations.size()); i++) {
+            Combination c = combinations.get(i);
+            out.printf(Locale.ROOT, "%4d %9.1f %9.1f %7.2f %9d %8d %6d  %s%n", i + 1,
+                c.getMedianNanos() / 1e6, c.getMaxNanos() / 1e6, c.getSlowdown(), c.getNumFound(),
+                c.getBytes(), c.getErrors(), c.getParams().isEmpty() ? "(none)" : c.getParams().keySet());
+        }
+    }
+
+    /**
+     * One set of filters and how it performed.
+     */
+    public static class Combination {
+        private final Map<String, String> params;
+        long numFound = -1;
+        long bytes;
+        long errors;
+        long medianNanos;
+        long maxNanos;
+        long baselineNanos;
+
+        Combination(Map<String, String> params) {
+            this.params = params;
+        }
+
+        public Map<String, String> getParams() {
+            return params;
+        }
+
+        /**
+         * @return data.numFound of the last successful request, -1 without one
+         */
+        public long getNumFound() {
+            return numFound;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getMedianNanos() {
+            return medianNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * @return median latency over that of the query without filters
+         */
+        public double getSlowdown() {
+            return baselineNanos == 0 ? 0 : (double) medianNanos / baselineNanos;
+        }
+    }
+
+    /**
+     * Usage: QueryCombinationExplorer, using grant_api_url and the explore settings in config.properties.
+     */
+    public static void main(String[] args) throws Exception {
+        Properties props = ApiConfig.current().toProperties();
+        List<Combination> combinations = fromProperties(props).explore(parameterValues(), rows(props));
+        print(combinations, Integer.parseInt(props.getProperty("explore_top", "20").trim()), System.out);
+    }
+
+    /**
+     * The combinations asked for by explore_strategy (pairwise or sample), explore_samples and explore_seed.
+     */
+    public static List<boolean[]> rows(Properties props) {
+        String strategy = props.getProperty("explore_strategy", "pairwise").trim();
+        long seed = Long.parseLong(props.getProperty("explore_seed", "1").trim());
+        if (strategy.equals("pairwise")) {
+            return pairwise(PARAMETERS.length, seed);
+        } else if (strategy.equals("sample")) {
+            return sample(PARAMETERS.length, Integer.parseInt(props.getProperty("explore_samples", "50").trim()), seed);
+        }
+        throw new IllegalArgumentException("Unknown explore_strategy " + strategy + ", expected pairwise or sample");
+    }
+}
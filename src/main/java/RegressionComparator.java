@@ -0,0 +1,382 @@
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares every endpoint of a run from the {@link ResultsStore} with a baseline run and
+ * flags the endpoints that got significantly slower. Two tests have to agree before an
+ * endpoint is flagged:
+ *
+ * a one-sided Mann-Whitney U test on the two latency distributions, computed straight from
+ * the histograms with mid ranks for the values that tie, which says whether the candidate's
+ * latencies tend to be higher at all; and a bootstrap confidence interval for the ratio of
+ * the candidate's latency quantile to the baseline's, which says by how much. An endpoint
+ * regressed when the U test's p value is under alpha and the whole interval is above
+ * 1 + minChange, and improved in the mirror case. Throughput and error counts are shown
+ * alongside but, being single numbers per run, are not tested.
+ */
+public class RegressionComparator {
+
+    public enum Verdict {
+        REGRESSED, IMPROVED, UNCHANGED, MISSING
+    }
+
+    private final double alpha;
+    private final double minChange;
+    private final double quantile;
+    private final int iterations;
+    private final int maxResample;
+    private final long seed;
+
+    /**
+     * @param alpha       significance level of the Mann-Whitney test
+     * @param minChange   smallest relative change flagged, 0.1 for 10%
+     * @param quantile    latency quantile compared by the bootstrap, 0.5 for the median
+     * @param iterations  bootstrap resamples
+     * @param maxResample values drawn per resample at most, fewer than the requests only widens the interval
+     */
+    public RegressionComparator(double alpha, double minChange, double quantile, int iterations, int maxResample,
+                                long seed) {
+        this.alpha = alpha;
+        this.minChange = minChange;
+        this.quantile = quantile;
+        this.iterations = iterations;
+        this.maxResample = maxResample;
+        this.seed = seed;
+    }
+
+    /**
+     * Reads regression_alpha, regression_min_change, regression_quantile and regression_bootstrap.
+     */
+    public static RegressionComparator fromProperties(Properties props) {
+        return new RegressionComparator(
+            Double.parseDouble(props.getProperty("regression_alpha", "0.01").trim()),
+            Double.parseDouble(props.getProperty("regression_min_change", "0.1").trim()),
+            Double.parseDouble(props.getProperty("regression_quantile", "0.5").trim()),
+            Integer.parseInt(props.getProperty("regression_bootstrap", "1000").trim()), 5000, 1);
+    }
+
+    /**
+     * Picks the run to compare the last one with: "previous", the latest run with the given
+     * label, or with a number of days such as "7d", the latest run at least that much older.
+     *
+     * @return null if there is no such run
+     */
+    public static ResultsStore.Run baseline(List<ResultsStore.Run> runs, String baseline) {
+        if (runs.size() < 2) {
+            return null;
+        }
+        ResultsStore.Run candidate = runs.get(runs.size() - 1);
+        for (int i = runs.size() - 2; i >= 0; i--) {
+            ResultsStore.Run run = runs.get(i);
+            if (baseline.equals("previous")) {
+                return run;
+            } else if (baseline.matches("\\d+d")) {
+                long days = Long.parseLong(baseline.substring(0, baseline.length() - 1));
+                if (candidate.getStartedMillis() - run.getStartedMillis() >= TimeUnit.DAYS.toMillis(days)) {
+                    return run;
+                }
+            } else if (baseline.equals(run.getLabel())) {
+                return run;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return a comparison for every endpoint in either run, in name order
+     */
+    public List<Comparison> compare(ResultsStore.Run baseline, ResultsStore.Run candidate) {
+        TreeMap<String, Comparison> comparisons = new TreeMap<String, Comparison>();
+        for (ResultsStore.Endpoint endpoint : baseline.getEndpoints().values()) {
+            comparisons.put(endpoint.getName(), new Comparison(endpoint.getName(), endpoint, null));
+        }
+        Random random = new Random(seed);
+        for (ResultsStore.Endpoint endpoint : candidate.getEndpoints().values()) {
+            Comparison comparison = comparisons.get(endpoint.getName());
+            if (comparison == null) {
+                comparisons.put(endpoint.getName(), new Comparison(endpoint.getName(), null, endpoint));
+            } else {
+                comparisons.put(endpoint.getName(), compare(comparison.baseline, endpoint, random));
+            }
+        }
+        return new ArrayList<Comparison>(comparisons.values());
+    }
+
+    private Comparison compare(ResultsStore.Endpoint baseline, ResultsStore.Endpoint candidate, Random random) {
+        Comparison comparison = new Comparison(baseline.getName(), baseline, candidate);
+        Histogram a = baseline.getHistogram();
+        Histogram b = candidate.getHistogram();
+        comparison.pSlower = mannWhitneyPValue(a, b);
+        comparison.pFaster = mannWhitneyPValue(b, a);
+        comparison.ratio = (double) b.getValueAtPercentile(100 * quantile)
+            / Math.max(1, a.getValueAtPercentile(100 * quantile));
+
+        Distribution da = new Distribution(a);
+        Distribution db = new Distribution(b);
+        int na = (int) Math.min(maxResample, a.getTotalCount());
+        int nb = (int) Math.min(maxResample, b.getTotalCount());
+        double[] ratios = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            ratios[i] = (double) db.resampledQuantile(nb, quantile, random)
+                / Math.max(1, da.resampledQuantile(na, quantile, random));
+        }
+        Arrays.sort(ratios);
+        comparison.low = ratios[(int) Math.floor(iterations * 0.025)];
+        comparison.high = ratios[Math.min(iterations - 1, (int) Math.ceil(iterations * 0.975) - 1)];
+
+        if (comparison.pSlower < alpha && comparison.low > 1 + minChange) {
+            comparison.verdict = Verdict.REGRESSED;
+        } else if (comparison.pFaster < alpha && comparison.high < 1 - minChange) {
+            comparison.verdict = Verdict.IMPROVED;
+        } else {
+            comparison.verdict = Verdict.UNCHANGED;
+        }
+        return comparison;
+    }
+
+    /**
+     * One-sided Mann-Whitney U test with the normal approximation and tie correction.
+     *
+     * @return the p value of candidate latencies not tending to be higher than the baseline's
+     */
+    static double mannWhitneyPValue(Histogram baseline, Histogram candidate) {
+        TreeMap<Long, long[]> counts = new TreeMap<Long, long[]>();
+        add(counts, baseline, 0);
+        add(counts, candidate, 1);
+        double n1 = baseline.getTotalCount();
+        double n2 = candidate.getTotalCount();
+        if (n1 == 0 || n2 == 0) {
+            return 1;
+        }
+        double rank = 0;
+        double candidateRanks = 0;
+        double ties = 0;
+        for (long[] count : counts.values()) {
+            double t = count[0] + count[1];
+            candidateRanks += count[1] * (rank + (t + 1) / 2);
+            ties += t * t * t - t;
+            rank += t;
+        }
+        double n = n1 + n2;
+        double u = candidateRanks - n2 * (n2 + 1) / 2;
+        double variance = n1 * n2 / 12 * ((n + 1) - ties / (n * (n - 1)));
+        if (variance <= 0) {
+            return 1;
+        }
+        // continuity correction
+        double z = (u - n1 * n2 / 2 - 0.5) / Math.sqrt(variance);
+        return 1 - normalCdf(z);
+    }
+
+    private static void add(TreeMap<Long, long[]> counts, Histogram histogram, int index) {
+        for (HistogramIterationValue value : histogram.recordedValues()) {
+            long key = histogram.lowestEquivalentValue(value.getValueIteratedTo());
+            long[] count = counts.get(key);
+            if (count == null) {
+                count = new long[2];
+                counts.put(key, count);
+            }
+            count[index] += value.getCountAtValueIteratedTo();
+        }
+    }
+
+    /**
+     * Standard normal CDF from the complementary error function, accurate to about 1e-7.
+     */
+    static double normalCdf(double z) {
+        double x = Math.abs(z) / Math.sqrt(2);
+        double t = 1 / (1 + 0.5 * x);
+        double erfc = t * Math.exp(-x * x - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+            + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587
+            + t * (-0.82215223 + t * 0.17087277)))))))));
+        return z >= 0 ? 1 - erfc / 2 : erfc / 2;
+    }
+
+    /**
+     * A histogram's values and cumulative counts, for drawing from it with replacement.
+     */
+    private static class Distribution {
+        private final long[] values;
+        private final long[] cumulative;
+        private final long total;
+
+        Distribution(Histogram histogram) {
+            List<long[]> buckets = new ArrayList<long[]>();
+            long running = 0;
+            for (HistogramIterationValue value : histogram.recordedValues()) {
+                running += value.getCountAtValueIteratedTo();
+                buckets.add(new long[]{histogram.medianEquivalentValue(value.getValueIteratedTo()), running});
+            }
+            values = new long[buckets.size()];
+            cumulative = new long[buckets.size()];
+            for (int i = 0; i < buckets.size(); i++) {
+                values[i] = buckets.get(i)[0];
+                cumulative[i] = buckets.get(i)[1];
+            }
+            total = running;
+        }
+
+        /**
+         * @return the quantile of n values drawn with replacement
+         */
+        long resampledQuantile(int n, double quantile, Random random) {
+            int[] drawn = new int[values.length];
+            for (int i = 0; i < n; i++) {
+                long pick = (long) (random.nextDouble() * total);
+                int index = Arrays.binarySearch(cumulative, pick + 1);
+                drawn[index < 0 ? -index - 1 : index]++;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * n));
+            long seen = 0;
+            for (int i = 0; i < drawn.length; i++) {
+                seen += drawn[i];
+                if (seen >= rank) {
+                    return values[i];
+                }
+            }
+            return values[values.length - 1];
+        }
+    }
+
+    /**
+     * One endpoint in both runs, or in one of them.
+     */
+    public static class Comparison {
+        private final String endpoint;
+        private final ResultsStore.Endpoint baseline;
+        private final ResultsStore.Endpoint candidate;
+        private Verdict verdict = Verdict.MISSING;
+        private double pSlower = Double.NaN;
+        private double pFaster = Double.NaN;
+        private double ratio = Double.NaN;
+        private double low = Double.NaN;
+        private double high = Double.NaN;
+
+        Comparison(String endpoint, ResultsStore.Endpoint baseline, ResultsStore.Endpoint candidate) {
+            this.endpoint = endpoint;
+            this.baseline = baseline;
+            this.candidate = candidate;
+        }
+
+        public String getEndpoint() {
+            return endpoint;
+        }
+
+        public Verdict getVerdict() {
+            return verdict;
+        }
+
+        /**
+         * @return the Mann-Whitney p value for the candidate being slower
+         */
+        public double getPSlower() {
+            return pSlower;
+        }
+
+        /**
+         * @return candidate over baseline latency at the compared quantile
+         */
+        public double getRatio() {
+            return ratio;
+        }
+
+        /**
+         * @return lower end of the 95% bootstrap interval for the ratio
+         */
+        public double getLow() {
+            return low;
+        }
+
+        /**
+         * @return upper end of the 95% bootstrap interval for the ratio
+         */
+        public double getHigh() {
+            return high;
+        }
+    }
+
+    /**
+     * Prints one line per endpoint, regressions first.
+     */
+    public void print(List<Comparison> comparisons, PrintStream out) {
+        String q = "p" + (quantile * 100 == Math.rint(quantile * 100)
+            ? String.valueOf((long) (quantile * 100)) : String.valueOf(quantile * 100));
+        out.printf("%-40s %-9s %8s %8s %10s %10s %8s %17s %9s %9s %7s%n", "endpoint", "verdict", "base n",
+            "cand n", "base " + q, "cand " + q, "change", "95% interval", "p slower", "req/s", "errors");
+        for (Verdict verdict : new Verdict[]{Verdict.REGRESSED, Verdict.IMPROVED, Verdict.UNCHANGED, Verdict.MISSING}) {
+            for (Comparison c : comparisons) {
+                if (c.verdict != verdict) {
+                    continue;
+                }
+                ResultsStore.Endpoint base = c.baseline;
+                ResultsStore.Endpoint cand = c.candidate;
+                out.printf(Locale.ROOT, "%-40s %-9s %8s %8s %10s %10s %8s %17s %9s %9s %7s%n",
+                    c.endpoint, verdict.name().toLowerCase(Locale.ROOT),
+                    base == null ? "-" : String.valueOf(base.getHistogram().getTotalCount()),
+                    cand == null ? "-" : String.valueOf(cand.getHistogram().getTotalCount()),
+                    base == null ? "-" : millis(base.getHistogram().getValueAtPercentile(100 * quantile)),
+                    cand == null ? "-" : millis(cand.getHistogram().getValueAtPercentile(100 * quantile)),
+                    Double.isNaN(c.ratio) ? "-" : String.format(Locale.ROOT, "%+.1f%%", 100 * (c.ratio - 1)),
+                    Double.isNaN(c.low) ? "-" : String.format(Locale.ROOT, "[%.2f, %.2f]", c.low, c.high),
+                    Double.isNaN(c.pSlower) ? "-" : String.format(Locale.ROOT, "%.2g", c.pSlower),
+                    base == null || cand == null ? "-"
+                        : String.format(Locale.ROOT, "%+.0f%%", 100 * (cand.getThroughput() / base.getThroughput() - 1)),
+                    base == null || cand == null ? "-" : base.getErrors() + ">" + cand.getErrors());
+            }
+        }
+    }
+
+    private static String millis(long micros) {
+        return String.format(Locale.ROOT, "%.1fms", micros / 1000.0);
+    }
+
+    /**
+     * @return how many endpoints regressed
+     */
+    public static int regressions(List<Comparison> comparisons) {
+        int regressions = 0;
+        for (Comparison comparison : comparisons) {
+            if (comparison.getVerdict() == Verdict.REGRESSED) {
+                regressions++;
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * Usage: RegressionComparator [baseline], comparing the last run in results_store with the
+     * previous one, the one with the given label or the one the given days ("7d") before it.
+     * Exits with status 1 when an endpoint regressed.
+     */
+    public static void main(String[] args) throws Exception {
+        ApiConfig config = ApiConfig.current();
+        List<ResultsStore.Run> runs = new ResultsStore(new File(config.get("results_store", ""))).read();
+        String wanted = args.length > 0 ? args[0] : config.get("regression_baseline", "previous");
+        ResultsStore.Run baseline = baseline(runs, wanted);
+        if (baseline == null) {
+            System.out.println("No " + wanted + " run to compare with among the " + runs.size() + " stored");
+            return;
+        }
+        ResultsStore.Run candidate = runs.get(runs.size() - 1);
+        RegressionComparator comparator = fromProperties(config.toProperties());
+        List<Comparison> comparisons = comparator.compare(baseline, candidate);
+        System.out.println("Comparing " + candidate + " with " + baseline);
+        comparator.print(comparisons, System.out);
+        int regressions = regressions(comparisons);
+        if (regressions > 0) {
+            System.out.println(regressions + " endpoints regressed");
+            System.exit(1);
+        }
+    }
+}
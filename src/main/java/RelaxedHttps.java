@@ -0,0 +1,77 @@
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+
+/**
+ * Opens connections for the tools that fetch without REST-assured, accepting any certificate
+ * and host name when relaxed_https is on, as the suite does with useRelaxedHTTPSValidation,
+ * so they reach the same test hosts the tests do.
+ */
+public class RelaxedHttps {
+
+    private static volatile SSLContext trustAll;
+
+    private static final HostnameVerifier ANY_HOST = new HostnameVerifier() {
+        public boolean verify(String hostname, SSLSession session) {
+            return true;
+        }
+    };
+
+    /**
+     * @return relaxed_https in the current configuration, on unless turned off
+     */
+    public static boolean isRelaxed() {
+        return ApiConfig.current().getBoolean("relaxed_https", true);
+    }
+
+    /**
+     * Opens the connection with both timeouts set, accepting any certificate and host name on
+     * https when {@link #isRelaxed()}.
+     */
+    public static HttpURLConnection open(String url, int timeoutMillis) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        if (connection instanceof HttpsURLConnection && isRelaxed()) {
+            ((HttpsURLConnection) connection).setSSLSocketFactory(trustAllContext().getSocketFactory());
+            ((HttpsURLConnection) connection).setHostnameVerifier(ANY_HOST);
+        }
+        return connection;
+    }
+
+    /**
+     * @return a TLS context trusting every certificate, shared by all relaxed connections
+     */
+    public static SSLContext trustAllContext() throws IOException {
+        SSLContext context = trustAll;
+        if (context == null) {
+            TrustManager any = new X509TrustManager() {
+                public void checkClientTrusted(X509Certificate[] chain, String authType) {
+                }
+
+                public void checkServerTrusted(X509Certificate[] chain, String authType) {
+                }
+
+                public X509Certificate[] getAcceptedIssuers() {
+                    return new X509Certificate[0];
+                }
+            };
+            try {
+                context = SSLContext.getInstance("TLS");
+                context.init(null, new TrustManager[]{any}, null);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Unable to set up relaxed HTTPS", e);
+            }
+            trustAll = context;
+        }
+        return context;
+    }
+}
@@ -0,0 +1,149 @@
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Class path resources read once and shared for the life of the JVM. The bytes are never
+ * handed out directly: callers get read-only views, streams over the cached array, the
+ * decoded String, or a copy of a DOM parsed once, so one load serves every request.
+ */
+public class ResourceCache {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final XMLInputFactory XML = XMLInputFactory.newInstance();
+
+    private static final ConcurrentMap<String, Entry> ENTRIES = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * @return a read-only view of the resource, positioned at its start
+     */
+    public static ByteBuffer bytes(String name) {
+        return ByteBuffer.wrap(entry(name).bytes).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return a stream over the cached bytes, without copying them
+     */
+    public static InputStream stream(String name) {
+        return new ByteArrayInputStream(entry(name).bytes);
+    }
+
+    /**
+     * @return the resource decoded as UTF-8
+     */
+    public static String string(String name) {
+        return entry(name).string;
+    }
+
+    public static int length(String name) {
+        return entry(name).bytes.length;
+    }
+
+    /**
+     * @return a private copy of the resource parsed as a namespace aware DOM, cheaper than
+     * parsing it again; the parsed template itself is kept for the next caller
+     */
+    public static Document document(String name) {
+        Entry entry = entry(name);
+        Document template = entry.document;
+        if (template == null) {
+            synchronized (entry) {
+                if (entry.document == null) {
+                    entry.document = parse(name, entry.bytes);
+                }
+                template = entry.document;
+            }
+        }
+        // cloneNode is a read of the template, but the DOM makes no promise that reads are thread safe
+        synchronized (template) {
+            return (Document) template.cloneNode(true);
+        }
+    }
+
+    /**
+     * @return a StAX reader over the cached bytes
+     */
+    public static XMLStreamReader xmlReader(String name) throws XMLStreamException {
+        return XML.createXMLStreamReader(stream(name));
+    }
+
+    private static Entry entry(String name) {
+        Entry entry = ENTRIES.get(name);
+        if (entry == null) {
+            Entry loaded = new Entry(load(name));
+            entry = ENTRIES.putIfAbsent(name, loaded);
+            if (entry == null) {
+                entry = loaded;
+            }
+        }
+        return entry;
+    }
+
+    private static byte[] load(String name) {
+        InputStream in = ResourceCache.class.getResourceAsStream(name);
+        if (in == null) {
+            throw new IllegalArgumentException("No resource " + name + " on the class path");
+        }
+        try {
+            return readFully(in);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read " + name, e);
+        }
+    }
+
+    /**
+     * Reads the stream to its end and closes it.
+     */
+    public static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static Document parse(String name, byte[] bytes) {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            return factory.newDocumentBuilder().parse(new ByteArrayInputStream(bytes));
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        } catch (SAXException e) {
+            throw new IllegalArgumentException(name + " is not well formed XML", e);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Entry {
+
+        final byte[] bytes;
+        final String string;
+        volatile Document document;
+
+        Entry(byte[] bytes) {
+            this.bytes = bytes;
+            this.string = new String(bytes, UTF8);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.Scanner;
+
+/**
+ * Per request cost of loading a payload the old way, with a Scanner over a fresh resource
+ * stream, against the ResourceCache. Prints ns/op and, where the JVM can tell,
+ * bytes allocated per op.
+ *
+ * Usage: ResourceCacheBenchmark [resource] [iterations], defaulting to sample.xml and 200000.
+ */
+public class ResourceCacheBenchmark {
+
+    private interface Op {
+        Object run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        final String name = args.length > 0 ? args[0] : "sample.xml";
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+
+        System.out.println("Loading " + name + " (" + ResourceCache.length(name) + " bytes), " + iterations + " iterations");
+        System.out.printf("%-24s %12s %14s%n", "op", "ns/op", "bytes/op");
+        measure("scanner", iterations, new Op() {
+            public Object run() {
+                return new Scanner(ResourceCacheBenchmark.class.getResourceAsStream(name), "UTF-8")
+                    .useDelimiter("\\A").next();
+            }
+        });
+        measure("cache string", iterations, new Op() {
+            public Object run() {
+                return ResourceCache.string(name);
+            }
+        });
+        measure("cache bytes view", iterations, new Op() {
+            public Object run() {
+                return ResourceCache.bytes(name);
+            }
+        });
+        measure("dom parse", iterations / 10, new Op() {
+            public Object run() throws Exception {
+                return factory.newDocumentBuilder().parse(ResourceCacheBenchmark.class.getResourceAsStream(name));
+            }
+        });
+        measure("cache dom copy", iterations / 10, new Op() {
+            public Object run() {
+                return ResourceCache.document(name);
+            }
+        });
+    }
+
+    private static void measure(String name, int iterations, Op op) throws Exception {
+        // warm up with the same number of iterations so the measured loop is compiled
+        int sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            sink += System.identityHashCode(op.run()) & 1;
+        }
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += System.identityHashCode(op.run()) & 1;
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        System.out.printf(Locale.ROOT, "%-24s %12.1f %14s%n", name, (double) nanos / iterations,
+            allocatedBefore < 0 ? "n/a" : String.format(Locale.ROOT, "%.0f", (double) allocated / iterations));
+        if (sink == -1) {
+            System.out.println();
+        }
+    }
+
+    /**
+     * @return bytes allocated so far by this thread, or -1 when the JVM does not track it
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
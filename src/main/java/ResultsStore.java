@@ -0,0 +1,299 @@
+import org.HdrHistogram.Histogram;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+
+/**
+ * An append-only log of test runs, each holding every endpoint's total latency histogram,
+ * request and error counts and throughput, so that runs can be compared over weeks.
+ *
+ * The file starts with a magic number and version, then holds one frame per run: the
+ * payload length, its CRC32 and the payload, in which histograms are stored in HdrHistogram's
+ * compressed encoding. Runs are only ever appended, with a single write and fsync, and a
+ * frame that is cut short or fails its checksum, as one being written when the JVM died
+ * would, ends the log when it is read.
+ */
+public class ResultsStore {
+
+    private static final byte[] MAGIC = {'A', 'N', 'D', 'S', 'P', 'E', 'R', 'F'};
+    private static final int VERSION = 1;
+
+    private final File file;
+
+    public ResultsStore(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * One endpoint's results within a run.
+     */
+    public static class Endpoint {
+        private final String name;
+        private final Histogram histogram;
+        private final long errors;
+        private final double throughput;
+
+        /**
+         * @param histogram  latencies in microseconds
+         * @param throughput requests per second over the run
+         */
+        public Endpoint(String name, Histogram histogram, long errors, double throughput) {
+            this.name = name;
+            this.histogram = histogram;
+            this.errors = errors;
+            this.throughput = throughput;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Histogram getHistogram() {
+            return histogram;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public double getThroughput() {
+            return throughput;
+        }
+    }
+
+    /**
+     * A run as stored, its endpoints in name order.
+     */
+    public static class Run {
+        private final String label;
+        private final long startedMillis;
+        private final long durationMillis;
+        private final Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+
+        /**
+         * @param label anything identifying the run, such as a commit, may be empty
+         */
+        public Run(String label, long startedMillis, long durationMillis) {
+            this.label = label;
+            this.startedMillis = startedMillis;
+            this.durationMillis = durationMillis;
+        }
+
+        public void add(Endpoint endpoint) {
+            endpoints.put(endpoint.getName(), endpoint);
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public long getStartedMillis() {
+            return startedMillis;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public Map<String, Endpoint> getEndpoints() {
+            return Collections.unmodifiableMap(endpoints);
+        }
+
+        @Override
+        public String toString() {
+            SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+            iso.setTimeZone(TimeZone.getTimeZone("UTC"));
+            return (label.isEmpty() ? "" : label + " ") + iso.format(new Date(startedMillis));
+        }
+    }
+
+    /**
+     * The run the registry has recorded so far, with each endpoint's total latency.
+     */
+    public static Run fromRegistry(LatencyRegistry registry, String label) {
+        long now = System.currentTimeMillis();
+        Run run = new Run(label, registry.getStartMillis(), now - registry.getStartMillis());
+        double seconds = Math.max(1, now - registry.getStartMillis()) / 1000.0;
+        for (String name : registry.endpoints()) {
+            Histogram histogram = registry.histogram(name, LatencyRegistry.Phase.TOTAL).copy();
+            if (histogram.getTotalCount() > 0) {
+                run.add(new Endpoint(name, histogram, registry.errors(name), histogram.getTotalCount() / seconds));
+            }
+        }
+        return run;
+    }
+
+    /**
+     * Appends the run, creating the file if need be.
+     */
+    public synchronized void append(Run run) throws IOException {
+        byte[] payload = encode(run);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(payload.length + 24);
+        DataOutputStream out = new DataOutputStream(frame);
+        if (file.length() == 0) {
+            out.write(MAGIC);
+            out.writeInt(VERSION);
+        }
+        out.writeInt(payload.length);
+        out.writeInt((int) crc.getValue());
+        out.write(payload);
+        out.flush();
+
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir);
+        }
+        long valid = scan(null);
+        FileOutputStream stream = new FileOutputStream(file, true);
+        try {
+            if (valid > 0 && stream.getChannel().size() > valid) {
+                // a frame cut short by an earlier crash would hide everything appended after it
+                stream.getChannel().truncate(valid);
+            }
+            stream.write(frame.toByteArray());
+            stream.getChannel().force(true);
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static byte[] encode(Run run) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(run.label);
+        out.writeLong(run.startedMillis);
+        out.writeLong(run.durationMillis);
+        out.writeInt(run.endpoints.size());
+        for (Endpoint endpoint : run.endpoints.values()) {
+            out.writeUTF(endpoint.name);
+            out.writeLong(endpoint.errors);
+            out.writeDouble(endpoint.throughput);
+            ByteBuffer buffer = ByteBuffer.allocate(endpoint.histogram.getNeededByteBufferCapacity());
+            int length = endpoint.histogram.encodeIntoCompressedByteBuffer(buffer);
+            out.writeInt(length);
+            out.write(buffer.array(), 0, length);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return every complete run, oldest first, none if the file does not exist
+     */
+    public synchronized List<Run> read() throws IOException {
+        List<Run> runs = new ArrayList<Run>();
+        scan(runs);
+        return runs;
+    }
+
+    /**
+     * Reads the complete frames into runs, if it is not null.
+     *
+     * @return the length of the file up to the end of the last complete frame
+     */
+    private long scan(List<Run> runs) throws IOException {
+        if (!file.exists() || file.length() == 0) {
+            return 0;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            int version = in.readInt();
+            if (!Arrays.equals(magic, MAGIC) || version != VERSION) {
+                throw new IOException(file + " is not a version " + VERSION + " results store");
+            }
+            long valid = MAGIC.length + 4;
+            while (true) {
+                byte[] payload;
+                int crc;
+                try {
+                    int length = in.readInt();
+                    crc = in.readInt();
+                    if (length < 0 || length > file.length() - valid) {
+                        break;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                CRC32 check = new CRC32();
+                check.update(payload);
+                if ((int) check.getValue() != crc) {
+                    break;
+                }
+                if (runs != null) {
+                    runs.add(decode(payload));
+                }
+                valid += 8 + payload.length;
+            }
+            return valid;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static Run decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        Run run = new Run(in.readUTF(), in.readLong(), in.readLong());
+        int endpoints = in.readInt();
+        for (int i = 0; i < endpoints; i++) {
+            String name = in.readUTF();
+            long errors = in.readLong();
+            double throughput = in.readDouble();
+            byte[] encoded = new byte[in.readInt()];
+            in.readFully(encoded);
+            Histogram histogram;
+            try {
+                histogram = Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(encoded), 0);
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt histogram for " + name, e);
+            }
+            run.add(new Endpoint(name, histogram, errors, throughput));
+        }
+        return run;
+    }
+
+    /**
+     * Usage: ResultsStore [file], listing the stored runs, by default of results_store in config.properties.
+     */
+    public static void main(String[] args) throws Exception {
+        File file = new File(args.length > 0 ? args[0] : ApiConfig.current().get("results_store", ""));
+        for (Run run : new ResultsStore(file).read()) {
+            long requests = 0;
+            for (Endpoint endpoint : run.getEndpoints().values()) {
+                requests += endpoint.getHistogram().getTotalCount();
+            }
+            System.out.println(run + ": " + run.getEndpoints().size() + " endpoints, " + requests + " requests in "
+                + TimeUnit.MILLISECONDS.toSeconds(run.getDurationMillis()) + "s");
+        }
+    }
+}
@@ -2,12 +2,13 @@ import com.jayway.restassured.RestAssured;
 import com.jayway.restassured.http.ContentType;
 import com.jayway.restassured.response.Response;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.runner.RunWith;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.net.HttpURLConnection;
 import java.util.*;
 
 import static com.jayway.restassured.RestAssured.given;
@@ -15,15 +16,19 @@ import static com.jayway.restassured.RestAssured.when;
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.number.OrderingComparison.greaterThanOrEqualTo;
 
+@RunWith(ParallelRunner.class)
 public class ActivitiesAPITest {
 
-    private static Properties props;
+    @Rule
+    public LatencyBudgetRule latencyBudgets = new LatencyBudgetRule();
 
     @BeforeClass
     public static void setUpBeforeClass() throws Exception {
-        APIProperties localProperties = new APIProperties();
-        props = localProperties.getProp();
+        Properties props = ApiConfig.current().toProperties();
         RestAssured.useRelaxedHTTPSValidation();
+        Instrumentation.install(props);
+        Fixtures.install(props);
+        CachingFilter.install(props);
     }
 
     /**
@@ -31,7 +36,7 @@ public class ActivitiesAPITest {
      */
     @Test
     public void getBaseUrl() {
-        when().get(props.getProperty("grant_api_url")).then().statusCode(200);
+        when().get(ApiConfig.current().getGrantApiUrl()).then().statusCode(200);
     }
 
     /**
@@ -39,7 +44,7 @@ public class ActivitiesAPITest {
      */
     @Test
     public void getDefaultResponse() {
-        when().get(props.getProperty("grant_api_url"))
+        when().get(ApiConfig.current().getGrantApiUrl())
             .then().statusCode(200)
             .body("status", equalTo("OK"))
             .contentType(ContentType.JSON)
@@ -52,7 +57,7 @@ public class ActivitiesAPITest {
     @Test
     public void testSearch() {
         given().queryParam("q", "fish")
-            .when().get(props.getProperty("grant_api_url"))
+            .when().get(ApiConfig.current().getGrantApiUrl())
             .then().statusCode(200)
             .body("data.numFound", greaterThanOrEqualTo(100))
         ;
@@ -64,7 +69,7 @@ public class ActivitiesAPITest {
     @Test
     public void testParamQuery() {
         given().queryParam("q", "fish")
-            .when().get(props.getProperty("grant_api_url"))
+            .when().get(ApiConfig.current().getGrantApiUrl())
             .then().statusCode(200)
             .body("data.numFound", greaterThanOrEqualTo(100));
     }
@@ -76,7 +81,7 @@ public class ActivitiesAPITest {
     public void testParamType() {
         final String testType = "grant";
         given().queryParam("type", testType)
-            .when().get(props.getProperty("grant_api_url"))
+            .when().get(ApiConfig.current().getGrantApiUrl())
             .then().statusCode(200)
             .body("data.records.type",
                 everyItem(
@@ -86,6 +91,42 @@ public class ActivitiesAPITest {
         ;
     }
 
+    /**
+     * api/activities/?type=grant&rows=5000
+     * streamed record by record instead of loaded into a GPath tree,
+     * only runs when stream_rows is set
+     * @throws Exception
+     */
+    @Test
+    public void testStreamParamType() throws Exception {
+        final int rows = ApiConfig.current().getInt("stream_rows", 0);
+        Assume.assumeTrue(rows > 0);
+
+        final String testType = "grant";
+        Map<String, String> query = new LinkedHashMap<String, String>();
+        query.put("type", testType);
+        query.put("rows", String.valueOf(rows));
+
+        // REST-assured and the latency and caching filters buffer the whole body, so the page is
+        // fetched directly and its latency recorded once the stream has been read
+        String url = ApiConfig.current().getGrantApiUrl();
+        long started = System.nanoTime();
+        HttpURLConnection connection = RelaxedHttps.open(url + "?" + ActivitiesQueries.toQueryString(query), 60000);
+        ActivityRecordReader.Result result;
+        try {
+            Assert.assertThat(connection.getResponseCode(), equalTo(200));
+            result = ActivityRecordReader.validate(connection.getInputStream(),
+                ActivityRecordCheck.fieldEquals("type", testType));
+        } finally {
+            connection.disconnect();
+        }
+        LatencyFilter.recordTotal(LatencyFilter.endpointName(url, query.keySet()), System.nanoTime() - started);
+        System.out.println("testStreamParamType: " + result);
+
+        Assert.assertThat(result.getStatus(), equalTo("OK"));
+        Assert.assertThat(result.getMessages().toString(), result.getFailures(), equalTo(0L));
+    }
+
     /**
      * api/activities/?status=active
      */
@@ -93,7 +134,7 @@ public class ActivitiesAPITest {
     public void testParamStatus() {
         final String testStatus = "active";
         given().queryParam("status", testStatus)
-            .when().get(props.getProperty("grant_api_url"))
+            .when().get(ApiConfig.current().getGrantApiUrl())
             .then().statusCode(200)
             .body("data.records.status",
                 everyItem(
@@ -110,7 +151,7 @@ public class ActivitiesAPITest {
     public void testParamPurl() {
         final String testPurl = "http://purl.org/au-research/grants/arc/LP0776938";
         given().queryParam("purl", testPurl)
-            .when().get(props.getProperty("grant_api_url"))
+            .when().get(ApiConfig.current().getGrantApiUrl())
             .then().statusCode(200)
             .body("data.numFound", equalTo(1))
             .body("data.records.size()", equalTo(1))
@@ -125,7 +166,7 @@ public class ActivitiesAPITest {
     public void testParamIdentifier() {
         final String testIdentifier = "LP0776938";
         given().queryParam("purl", testIdentifier)
-            .when().get(props.getProperty("grant_api_url"))
+            .when().get(ApiConfig.current().getGrantApiUrl())
             .then().statusCode(200)
             .body("data.numFound", equalTo(1))
             .body("data.records.size()", equalTo(1))
@@ -147,7 +188,7 @@ public class ActivitiesAPITest {
             .queryParam("title", testString)
             .queryParam("flags", "titles")
             .queryParam("rows", 15)
-            .when().get(props.getProperty("grant_api_url"))
+            .when().get(ApiConfig.current().getGrantApiUrl())
             .then().statusCode(200)
             .extract().response();
 
@@ -172,7 +213,7 @@ public class ActivitiesAPITest {
     public void testParamSubject() {
         Response response = given()
             .queryParam("subject", "intelligent agents")
-            .when().get(props.getProperty("grant_api_url"))
+            .when().get(ApiConfig.current().getGrantApiUrl())
             .then().statusCode(200)
             .extract().response();
 
@@ -197,7 +238,7 @@ public class ActivitiesAPITest {
     public void testParamDescription() {
         final String testDescription = "unique biology";
         given().queryParam("description", '"'+testDescription+'"')
-            .when().get(props.getProperty("grant_api_url"))
+            .when().get(ApiConfig.current().getGrantApiUrl())
             .then().statusCode(200)
             .body("data.records.description",
                 everyItem(
@@ -213,7 +254,7 @@ public class ActivitiesAPITest {
     public void testParamInstitution() {
         final String testInstitution = "University of Sydney";
         Response response = given().queryParam("institution", '"'+testInstitution+'"')
-            .when().get(props.getProperty("grant_api_url"))
+            .when().get(ApiConfig.current().getGrantApiUrl())
             .then().statusCode(200)
             .extract().response();
 
@@ -235,7 +276,7 @@ public class ActivitiesAPITest {
     public void testParamFunder() {
         final String testFunder = "Australian Research Council";
         Response response = given().queryParam("funder", '"'+testFunder+'"')
-            .when().get(props.getProperty("grant_api_url"))
+            .when().get(ApiConfig.current().getGrantApiUrl())
             .then().statusCode(200)
             .extract().response();
 
@@ -259,7 +300,7 @@ public class ActivitiesAPITest {
         Response response =
             given()
                 .queryParam("principalInvestigator", testPrincipalInvestigator)
-                .when().get(props.getProperty("grant_api_url"))
+                .when().get(ApiConfig.current().getGrantApiUrl())
                 .then().statusCode(200)
                 .extract().response();
 
@@ -283,7 +324,7 @@ public class ActivitiesAPITest {
         Response response =
             given()
                 .queryParam("researcher", testResearcher)
-                .when().get(props.getProperty("grant_api_url"))
+                .when().get(ApiConfig.current().getGrantApiUrl())
                 .then().statusCode(200)
                 .extract().response();
 
@@ -315,7 +356,7 @@ public class ActivitiesAPITest {
         final String testFundingScheme = "NHMRC Project Grants";
         given()
             .queryParam("fundingScheme", "\"" + testFundingScheme + "\"")
-            .when().get(props.getProperty("grant_api_url"))
+            .when().get(ApiConfig.current().getGrantApiUrl())
             .then().statusCode(200)
             .body("data.records.fundingScheme",
                 everyItem(
@@ -326,56 +367,45 @@ public class ActivitiesAPITest {
 
     /**
      * api/activities/?addedSince=2015-11-28T13:15:30Z
-     * @throws ParseException
      */
     @Test
-    public void testParamAddedSince() throws ParseException {
+    public void testParamAddedSince() {
         final String testAddedSince = "2015-11-28T13:15:30Z";
         Response response = given()
             .queryParam("addedSince", testAddedSince)
-            .when().get(props.getProperty("grant_api_url"))
+            .when().get(ApiConfig.current().getGrantApiUrl())
             .then().statusCode(200).extract().response();
 
-        DateFormat format =new SimpleDateFormat("YYYY-MM-DD", Locale.ENGLISH);
-        DateFormat returnFormat = new SimpleDateFormat("Y", Locale.ENGLISH);
-
-        Date start = format.parse(testAddedSince);
+        long start = IsoTimestamps.parse(testAddedSince);
 
         ArrayList<String> allCreatedWhen =
             response.path("data.records.dateTimeCreated");
 
-        // assert that the return date is after the start date
+        // assert that the return date is not before the start date
         for (String date : allCreatedWhen) {
-            Date compare = returnFormat.parse(date);
-            Assert.assertTrue(compare.compareTo(start) >= 0);
+            Assert.assertTrue(date + " is before " + testAddedSince, IsoTimestamps.parse(date) >= start);
         }
-
     }
 
     /**
      * api/activities/?modifiedSince=2015-11-28T13:15:30Z
-     * @throws ParseException
      */
     @Test
-    public void testParamModifiedSince() throws ParseException {
+    public void testParamModifiedSince() {
         final String testModifiedSince = "2015-11-28T13:15:30Z";
         Response response = given()
             .queryParam("modifiedSince", testModifiedSince)
-            .when().get(props.getProperty("grant_api_url"))
+            .when().get(ApiConfig.current().getGrantApiUrl())
             .then().statusCode(200).extract().response();
 
-        DateFormat format = new SimpleDateFormat("YYYY-MM-DD", Locale.ENGLISH);
-        DateFormat returnFormat = new SimpleDateFormat("Y", Locale.ENGLISH);
-
-        Date start = format.parse(testModifiedSince);
+        long start = IsoTimestamps.parse(testModifiedSince);
 
         ArrayList<String> allModifiedWhen =
             response.path("data.records.dateTimeModified");
 
-        // assert that the return date is after the start date
+        // assert that the return date is not before the start date
         for (String date : allModifiedWhen) {
-            Date compare = returnFormat.parse(date);
-            Assert.assertTrue(compare.compareTo(start) >= 0);
+            Assert.assertTrue(date + " is before " + testModifiedSince, IsoTimestamps.parse(date) >= start);
         }
     }
 
@@ -397,7 +427,7 @@ public class ActivitiesAPITest {
             .queryParam("subject", "Earth Sciences")
             .queryParam("funder", "Australian Research Council")
             .queryParam("flags", "titles")
-            .when().get(props.getProperty("grant_api_url"))
+            .when().get(ApiConfig.current().getGrantApiUrl())
             .then().statusCode(200)
                 .body("data.records.description", everyItem(containsString("unique")))
                 .body("data.records.type", everyItem(equalTo("grant")))
@@ -454,7 +484,7 @@ public class ActivitiesAPITest {
     public void testChorizoRisottoIdentifier() throws Exception {
         final String testIdentifier = "chorizo risotto";
         Response response = given().queryParam("identifier", testIdentifier)
-            .when().get(props.getProperty("grant_api_url"))
+            .when().get(ApiConfig.current().getGrantApiUrl())
             .then().statusCode(200)
             .body("data.numFound", greaterThanOrEqualTo(1))
             .extract().response();
@@ -485,7 +515,7 @@ public class ActivitiesAPITest {
         Response response = given()
             .queryParam("q", '"'+q+'"')
             .queryParam("flags", "titles")
-            .when().get(props.getProperty("grant_api_url"))
+            .when().get(ApiConfig.current().getGrantApiUrl())
             .then().statusCode(200)
             .body("data.numFound", greaterThanOrEqualTo(1))
             .extract().response();
@@ -509,7 +539,7 @@ public class ActivitiesAPITest {
     public void testPURLinIdentifier() throws Exception {
         given()
             .queryParam("identifier", "http://AUT.org/au-research/grants/arc/LP100100422AUTx.Grant")
-            .when().get(props.getProperty("grant_api_url"))
+            .when().get(ApiConfig.current().getGrantApiUrl())
             .then().statusCode(200)
             .body("data.numFound", greaterThanOrEqualTo(1))
         ;
@@ -524,7 +554,7 @@ public class ActivitiesAPITest {
     public void testOffset() throws Exception {
         Response response = given()
             .queryParam("offset", 0)
-            .when().get(props.getProperty("grant_api_url"))
+            .when().get(ApiConfig.current().getGrantApiUrl())
             .then().statusCode(200)
             .body("data.offset", equalTo(0))
             .extract().response();
@@ -535,7 +565,7 @@ public class ActivitiesAPITest {
         // make sure that by moving 5 ahead, the first one is the pointer
         given()
             .queryParam("offset", 5)
-            .when().get(props.getProperty("grant_api_url"))
+            .when().get(ApiConfig.current().getGrantApiUrl())
             .then().statusCode(200)
             .body("data.offset", equalTo(5))
             .body("data.records[0].id", equalTo(pointer))
@@ -0,0 +1,39 @@
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Times pairwise or sampled combinations of the ActivitiesAPITest filters against grant_api_url
+ * and prints the slowest. Only runs when explore_strategy is set in config.properties.
+ */
+public class ActivitiesCombinationTest {
+
+    private static Properties props;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        props = ApiConfig.current().toProperties();
+        Fixtures.install(props);
+    }
+
+    @Test
+    public void exploreCombinations() throws Exception {
+        Assume.assumeTrue(!props.getProperty("explore_strategy", "off").trim().equals("off"));
+
+        List<boolean[]> rows = QueryCombinationExplorer.rows(props);
+        System.out.println("Timing " + rows.size() + " " + props.getProperty("explore_strategy").trim()
+            + " combinations of " + QueryCombinationExplorer.PARAMETERS.length + " activities parameters");
+        List<QueryCombinationExplorer.Combination> combinations = QueryCombinationExplorer.fromProperties(props)
+            .explore(QueryCombinationExplorer.parameterValues(), rows);
+        QueryCombinationExplorer.print(combinations,
+            Integer.parseInt(props.getProperty("explore_top", "20").trim()), System.out);
+
+        for (QueryCombinationExplorer.Combination combination : combinations) {
+            Assert.assertEquals(combination.getParams().toString(), 0, combination.getErrors());
+        }
+    }
+}
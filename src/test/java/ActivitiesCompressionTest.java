@@ -0,0 +1,43 @@
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Profiles response size and compression of the ActivitiesAPITest query matrix against
+ * grant_api_url. Only runs when compression_profile is set in config.properties.
+ */
+public class ActivitiesCompressionTest {
+
+    private static Properties props;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        props = ApiConfig.current().toProperties();
+        Fixtures.install(props);
+    }
+
+    @Test
+    public void profileQueryMatrix() throws Exception {
+        Assume.assumeTrue(Boolean.parseBoolean(props.getProperty("compression_profile", "false").trim()));
+
+        String[] encodings = props.getProperty("compression_encodings", "identity,gzip,deflate,br").split("\\s*,\\s*");
+        List<CompressionProfiler.Sample> samples = CompressionProfiler.fromProperties(props).run(
+            ActivitiesQueries.select(props.getProperty("compression_queries")),
+            CompressionProfiler.parseRows(props.getProperty("compression_rows", "10,100")),
+            props.getProperty("compression_flags", CompressionProfiler.NO_FLAGS + ",titles").split("\\s*,\\s*"),
+            encodings);
+        CompressionProfiler.print(samples, System.out);
+
+        // every encoding of the same query must decode to the same records
+        for (int i = 0; i < samples.size(); i += encodings.length) {
+            for (int j = i + 1; j < i + encodings.length; j++) {
+                Assert.assertEquals(samples.get(j).getShape() + " " + samples.get(j).getEncoding(),
+                    samples.get(i).getRecords(), samples.get(j).getRecords());
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+import com.jayway.restassured.RestAssured;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+
+/**
+ * Harvests a whole activities result set page by page.
+ * Only runs when harvest_query is set in config.properties.
+ */
+public class ActivitiesHarvestTest {
+
+    private static Properties props;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        props = ApiConfig.current().toProperties();
+        RestAssured.useRelaxedHTTPSValidation();
+        Instrumentation.install(props);
+        Fixtures.install(props);
+    }
+
+    /**
+     * api/activities/?type=grant&rows=100&offset=0 ... until the last page
+     */
+    @Test
+    public void testHarvest() {
+        String harvestQuery = props.getProperty("harvest_query", "").trim();
+        Assume.assumeTrue(!harvestQuery.isEmpty());
+
+        Map<String, String> query = new LinkedHashMap<String, String>();
+        for (String pair : harvestQuery.split("&")) {
+            String[] keyValue = pair.split("=", 2);
+            query.put(keyValue[0], keyValue.length > 1 ? keyValue[1] : "");
+        }
+        ActivitiesHarvester harvester = new ActivitiesHarvester(
+            props.getProperty("grant_api_url"),
+            query,
+            Integer.parseInt(props.getProperty("harvest_rows", "100").trim()),
+            Integer.parseInt(props.getProperty("harvest_max_pages", "0").trim()));
+
+        ActivitiesHarvester.Report report = harvester.harvest(
+            ActivitiesHarvester.Strategy.valueOf(props.getProperty("harvest_strategy", "auto").trim().toUpperCase()));
+        report.print(System.out);
+
+        Assert.assertThat(report.getDuplicates(), equalTo(0L));
+        Assert.assertThat(report.getMissing(), equalTo(0L));
+    }
+}
@@ -0,0 +1,237 @@
+import com.jayway.restassured.response.Response;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static com.jayway.restassured.RestAssured.given;
+
+/**
+ * Walks a whole activities result set page by page, recording per page latency
+ * against its depth in the result set and checking that no record is returned twice
+ * or skipped.
+ *
+ * Two strategies are supported. OFFSET pages with offset/rows. KEYSET pages with
+ * modifiedSince set to the last dateTimeModified seen, skipping only the records that
+ * share that timestamp, so the server never has to skip deep into the index. KEYSET is
+ * only correct when records come back ordered by dateTimeModified and modifiedSince includes
+ * records modified at exactly that time. AUTO checks the first page is ordered and asks for
+ * its last timestamp again, picking KEYSET only when the tied records come back; KEYSET
+ * fails rather than silently drop them.
+ */
+public class ActivitiesHarvester {
+
+    public enum Strategy {
+        AUTO, OFFSET, KEYSET
+    }
+
+    private final String url;
+    private final Map<String, String> query;
+    private final int rows;
+    private final int maxPages;
+
+    /**
+     * @param maxPages stop after this many pages, 0 for the whole result set
+     */
+    public ActivitiesHarvester(String url, Map<String, String> query, int rows, int maxPages) {
+        this.url = url;
+        this.query = query;
+        this.rows = rows;
+        this.maxPages = maxPages;
+    }
+
+    public Report harvest(Strategy strategy) {
+        Report report = new Report();
+        Set<String> seen = new HashSet<String>();
+
+        long start = System.nanoTime();
+        Page page = fetch(new LinkedHashMap<String, String>(), 0);
+        report.numFound = page.numFound;
+        if (strategy == Strategy.AUTO) {
+            strategy = isOrderedByModified(page.modified) && isModifiedSinceInclusive(page)
+                ? Strategy.KEYSET : Strategy.OFFSET;
+        } else if (strategy == Strategy.KEYSET && !page.ids.isEmpty() && !isModifiedSinceInclusive(page)) {
+            throw new IllegalStateException("modifiedSince leaves out records modified at that time, "
+                + "KEYSET would skip them");
+        }
+        report.strategy = strategy;
+
+        int offset = 0;
+        String since = null;
+        int tied = 0;
+        while (true) {
+            report.pages.add(new long[]{report.records, page.latencyNanos, page.ids.size()});
+            for (String id : page.ids) {
+                report.records++;
+                if (!seen.add(id)) {
+                    report.duplicates++;
+                }
+            }
+            if (page.ids.size() < rows) {
+                report.complete = true;
+                break;
+            }
+            if (maxPages > 0 && report.pages.size() >= maxPages) {
+                break;
+            }
+
+            Map<String, String> next = new LinkedHashMap<String, String>();
+            if (strategy == Strategy.OFFSET) {
+                offset += page.ids.size();
+            } else {
+                String last = page.modified.get(page.modified.size() - 1);
+                int sameAsLast = 0;
+                for (int i = page.modified.size() - 1; i >= 0 && last.equals(page.modified.get(i)); i--) {
+                    sameAsLast++;
+                }
+                tied = last.equals(since) ? tied + sameAsLast : sameAsLast;
+                since = last;
+                offset = tied;
+                next.put("modifiedSince", toQueryTimestamp(since));
+            }
+            page = fetch(next, offset);
+        }
+        report.elapsedNanos = System.nanoTime() - start;
+        report.unique = seen.size();
+        return report;
+    }
+
+    /**
+     * @param extra replaces parameters of the same name in the harvest query
+     */
+    private Page fetch(Map<String, String> extra, int offset) {
+        Map<String, String> params = new LinkedHashMap<String, String>(query);
+        params.putAll(extra);
+        long sent = System.nanoTime();
+        Response response = given()
+            .queryParams(params)
+            .queryParam("rows", rows)
+            .queryParam("offset", offset)
+            .when().get(url)
+            .then().statusCode(200)
+            .extract().response();
+        Page page = new Page();
+        page.latencyNanos = System.nanoTime() - sent;
+        page.numFound = ((Number) response.path("data.numFound")).longValue();
+        for (Object id : response.<List<Object>>path("data.records.id")) {
+            page.ids.add(String.valueOf(id));
+        }
+        for (Object modified : response.<List<Object>>path("data.records.dateTimeModified")) {
+            page.modified.add(String.valueOf(modified));
+        }
+        return page;
+    }
+
+    /**
+     * Whether the timestamps ascend and are not all the same; a page with one that does not
+     * parse is taken as unordered, so AUTO falls back to offset paging.
+     */
+    static boolean isOrderedByModified(List<String> modified) {
+        if (modified.size() < 2) {
+            return false;
+        }
+        long first = IsoTimestamps.tryParse(modified.get(0));
+        long previous = first;
+        for (int i = 1; i < modified.size(); i++) {
+            long current = IsoTimestamps.tryParse(modified.get(i));
+            if (previous == IsoTimestamps.INVALID || current == IsoTimestamps.INVALID || previous > current) {
+                return false;
+            }
+            previous = current;
+        }
+        return previous != first;
+    }
+
+    /**
+     * Whether asking for modifiedSince the page's last timestamp returns the page's records
+     * with that timestamp, rather than only those modified after it.
+     */
+    private boolean isModifiedSinceInclusive(Page page) {
+        String last = page.modified.get(page.modified.size() - 1);
+        Map<String, String> since = new LinkedHashMap<String, String>();
+        since.put("modifiedSince", toQueryTimestamp(last));
+        List<String> returned = fetch(since, 0).ids;
+        for (int i = page.modified.size() - 1; i >= 0 && last.equals(page.modified.get(i)); i--) {
+            if (!returned.contains(page.ids.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * modifiedSince takes 2015-11-28T13:15:30Z, records may carry a space separator and no zone.
+     */
+    private static String toQueryTimestamp(String modified) {
+        String timestamp = modified.trim().replace(' ', 'T');
+        return timestamp.endsWith("Z") || timestamp.matches(".*[+-]\\d\\d:?\\d\\d$") ? timestamp : timestamp + "Z";
+    }
+
+    private static class Page {
+        long latencyNanos;
+        long numFound;
+        final List<String> ids = new ArrayList<String>();
+        final List<String> modified = new ArrayList<String>();
+    }
+
+    public static class Report {
+        Strategy strategy;
+        boolean complete;
+        long numFound;
+        long records;
+        long unique;
+        long duplicates;
+        long elapsedNanos;
+        /** position in the result set, latency in nanoseconds and record count of each page */
+        final List<long[]> pages = new ArrayList<long[]>();
+
+        /**
+         * Records counted by numFound on the first page that were never returned,
+         * only meaningful once the whole result set has been walked.
+         */
+        public long getMissing() {
+            return complete ? Math.max(0, numFound - unique) : 0;
+        }
+
+        public long getDuplicates() {
+            return duplicates;
+        }
+
+        /**
+         * Least squares slope of page latency against position, in milliseconds per 1000 records.
+         */
+        public double latencyGrowth() {
+            int n = pages.size();
+            if (n < 2) {
+                return 0;
+            }
+            double sumX = 0, sumY = 0, sumXY = 0, sumXX = 0;
+            for (long[] page : pages) {
+                double x = page[0] / 1000.0;
+                double y = page[1] / 1e6;
+                sumX += x;
+                sumY += y;
+                sumXY += x * y;
+                sumXX += x * x;
+            }
+            double denominator = n * sumXX - sumX * sumX;
+            return denominator == 0 ? 0 : (n * sumXY - sumX * sumY) / denominator;
+        }
+
+        public void print(PrintStream out) {
+            out.printf(Locale.ROOT, "strategy %s, %d pages, %d records (%d unique) of %d found, %d duplicates, %d missing%n",
+                strategy, pages.size(), records, unique, numFound, duplicates, getMissing());
+            out.printf(Locale.ROOT, "%.1f s, %.1f records/s, page latency grows %.2f ms per 1000 records of depth%n",
+                elapsedNanos / 1e9, records / (elapsedNanos / 1e9), latencyGrowth());
+            out.printf("%10s %8s %10s%n", "position", "records", "ms");
+            for (long[] page : pages) {
+                out.printf(Locale.ROOT, "%10d %8d %10.1f%n", page[0], page[2], page[1] / 1e6);
+            }
+        }
+    }
+}
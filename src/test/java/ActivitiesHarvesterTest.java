@@ -0,0 +1,125 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+
+public class ActivitiesHarvesterTest {
+
+    private static final int RECORDS = 25;
+
+    private HttpServer server;
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testAutoUsesKeysetWhenModifiedSinceIsInclusive() throws Exception {
+        ActivitiesHarvester.Report report = harvester(true, Collections.<String, String>emptyMap())
+            .harvest(ActivitiesHarvester.Strategy.AUTO);
+        report.print(System.out);
+        Assert.assertThat(report.strategy, equalTo(ActivitiesHarvester.Strategy.KEYSET));
+        Assert.assertThat(report.complete, equalTo(true));
+        Assert.assertThat(report.unique, equalTo((long) RECORDS));
+        Assert.assertThat(report.getMissing(), equalTo(0L));
+    }
+
+    @Test
+    public void testAutoFallsBackToOffsetWhenModifiedSinceIsExclusive() throws Exception {
+        ActivitiesHarvester.Report report = harvester(false, Collections.<String, String>emptyMap())
+            .harvest(ActivitiesHarvester.Strategy.AUTO);
+        Assert.assertThat(report.strategy, equalTo(ActivitiesHarvester.Strategy.OFFSET));
+        Assert.assertThat(report.unique, equalTo((long) RECORDS));
+        Assert.assertThat(report.getMissing(), equalTo(0L));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testKeysetRefusesExclusiveModifiedSince() throws Exception {
+        harvester(false, Collections.<String, String>emptyMap()).harvest(ActivitiesHarvester.Strategy.KEYSET);
+    }
+
+    @Test
+    public void testKeysetReplacesQueryModifiedSince() throws Exception {
+        // the server rejects a repeated parameter
+        ActivitiesHarvester.Report report = harvester(true, Collections.singletonMap("modifiedSince", timestamp(3)))
+            .harvest(ActivitiesHarvester.Strategy.KEYSET);
+        Assert.assertThat(report.numFound, equalTo((long) RECORDS - 9));
+        Assert.assertThat(report.unique, equalTo((long) RECORDS - 9));
+        Assert.assertThat(report.getDuplicates(), equalTo(0L));
+    }
+
+    @Test
+    public void testUnparseableTimestampsAreNotOrdered() {
+        Assert.assertThat(ActivitiesHarvester.isOrderedByModified(
+            Arrays.asList("2015-11-28 13:15:00", "2015-11-28 13:15:01")), equalTo(true));
+        Assert.assertThat(ActivitiesHarvester.isOrderedByModified(
+            Arrays.asList("null", "2015-11-28 13:15:00", "2015-11-28 13:15:01")), equalTo(false));
+        Assert.assertThat(ActivitiesHarvester.isOrderedByModified(
+            Arrays.asList("2015-11-28 13:15:00", "not a time", "2015-11-28 13:15:01")), equalTo(false));
+    }
+
+    /**
+     * Records modified three to a second, oldest first, five to a page.
+     */
+    private ActivitiesHarvester harvester(final boolean inclusive, Map<String, String> query) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/activities", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                Map<String, String> params = new HashMap<String, String>();
+                int status = 200;
+                for (String pair : exchange.getRequestURI().getRawQuery().split("&")) {
+                    String[] nameValue = pair.split("=", 2);
+                    if (params.put(nameValue[0], URLDecoder.decode(nameValue[1], "UTF-8")) != null) {
+                        status = 400;
+                    }
+                }
+                String since = params.get("modifiedSince");
+                int offset = Integer.parseInt(params.get("offset"));
+                int rows = Integer.parseInt(params.get("rows"));
+                StringBuilder records = new StringBuilder();
+                int found = 0;
+                for (int i = 0; i < RECORDS; i++) {
+                    int compared = since == null ? 1 : timestamp(i / 3).compareTo(since);
+                    if (compared > 0 || (inclusive && compared == 0)) {
+                        if (found >= offset && found < offset + rows) {
+                            records.append(records.length() == 0 ? "" : ",").append("{\"id\":").append(i)
+                                .append(",\"dateTimeModified\":\"")
+                                .append(timestamp(i / 3).replace('T', ' ').replace("Z", "")).append("\"}");
+                        }
+                        found++;
+                    }
+                }
+                byte[] body = ("{\"data\":{\"numFound\":" + found + ",\"records\":[" + records + "]}}")
+                    .getBytes("UTF-8");
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(status, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+        return new ActivitiesHarvester("http://localhost:" + server.getAddress().getPort() + "/activities",
+            query, 5, 0);
+    }
+
+    private static String timestamp(int second) {
+        return String.format("2015-11-28T13:15:%02dZ", second);
+    }
+}
@@ -0,0 +1,74 @@
+import com.jayway.restassured.RestAssured;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static com.jayway.restassured.RestAssured.given;
+
+/**
+ * Replays the ActivitiesAPITest query matrix concurrently against grant_api_url.
+ * Only runs when load_duration is set in config.properties. With config_reload=true,
+ * load_rate and grant_api_url can be changed in the file while it runs.
+ */
+public class ActivitiesLoadTest {
+
+    private static ClientResponseCache cache;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        Properties props = ApiConfig.current().toProperties();
+        RestAssured.useRelaxedHTTPSValidation();
+        Instrumentation.install(props);
+        Fixtures.install(props);
+        cache = CachingFilter.install(props);
+    }
+
+    @Test
+    public void replayQueryMatrix() throws Exception {
+        ApiConfig config = ApiConfig.current();
+        long duration = config.getLoadDuration();
+        Assume.assumeTrue(duration > 0);
+
+        int workers = config.getLoadWorkers();
+        double rate = config.getLoadRate();
+
+        Map<String, LoadDriver.Request> shapes = new LinkedHashMap<String, LoadDriver.Request>();
+        for (final Map.Entry<String, Map<String, String>> query :
+            ActivitiesQueries.select(config.get("load_queries")).entrySet()) {
+            shapes.put(query.getKey(), new LoadDriver.Request() {
+                public void execute() {
+                    given().queryParams(query.getValue())
+                        .when().get(ApiConfig.current().getGrantApiUrl())
+                        .then().statusCode(200);
+                }
+            });
+        }
+
+        System.out.println("Replaying " + shapes.size() + " activities queries with " + workers
+            + " workers at " + (rate > 0 ? rate + " req/s" : "unthrottled rate") + " for " + duration + "s");
+        final LoadDriver driver = new LoadDriver(workers, rate, duration * 1000);
+        ApiConfig.Listener throttle = new ApiConfig.Listener() {
+            public void reloaded(ApiConfig previous, ApiConfig current) {
+                if (current.getLoadRate() != previous.getLoadRate()) {
+                    System.out.println("load_rate changed to " + current.getLoadRate() + " req/s");
+                    driver.setRate(current.getLoadRate());
+                }
+            }
+        };
+        ApiConfig.addListener(throttle);
+        LoadReport report;
+        try {
+            report = driver.run(shapes);
+        } finally {
+            ApiConfig.removeListener(throttle);
+        }
+        report.print(System.out);
+        if (cache != null) {
+            cache.print(System.out);
+        }
+    }
+}
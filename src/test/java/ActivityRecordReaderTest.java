@@ -0,0 +1,81 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+
+public class ActivityRecordReaderTest {
+
+    @Test
+    public void testReadRecords() throws Exception {
+        ActivityRecordReader reader = new ActivityRecordReader(sample());
+        ActivityRecord record = new ActivityRecord();
+
+        Assert.assertTrue(reader.next(record));
+        Assert.assertThat(reader.getStatus(), equalTo("OK"));
+        Assert.assertThat(reader.getOffset(), equalTo(0L));
+        Assert.assertThat(record.getId(), equalTo("408717"));
+        Assert.assertThat(record.get("purl"), equalTo("http://purl.org/au-research/grants/arc/LP0776938"));
+        Assert.assertThat(record.getAll("subjects"),
+            equalTo(Arrays.asList("Intelligent agents", "Artificial Intelligence and Image Processing")));
+        Assert.assertThat(record.getAll("researchers"), equalTo(Arrays.asList("Prof Jacob George", "Chief Investigator")));
+        Assert.assertThat(record.get("description"), nullValue());
+
+        Assert.assertTrue(reader.next(record));
+        Assert.assertThat(record.getIndex(), equalTo(1L));
+        Assert.assertThat(record.getAll("subjects").size(), equalTo(0));
+        Assert.assertThat(record.getAll("extra"), equalTo(Arrays.asList("1", "2", "y")));
+
+        Assert.assertTrue(reader.next(record));
+        Assert.assertThat(record.get("type"), equalTo("program"));
+        Assert.assertThat(record.get("purl"), nullValue());
+
+        Assert.assertFalse(reader.next(record));
+        Assert.assertThat(reader.getRecords(), equalTo(3L));
+        // numFound comes after the records in the sample
+        Assert.assertThat(reader.getNumFound(), equalTo(3L));
+        reader.close();
+    }
+
+    @Test
+    public void testValidate() throws Exception {
+        ActivityRecordReader.Result result = ActivityRecordReader.validate(sample(),
+            ActivityRecordCheck.fieldEquals("type", "grant"),
+            ActivityRecordCheck.fieldContainsAny("titles", "cancer", "cluster"),
+            ActivityRecordCheck.everyValueContains("identifiers", "/"));
+
+        Assert.assertThat(result.getRecords(), equalTo(3L));
+        Assert.assertThat(result.getNumFound(), equalTo(3L));
+        // the third record is a program about caves
+        Assert.assertThat(result.getFailures(), equalTo(2L));
+        Assert.assertThat(result.getMessages().size(), equalTo(2));
+    }
+
+    @Test
+    public void testTimestamps() throws Exception {
+        ActivityRecordReader reader = new ActivityRecordReader(sample());
+        ActivityRecord record = new ActivityRecord();
+
+        Assert.assertTrue(reader.next(record));
+        Assert.assertThat(record.getTimestamp("dateTimeModified"), equalTo(IsoTimestamps.parse("2016-01-18T23:04:10Z")));
+        Assert.assertThat(record.getTimestamp("purl"), equalTo(ActivityRecord.MISSING));
+        reader.close();
+
+        ActivityRecordReader.Result result = ActivityRecordReader.validate(sample(),
+            ActivityRecordCheck.timestampNotBefore("dateTimeCreated", "2015-11-30T02:11:47Z"),
+            ActivityRecordCheck.timestampNotBefore("dateTimeModified", "2015-12-02T21:00:00+11:00"));
+        Assert.assertThat(result.getMessages().toString(), result.getFailures(), equalTo(0L));
+
+        // one second after the second record was modified, in another zone
+        result = ActivityRecordReader.validate(sample(),
+            ActivityRecordCheck.timestampNotBefore("dateTimeModified", "2015-12-02T20:00:01+10:00"));
+        Assert.assertThat(result.getFailures(), equalTo(1L));
+    }
+
+    private static InputStream sample() {
+        return ActivityRecordReaderTest.class.getResourceAsStream("activities-sample.json");
+    }
+}
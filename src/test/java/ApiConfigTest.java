@@ -0,0 +1,150 @@
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+
+public class ApiConfigTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<ApiConfig.Listener> listeners = new ArrayList<ApiConfig.Listener>();
+
+    @After
+    public void tearDown() throws IOException {
+        ApiConfig.stopWatching();
+        for (ApiConfig.Listener listener : listeners) {
+            ApiConfig.removeListener(listener);
+        }
+        ApiConfig.clearOverride("load_rate");
+        ApiConfig.clearOverride("config_file");
+    }
+
+    @Test
+    public void testTypedSettings() {
+        Properties props = new Properties();
+        props.setProperty("grant_api_url", " https://test.ands.org.au/api/v2.0/grants.json ");
+        props.setProperty("test_doi1", "10.5072/00/1");
+        props.setProperty("load_rate", "12.5");
+        props.setProperty("load_duration", "");
+        props.setProperty("latency_budget.activities", "p95:800");
+
+        ApiConfig config = ApiConfig.from(props);
+        props.setProperty("test_doi1", "changed");
+
+        Assert.assertThat(config.getGrantApiUrl(), equalTo("https://test.ands.org.au/api/v2.0/grants.json"));
+        Assert.assertThat(config.getTestDoi1(), equalTo("10.5072/00/1"));
+        Assert.assertThat(config.getServiceUrl(), nullValue());
+        Assert.assertThat(config.getLoadRate(), equalTo(12.5));
+        Assert.assertThat(config.getLoadDuration(), equalTo(0L));
+        Assert.assertThat(config.getLoadWorkers(), equalTo(8));
+        Assert.assertThat(config.getBoolean("config_reload", false), equalTo(false));
+        Assert.assertThat(config.getLatencyBudgets().keySet().contains("activities"), equalTo(true));
+        Assert.assertThat(config.toProperties().getProperty("test_doi1"), equalTo("10.5072/00/1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidUrl() {
+        Properties props = new Properties();
+        props.setProperty("service_url", "https://test.ands.org.au/apps/my dois/");
+        ApiConfig.from(props);
+    }
+
+    @Test
+    public void testConfigFileAndOverrides() throws Exception {
+        File file = write("load_rate=5\nload_workers=3\n");
+        ApiConfig.override("config_file", file.getPath());
+        Assert.assertThat(ApiConfig.current().getLoadRate(), equalTo(5.0));
+        Assert.assertThat(ApiConfig.current().getLoadWorkers(), equalTo(3));
+
+        final List<ApiConfig[]> published = new ArrayList<ApiConfig[]>();
+        listen(new ApiConfig.Listener() {
+            public void reloaded(ApiConfig previous, ApiConfig current) {
+                published.add(new ApiConfig[]{previous, current});
+            }
+        });
+        ApiConfig.override("load_rate", "11");
+        Assert.assertThat(ApiConfig.current().getLoadRate(), equalTo(11.0));
+        ApiConfig.clearOverride("load_rate");
+        Assert.assertThat(ApiConfig.current().getLoadRate(), equalTo(5.0));
+
+        Assert.assertThat(published.size(), equalTo(2));
+        Assert.assertThat(published.get(0)[0].getLoadRate(), equalTo(5.0));
+        Assert.assertThat(published.get(0)[1].getLoadRate(), equalTo(11.0));
+        Assert.assertThat(published.get(0)[1].getVersion(), equalTo(published.get(0)[0].getVersion() + 1));
+        Assert.assertThat(published.get(1)[1].getLoadRate(), equalTo(5.0));
+    }
+
+    @Test
+    public void testWatchReloadsChangedFile() throws Exception {
+        File file = write("load_rate=5\n");
+        ApiConfig.override("config_file", file.getPath());
+        ApiConfig.watch(file);
+        CountDownLatch reloaded = awaitLoadRate(9);
+
+        write("load_rate=9\n");
+        Assert.assertTrue(reloaded.await(30, TimeUnit.SECONDS));
+        Assert.assertThat(ApiConfig.current().getLoadRate(), equalTo(9.0));
+    }
+
+    @Test
+    public void testWatchKeepsSnapshotWhenFileIsInvalid() throws Exception {
+        File file = write("load_rate=5\n");
+        ApiConfig.override("config_file", file.getPath());
+        ApiConfig.watch(file);
+        long version = ApiConfig.current().getVersion();
+
+        write("load_rate=6\nservice_url=https://test.ands.org.au/apps/my dois/\n");
+        Thread.sleep(1000);
+        Assert.assertThat(ApiConfig.current().getVersion(), equalTo(version));
+        Assert.assertThat(ApiConfig.current().getLoadRate(), equalTo(5.0));
+
+        // the watcher is still running after the failed reload
+        CountDownLatch reloaded = awaitLoadRate(7);
+        write("load_rate=7\n");
+        Assert.assertTrue(reloaded.await(30, TimeUnit.SECONDS));
+        Assert.assertThat(ApiConfig.current().getVersion(), equalTo(version + 1));
+    }
+
+    private CountDownLatch awaitLoadRate(final double rate) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        listen(new ApiConfig.Listener() {
+            public void reloaded(ApiConfig previous, ApiConfig current) {
+                if (current.getLoadRate() == rate) {
+                    latch.countDown();
+                }
+            }
+        });
+        return latch;
+    }
+
+    private void listen(ApiConfig.Listener listener) {
+        listeners.add(listener);
+        ApiConfig.addListener(listener);
+    }
+
+    /**
+     * Replaces config.test.properties in one move, so the watcher never sees it half written.
+     */
+    private File write(String content) throws IOException {
+        File file = new File(folder.getRoot(), "config.test.properties");
+        File next = folder.newFile();
+        Files.write(next.toPath(), content.getBytes("UTF-8"));
+        Files.move(next.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return file;
+    }
+}
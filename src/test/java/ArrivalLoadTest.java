@@ -0,0 +1,26 @@
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Replays the arrival_templates tests on the open model schedule in arrival_phases, see
+ * {@link ArrivalScheduler}. Only runs when arrival_phases is set in config.properties.
+ */
+public class ArrivalLoadTest {
+
+    @Test
+    public void replayOnSchedule() throws Throwable {
+        ApiConfig config = ApiConfig.current();
+        Assume.assumeTrue(!config.get("arrival_phases", "").trim().isEmpty());
+
+        ArrivalScheduler scheduler = ArrivalScheduler.fromProperties(config.toProperties());
+        TestTemplates templates = TestTemplates.of(config.get("arrival_templates", "ActivitiesAPITest"));
+        try {
+            System.out.println("Scheduling " + templates.getRequests().size() + " requests over "
+                + config.get("arrival_phases"));
+            ArrivalScheduler.Result result = scheduler.run(templates.getRequests());
+            result.print(System.out);
+        } finally {
+            templates.close();
+        }
+    }
+}
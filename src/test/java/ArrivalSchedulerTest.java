@@ -0,0 +1,64 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.number.OrderingComparison.greaterThan;
+
+public class ArrivalSchedulerTest {
+
+    @Test
+    public void testPhases() {
+        List<ArrivalScheduler.Phase> phases = ArrivalScheduler.parse("ramp:2s:0-100, steady:1s:100,spike:500ms:400");
+        Assert.assertThat(phases.size(), equalTo(3));
+        Assert.assertThat(phases.get(0).toString(), equalTo("ramp 2s at 0-100 req/s"));
+        Assert.assertThat(phases.get(2).getDurationNanos(), equalTo(500000000L));
+
+        // the area under the rate: 100 over the ramp, 100 steady and 200 in the spike
+        Assert.assertThat(arrivals(phases.get(0)), equalTo(100));
+        Assert.assertThat(arrivals(phases.get(1)), equalTo(100));
+        Assert.assertThat(arrivals(phases.get(2)), equalTo(200));
+        // arrivals speed up along the ramp
+        Assert.assertThat(phases.get(0).offsetNanos(1) - phases.get(0).offsetNanos(0),
+            greaterThan(phases.get(0).offsetNanos(99) - phases.get(0).offsetNanos(98)));
+    }
+
+    private static int arrivals(ArrivalScheduler.Phase phase) {
+        int arrivals = 0;
+        while (phase.offsetNanos(arrivals) >= 0) {
+            arrivals++;
+        }
+        return arrivals;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPhase() {
+        ArrivalScheduler.parse("steady:10s");
+    }
+
+    @Test
+    public void testLatencyFromIntendedSendTime() throws Exception {
+        Map<String, LoadDriver.Request> shapes = new LinkedHashMap<String, LoadDriver.Request>();
+        shapes.put("slow", new LoadDriver.Request() {
+            public void execute() throws Exception {
+                Thread.sleep(50);
+            }
+        });
+
+        // 30 arrivals a 50 ms request apart for a single worker: a closed loop would see
+        // 50 ms every time, the schedule sees the queue build up behind it
+        ArrivalScheduler.Result result = new ArrivalScheduler(
+            Arrays.asList(ArrivalScheduler.Phase.steady(300, 100)), 1).run(shapes);
+
+        Assert.assertThat(result.getArrivals(), equalTo(30L));
+        Assert.assertThat(result.responseTimes(0).histogram("slow").getTotalCount(), equalTo(30L));
+        long serviceMax = result.serviceTimes(0).histogram("slow").getMaxValue();
+        long responseMax = result.responseTimes(0).histogram("slow").getMaxValue();
+        Assert.assertThat(responseMax, greaterThan(5 * serviceMax));
+        Assert.assertThat(result.getMaxInFlight(), greaterThan(20L));
+    }
+}
@@ -0,0 +1,68 @@
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.number.OrderingComparison.greaterThan;
+
+public class AsyncCheckRunnerTest {
+
+    private MockDoiService mock;
+
+    @Before
+    public void setUp() throws Exception {
+        mock = new MockDoiService(0, 100, 0, 0).start();
+    }
+
+    @After
+    public void tearDown() {
+        mock.stop();
+    }
+
+    @Test
+    public void testManyInFlightOnFewThreads() throws Exception {
+        AsyncCheckRunner.Check status = new AsyncCheckRunner.Check("status.xml",
+            mock.getServiceUrl() + "status.xml/", 200, "MT090");
+        AsyncCheckRunner.Check missing = new AsyncCheckRunner.Check("xml.xml",
+            mock.getServiceUrl() + "xml.xml?doi=DOESNOTEXISTDOI", 200, "<identifier");
+
+        // 200 requests in flight against a 100 ms service, a thread each would be 200 threads
+        AsyncCheckRunner.Result result = new AsyncCheckRunner(200, 1, 5000)
+            .run(Arrays.asList(status, missing), 1000);
+        result.print(System.out);
+
+        long statusCount = result.getReport().histogram("status.xml").getTotalCount();
+        long missingCount = result.getReport().histogram("xml.xml").getTotalCount();
+        Assert.assertThat(statusCount + missingCount, equalTo(result.getRequests()));
+        Assert.assertThat(result.getRequests(), greaterThan(400L));
+        Assert.assertThat(result.getReport().errors("status.xml"), equalTo(0L));
+        Assert.assertThat(result.getReport().errors("xml.xml"), equalTo(missingCount));
+        Assert.assertThat(result.getFailures().get("unexpected body"), equalTo(missingCount));
+        Assert.assertThat(result.getCpuNanosPerRequest(), greaterThan(0.0));
+        Assert.assertThat(result.getAllocatedBytesPerRequest(), greaterThan(0.0));
+        Assert.assertThat(result.getHeapBytesPerInFlight(), greaterThan(0.0));
+    }
+
+    @Test
+    public void testChecksFromConfiguration() {
+        Properties props = new Properties();
+        props.setProperty("service_url", "http://localhost/apps/mydois/");
+        props.setProperty("grant_api_url", "http://localhost/api/activities/");
+        props.setProperty("test_doi1", "10.5072/00/1");
+        props.setProperty("load_queries", "default,title");
+
+        List<AsyncCheckRunner.Check> checks =
+            AsyncCheckRunner.checks(ApiConfig.from(props), "status,metadata,activities");
+
+        Assert.assertThat(checks.size(), equalTo(4));
+        Assert.assertThat(checks.get(1).getUrl(), equalTo("http://localhost/apps/mydois/xml.xml?doi=10.5072/00/1"));
+        Assert.assertThat(checks.get(2).getUrl(), equalTo("http://localhost/api/activities/"));
+        Assert.assertThat(checks.get(3).getName(), equalTo("activities title"));
+        Assert.assertThat(checks.get(3).getUrl().startsWith("http://localhost/api/activities/?"), equalTo(true));
+    }
+}
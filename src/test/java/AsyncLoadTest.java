@@ -0,0 +1,36 @@
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the async_checks on the non-blocking client, see {@link AsyncCheckRunner}, against the
+ * mock DOI service when mock_doi_service is on. Only runs when async_duration_s is set in
+ * config.properties.
+ */
+public class AsyncLoadTest {
+
+    @Test
+    public void runChecks() throws Exception {
+        ApiConfig config = ApiConfig.current();
+        long duration = config.getLong("async_duration_s", 0);
+        Assume.assumeTrue(duration > 0);
+
+        boolean mock = config.getBoolean("mock_doi_service", false);
+        if (mock) {
+            CMDEndPointTest.setUpBeforeClass();
+            config = ApiConfig.current();
+        }
+        try {
+            AsyncCheckRunner runner = AsyncCheckRunner.fromProperties(config.toProperties());
+            System.out.println("Running " + config.get("async_checks") + " checks with "
+                + config.get("async_concurrency") + " requests in flight for " + duration + "s");
+            runner.run(AsyncCheckRunner.checks(config, config.get("async_checks", "status,metadata,activities")),
+                TimeUnit.SECONDS.toMillis(duration)).print(System.out);
+        } finally {
+            if (mock) {
+                CMDEndPointTest.tearDownAfterClass();
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class BulkMinterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockDoiService mock;
+    private File manifest;
+    private File checkpoint;
+
+    @Before
+    public void setUp() throws Exception {
+        write(new File(folder.getRoot(), "sample.xml"), APIProperties.getFileContent("sample.xml"));
+        StringBuilder lines = new StringBuilder("# url\txml\tdoi\n");
+        for (int i = 0; i < 40; i++) {
+            lines.append("http://example.org/").append(i).append("\tsample.xml\n");
+        }
+        lines.append("http://example.org/updated\tsample.xml\t").append(MockDoiService.DOI_PREFIX).append("1\n");
+        manifest = new File(folder.getRoot(), "manifest.tsv");
+        write(manifest, lines.toString());
+        checkpoint = new File(folder.getRoot(), "manifest.checkpoint");
+    }
+
+    @After
+    public void tearDown() {
+        if (mock != null) {
+            mock.stop();
+        }
+    }
+
+    @Test
+    public void retriesUpdatesButNotMintsAndResumesFromCheckpoint() throws Exception {
+        mock = new MockDoiService(0, 5, 5, 0.3).start();
+        mock.register(MockDoiService.DOI_PREFIX + "1", "http://example.org/1");
+
+        BulkMinter.Result result = minter(10).run(manifest, checkpoint);
+        result.print(System.out);
+        // a mint failing with 503 may have minted, so it is recorded as unknown instead of resent
+        Assert.assertTrue(result.getUnknown() > 0);
+        Assert.assertEquals(40, result.getMinted() + result.getUnknown());
+        Assert.assertEquals(1, result.getUpdated());
+        Assert.assertEquals(0, result.getFailed());
+        Assert.assertEquals(40 - result.getMinted(), mock.getInjectedErrorCount() - result.getRetries());
+        Assert.assertEquals(41, BulkMinter.readCheckpoint(checkpoint).size());
+
+        BulkMinter.Result resumed = minter(10).run(manifest, checkpoint);
+        Assert.assertEquals(41, resumed.getSkipped());
+        Assert.assertEquals(0, resumed.getMinted());
+    }
+
+    @Test
+    public void retriesMintsThatNeverConnected() throws Exception {
+        mock = new MockDoiService(0, 0, 0, 0).start();
+        mock.stop();
+
+        BulkMinter.Result result = minter(3).run(manifest, checkpoint);
+        Assert.assertEquals(41, result.getFailed());
+        Assert.assertEquals(0, result.getUnknown());
+        Assert.assertEquals(41 * 2, result.getRetries());
+        Assert.assertTrue(result.getFailures().get(0).contains("ConnectException"));
+        Assert.assertEquals(0, BulkMinter.readCheckpoint(checkpoint).size());
+    }
+
+    @Test
+    public void doesNotRetryPermanentFailures() throws Exception {
+        mock = new MockDoiService(0, 0, 0, 0).start();
+        // DOI_PREFIX + 1 is not registered, so the update fails with MT011
+
+        BulkMinter.Result result = minter(5).run(manifest, checkpoint);
+        Assert.assertEquals(40, result.getMinted());
+        Assert.assertEquals(1, result.getFailed());
+        Assert.assertEquals(0, result.getRetries());
+        Assert.assertTrue(result.getFailures().get(0).contains("MT011"));
+        Assert.assertEquals(40, BulkMinter.readCheckpoint(checkpoint).size());
+    }
+
+    private BulkMinter minter(int attempts) {
+        return new BulkMinter(new DoiServiceClient(mock.getServiceUrl(), "mock-app", "Basic bW9jaw==", 5000),
+            4, attempts, 1);
+    }
+
+    private static void write(File file, String content) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -5,11 +5,23 @@ import com.jayway.restassured.RestAssured;
 import com.jayway.restassured.http.ContentType;
 import com.jayway.restassured.response.Response;
 import org.junit.*;
+import org.junit.runner.RunWith;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
+@RunWith(ParallelRunner.class)
 public class CMDEndPointTest {
-    private static Properties props;
+    private static final String DOI_LIFECYCLE = "test_doi2";
+
+    private static MockDoiService mock;
+    private static final List<String> mockOverrides = new ArrayList<String>();
+    private static DataCiteValidator validator;
+
+    @Rule
+    public LatencyBudgetRule latencyBudgets = new LatencyBudgetRule();
 
     // TODO: 8/12/2015 resource for tests, sample xml kernel-2.2 kernel-3
     // TODO: 8/12/2015 xml, json and text response
@@ -17,35 +29,97 @@ public class CMDEndPointTest {
     @BeforeClass
     public static void setUpBeforeClass() throws Exception {
 
-        APIProperties localProperties = new APIProperties();
-        props = localProperties.getProp();
+        ApiConfig config = ApiConfig.current();
 
         System.out.println("Getting and verifying configuration");
         System.out.println("Testing...");
 
+        if (config.getBoolean("mock_doi_service", false)) {
+            useMock(config);
+        }
+
+        Properties props = ApiConfig.current().toProperties();
+        if (config.getBoolean("datacite_validation", false)) {
+            validator = DataCiteValidator.fromProperties(props);
+        }
+
         RestAssured.useRelaxedHTTPSValidation();
+        Instrumentation.install(props);
+        CachingFilter.install(props);
+    }
+
+    /**
+     * Fails unless the document is valid DataCite, when datacite_validation is on.
+     */
+    private static void assertValidDataCite(byte[] xml) throws IOException {
+        if (validator != null) {
+            Assert.assertNull(validator.check(xml));
+        }
+    }
+
+    /**
+     * Points the tests at an in-process MockDoiService, filling in mock credentials and DOIs
+     * where none are configured.
+     */
+    private static void useMock(ApiConfig config) throws Exception {
+        mock = MockDoiService.fromProperties(config.toProperties()).start();
+        override("base_url", mock.getBaseUrl());
+        override("service_url", mock.getServiceUrl());
+        String[][] defaults = {
+            {"app_id", "mock-app"},
+            {"auth_header", "Basic bW9jay1hcHA6bW9jaw=="},
+            {"test_url1", "http://example.org/1"},
+            {"test_url2", "http://example.org/2"},
+            {"test_doi1", MockDoiService.DOI_PREFIX + "1"},
+            {"test_doi2", MockDoiService.DOI_PREFIX + "2"}
+        };
+        for (String[] property : defaults) {
+            if (config.get(property[0], "").trim().isEmpty()) {
+                override(property[0], property[1]);
+            }
+        }
+        config = ApiConfig.current();
+        mock.register(config.getTestDoi1(), config.getTestUrl1());
+        mock.register(config.getTestDoi2(), config.getTestUrl2());
+        System.out.println("Using the mock DOI service at " + mock.getServiceUrl());
+    }
+
+    private static void override(String key, String value) {
+        ApiConfig.override(key, value);
+        mockOverrides.add(key);
     }
 
 
     @AfterClass
     public static void tearDownAfterClass() throws Exception {
+        if (mock != null) {
+            mock.stop();
+            mock = null;
+            for (String key : mockOverrides) {
+                ApiConfig.clearOverride(key);
+            }
+            mockOverrides.clear();
+        }
         System.out.println("Done!");
     }
 
     @Test
     public void getBaseUrl() {
-        when().get(props.getProperty("base_url")).then().statusCode(200);
+        ApiConfig config = ApiConfig.current();
+        when().get(config.getBaseUrl()).then().statusCode(200);
     }
 
     @Test
     public void getServiceUrl() {
-        when().get(props.getProperty("service_url")).then().statusCode(200);
+        ApiConfig config = ApiConfig.current();
+        when().get(config.getServiceUrl()).then().statusCode(200);
     }
 
     // TODO: 8/12/2015 status.json works but wrong contentType
     @Test
     public void getServiceStatus() {
-        when().get(props.getProperty("service_url") + "status.xml/")
+        ApiConfig config = ApiConfig.current();
+        when().get(config.getServiceUrl() + "status.xml/")
                 .then()
                 .contentType(ContentType.XML)
                 .statusCode(200)
@@ -53,7 +127,7 @@ public class CMDEndPointTest {
                 .body("response.responsecode", equalTo("MT090"))
         ;
 
-        /*when().get(props.getProperty("service_url") + "status.json/")
+        /*when().get(config.getServiceUrl() + "status.json/")
                 .then()
                 .contentType(ContentType.JSON)
                 .statusCode(200)
@@ -64,19 +138,22 @@ public class CMDEndPointTest {
 
     // TODO: 8/12/2015 Update documentation service point .JSON does not work
     @Test
-    public void getMetadataTest() {
-        given().queryParam("doi", props.getProperty("test_doi1")).
-                when().get(props.getProperty("service_url") + "xml.xml")
+    public void getMetadataTest() throws IOException {
+        ApiConfig config = ApiConfig.current();
+        byte[] metadata = given().queryParam("doi", config.getTestDoi1()).
+                when().get(config.getServiceUrl() + "xml.xml")
                 .then().contentType(ContentType.XML).statusCode(200)
-                .body("resource.identifier", equalTo(props.getProperty("test_doi1")))
-        ;
+                .body("resource.identifier", equalTo(config.getTestDoi1()))
+                .extract().asByteArray();
+        assertValidDataCite(metadata);
     }
 
     // TODO: 8/12/2015 Update getMetadataFail for contentType.XML
     @Test
     public void getMetadataFail() {
-        given().queryParam("doi", props.getProperty("test_doi1_fail")).
-                when().get(props.getProperty("service_url") + "xml.xml")
+        ApiConfig config = ApiConfig.current();
+        given().queryParam("doi", config.getTestDoi1Fail()).
+                when().get(config.getServiceUrl() + "xml.xml")
                 .then().statusCode(200)
 //                .body("response.@type", equalTo("failure"))
 //                .body("response.responsecode", equalTo("MT011"))
@@ -85,41 +162,46 @@ public class CMDEndPointTest {
 
     // TODO: 8/12/2015 MINT
     @Test
-    public void postMint() {
+    @Exclusive(value = DOI_LIFECYCLE, order = 1)
+    public void postMint() throws IOException {
+        ApiConfig config = ApiConfig.current();
+        assertValidDataCite(APIProperties.getFileContent("sample.xml").getBytes("UTF-8"));
         Response response =
                 given()
-                        .header("Authorization", props.getProperty("auth_header"))
-                        .queryParam("url", props.getProperty("test_url1"))
-                        .queryParam("app_id", props.getProperty("app_id"))
+                        .header("Authorization", config.getAuthHeader())
+                        .queryParam("url", config.getTestUrl1())
+                        .queryParam("app_id", config.getAppId())
                         .param("xml", APIProperties.getFileContent("sample.xml"))
                         .body(APIProperties.getFileContent("sample.xml"))
-                        .when().get(props.getProperty("service_url") + "mint.xml/")
+                        .when().get(config.getServiceUrl() + "mint.xml/")
                         .then()
                         .statusCode(200)
                         .contentType(ContentType.XML)
 //                        .body("response.@type", equalTo("success"))
 //                        .body("response.responsecode", equalTo("MT003"))
-//                        .body("response.doi", equalTo(props.getProperty("test_doi2")))
-//                        .body("response.app_id", equalTo(props.getProperty("app_id")))
+//                        .body("response.doi", equalTo(config.getTestDoi2()))
+//                        .body("response.app_id", equalTo(config.getAppId()))
                         .extract().response();
         System.out.println(response.getBody().asString());
     }
 
     // TODO: 8/12/2015 UPDATE URL
     @Test
+    @Exclusive(value = DOI_LIFECYCLE, order = 2)
     public void postUpdateUrl() {
+        ApiConfig config = ApiConfig.current();
         Response response = given()
-                .header("Authorization", props.getProperty("auth_header"))
-                .queryParam("url", props.getProperty("test_url2"))
-                .queryParam("doi", props.getProperty("test_doi2"))
-                .queryParam("app_id", props.getProperty("app_id"))
-                .when().get(props.getProperty("service_url") + "update.xml/")
+                .header("Authorization", config.getAuthHeader())
+                .queryParam("url", config.getTestUrl2())
+                .queryParam("doi", config.getTestDoi2())
+                .queryParam("app_id", config.getAppId())
+                .when().get(config.getServiceUrl() + "update.xml/")
                 .then()
                 .contentType(ContentType.XML)
                 .body("response.@type", equalTo("success"))
                 .body("response.responsecode", equalTo("MT002"))
-                .body("response.doi", equalTo(props.getProperty("test_doi2")))
-                .body("response.app_id", equalTo(props.getProperty("app_id")))
+                .body("response.doi", equalTo(config.getTestDoi2()))
+                .body("response.app_id", equalTo(config.getAppId()))
                 .extract().response();
         System.out.println(response.getBody().asString());
     }
@@ -128,38 +210,43 @@ public class CMDEndPointTest {
     // TODO: 8/12/2015 UPDATE URL AND XML
 
     @Test
+    @Exclusive(value = DOI_LIFECYCLE, order = 3)
     public void getDeactivate() {
+        ApiConfig config = ApiConfig.current();
         Response response = given()
-                .header("Authorization", props.getProperty("auth_header"))
-                .queryParam("doi", props.getProperty("test_doi2"))
-                .queryParam("app_id", props.getProperty("app_id"))
-                .when().get(props.getProperty("service_url") + "deactivate.xml/")
+                .header("Authorization", config.getAuthHeader())
+                .queryParam("doi", config.getTestDoi2())
+                .queryParam("app_id", config.getAppId())
+                .when().get(config.getServiceUrl() + "deactivate.xml/")
                 .then()
                 .contentType(ContentType.XML)
                 .body("response.@type", equalTo("success"))
                 .body("response.responsecode", equalTo("MT003"))
-                .body("response.doi", equalTo(props.getProperty("test_doi2")))
-                .body("response.app_id", equalTo(props.getProperty("app_id")))
+                .body("response.doi", equalTo(config.getTestDoi2()))
+                .body("response.app_id", equalTo(config.getAppId()))
                 .extract().response();
 //        System.out.println(response.getBody().asString());
 
     }
 
     @Test
-    public void getActivate() {
+    @Exclusive(value = DOI_LIFECYCLE, order = 4)
+    public void getActivate() throws IOException {
+        ApiConfig config = ApiConfig.current();
+        assertValidDataCite(APIProperties.getFileContent("sample.xml").getBytes("UTF-8"));
         Response response = given()
-                .header("Authorization", props.getProperty("auth_header"))
-                .queryParam("doi", props.getProperty("test_doi2"))
-                .queryParam("app_id", props.getProperty("app_id"))
+                .header("Authorization", config.getAuthHeader())
+                .queryParam("doi", config.getTestDoi2())
+                .queryParam("app_id", config.getAppId())
                 .param("xml", APIProperties.getFileContent("sample.xml"))
-                .when().get(props.getProperty("service_url") + "activate.xml/")
+                .when().get(config.getServiceUrl() + "activate.xml/")
                 .then()
                 .statusCode(200)
                 .contentType(ContentType.XML)
                 .body("response.@type", equalTo("success"))
                 .body("response.responsecode", equalTo("MT004"))
-                .body("response.doi", equalTo(props.getProperty("test_doi2")))
-                .body("response.app_id", equalTo(props.getProperty("app_id")))
+                .body("response.doi", equalTo(config.getTestDoi2()))
+                .body("response.app_id", equalTo(config.getAppId()))
                 .extract().response();
 //        System.out.println(response.getBody().asString());
 
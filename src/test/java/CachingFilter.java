@@ -0,0 +1,117 @@
+import com.jayway.restassured.RestAssured;
+import com.jayway.restassured.builder.ResponseBuilder;
+import com.jayway.restassured.filter.Filter;
+import com.jayway.restassured.filter.FilterContext;
+import com.jayway.restassured.response.Response;
+import com.jayway.restassured.specification.FilterableRequestSpecification;
+import com.jayway.restassured.specification.FilterableResponseSpecification;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Serves GET requests under the given URL prefixes through a ClientResponseCache: fresh
+ * entries are answered without a request, stale ones are revalidated with a conditional
+ * request and everything else is fetched and kept when cacheable.
+ * Enabled for grant_api_url and xml.xml by response_cache, see {@link #install(Properties)}.
+ */
+public class CachingFilter implements Filter {
+
+    private static ClientResponseCache installed;
+
+    private final ClientResponseCache cache;
+    private final List<String> urlPrefixes;
+
+    public CachingFilter(ClientResponseCache cache, String... urlPrefixes) {
+        this.cache = cache;
+        this.urlPrefixes = new ArrayList<String>(Arrays.asList(urlPrefixes));
+    }
+
+    /**
+     * With response_cache=true, caches grant_api_url and service_url xml.xml responses for every
+     * REST-assured request and prints the cache's statistics when the JVM exits. Call from
+     * each @BeforeClass after Instrumentation and Fixtures.
+     *
+     * @return the cache, or null when response_cache is off
+     */
+    public static synchronized ClientResponseCache install(Properties props) {
+        if (installed == null && Boolean.parseBoolean(props.getProperty("response_cache", "false").trim())) {
+            final ClientResponseCache cache = ClientResponseCache.fromProperties(props);
+            List<String> prefixes = new ArrayList<String>();
+            for (String prefix : new String[]{props.getProperty("grant_api_url"),
+                props.getProperty("service_url") == null ? null : props.getProperty("service_url") + "xml.xml"}) {
+                if (prefix != null && !prefix.trim().isEmpty()) {
+                    prefixes.add(prefix.trim());
+                }
+            }
+            RestAssured.filters(new CachingFilter(cache, prefixes.toArray(new String[prefixes.size()])));
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                @Override
+                public void run() {
+                    cache.print(System.out);
+                }
+            });
+            installed = cache;
+        }
+        return installed;
+    }
+
+    public Response filter(FilterableRequestSpecification requestSpec,
+                           FilterableResponseSpecification responseSpec,
+                           FilterContext ctx) {
+        String url = requestSpec.getURI();
+        if (!"GET".equals(requestSpec.getMethod().name()) || !matches(url)) {
+            return ctx.next(requestSpec, responseSpec);
+        }
+        String key = ClientResponseCache.key(url);
+        ClientResponseCache.Entry cached = cache.get(key);
+        if (cached != null && cached.isFresh()) {
+            cache.hit(cached);
+            return toResponse(cached, "HIT");
+        }
+        if (cached != null && cached.canRevalidate()) {
+            if (cached.getEtag() != null) {
+                requestSpec.header("If-None-Match", cached.getEtag());
+            }
+            if (cached.getLastModified() != null) {
+                requestSpec.header("If-Modified-Since", cached.getLastModified());
+            }
+        }
+        long started = System.nanoTime();
+        Response response = ctx.next(requestSpec, responseSpec);
+        byte[] body = response.asByteArray();
+        long fetchNanos = System.nanoTime() - started;
+        if (response.getStatusCode() == 304 && cached != null) {
+            cache.revalidated(cached, fetchNanos);
+            return toResponse(cached, "REVALIDATED");
+        }
+        cache.miss();
+        cache.put(key, response.getStatusCode(), response.getContentType(), response.getHeader("ETag"),
+            response.getHeader("Last-Modified"), response.getHeader("Cache-Control"), body, fetchNanos);
+        return response;
+    }
+
+    private boolean matches(String url) {
+        for (String prefix : urlPrefixes) {
+            if (url.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param cacheStatus the X-Cache header, HIT when no request was made, see {@link LatencyFilter}
+     */
+    private static Response toResponse(ClientResponseCache.Entry entry, String cacheStatus) {
+        return new ResponseBuilder()
+            .setStatusCode(200)
+            .setStatusLine("HTTP/1.1 200 OK")
+            .setContentType(entry.getContentType())
+            .setHeader("X-Cache", cacheStatus)
+            .setBody(entry.getBody())
+            .build();
+    }
+}
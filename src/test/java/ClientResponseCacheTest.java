@@ -0,0 +1,136 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.jayway.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+public class ClientResponseCacheTest {
+
+    private HttpServer server;
+    private String url;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private byte[] json;
+
+    /**
+     * Serves the sample activities response with an ETag, answering If-None-Match with 304.
+     */
+    @Before
+    public void setUp() throws Exception {
+        json = ResourceCache.string("activities-sample.json").getBytes("UTF-8");
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/activities", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                exchange.getResponseHeaders().set("ETag", "\"v1\"");
+                if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    notModified.incrementAndGet();
+                    exchange.sendResponseHeaders(304, -1);
+                } else {
+                    exchange.getResponseHeaders().set("Content-Type", "application/json");
+                    exchange.sendResponseHeaders(200, json.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(json);
+                    out.close();
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/api/activities/";
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void freshEntriesAreServedWithoutRequests() throws Exception {
+        ClientResponseCache cache = new ClientResponseCache(1 << 20, 60000);
+        cache.fetch(url + "?type=grant&q=fish", 5000);
+        ClientResponseCache.Entry entry = cache.fetch(url + "?q=fish&type=grant", 5000);
+
+        Assert.assertArrayEquals(json, entry.getBody());
+        Assert.assertThat(requests.get(), equalTo(1));
+        Assert.assertThat(cache.getHits(), equalTo(1L));
+        Assert.assertThat(cache.getMisses(), equalTo(1L));
+        Assert.assertThat(cache.getHitRatio(), equalTo(0.5));
+        Assert.assertTrue(cache.getSavedNanos() > 0);
+    }
+
+    @Test
+    public void staleEntriesAreRevalidated() throws Exception {
+        ClientResponseCache cache = new ClientResponseCache(1 << 20, 0);
+        cache.fetch(url, 5000);
+        ClientResponseCache.Entry entry = cache.fetch(url, 5000);
+
+        Assert.assertArrayEquals(json, entry.getBody());
+        Assert.assertThat(notModified.get(), equalTo(1));
+        Assert.assertThat(cache.getRevalidated(), equalTo(1L));
+        Assert.assertThat(cache.getHits(), equalTo(0L));
+        cache.print(System.out);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedBeyondMaxBytes() {
+        ClientResponseCache cache = new ClientResponseCache(250, 60000);
+        byte[] body = new byte[100];
+        cache.put("a", 200, "application/json", null, null, null, body, 1);
+        cache.put("b", 200, "application/json", null, null, null, body, 1);
+        cache.get("a");
+        cache.put("c", 200, "application/json", null, null, null, body, 1);
+
+        Assert.assertNull(cache.get("b"));
+        Assert.assertNotNull(cache.get("a"));
+        Assert.assertThat(cache.getBytes(), equalTo(200L));
+        Assert.assertThat(cache.getEvictions(), equalTo(1L));
+        Assert.assertNull(cache.put("d", 200, "application/json", null, null, "no-store", body, 1));
+        Assert.assertNull(cache.put("e", 500, "application/json", null, null, null, body, 1));
+    }
+
+    @Test
+    public void keyIgnoresParameterOrderAndTrailingSlash() {
+        Assert.assertThat(ClientResponseCache.key("http://Example.org/api/activities/?b=2&a=1"),
+            equalTo(ClientResponseCache.key("http://example.org/api/activities?a=1&b=2")));
+        Assert.assertThat(ClientResponseCache.key("http://example.org/apps/mydois/xml.xml?doi=10.5072%2F1"),
+            equalTo("http://example.org/apps/mydois/xml.xml?doi=10.5072/1"));
+    }
+
+    @Test
+    public void filterServesRestAssuredRequests() {
+        ClientResponseCache cache = new ClientResponseCache(1 << 20, 60000);
+        CachingFilter filter = new CachingFilter(cache, url);
+        for (int i = 0; i < 3; i++) {
+            given().filter(filter).queryParam("type", "grant")
+                .when().get(url)
+                .then().statusCode(200)
+                .body("data.records[0].id", equalTo("408717"));
+        }
+        Assert.assertThat(requests.get(), equalTo(1));
+        Assert.assertThat(cache.getHits(), equalTo(2L));
+    }
+
+    @Test
+    public void cacheHitsAreNotRecordedAsLatency() {
+        LatencyRegistry registry = new LatencyRegistry();
+        CachingFilter filter = new CachingFilter(new ClientResponseCache(1 << 20, 60000), url);
+        for (int i = 0; i < 3; i++) {
+            given().filter(new LatencyFilter(registry)).filter(filter).queryParam("type", "grant")
+                .when().get(url)
+                .then().statusCode(200);
+        }
+        Assert.assertThat(requests.get(), equalTo(1));
+        Assert.assertThat(registry.histogram("activities?type", LatencyRegistry.Phase.TOTAL).getTotalCount(), equalTo(1L));
+    }
+}
@@ -0,0 +1,115 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+
+public class CompressionProfilerTest {
+
+    private HttpServer server;
+    private byte[] json;
+
+    /**
+     * Serves the sample activities response gzip or zlib deflate encoded when asked, and
+     * unencoded for anything else, as a server without brotli support would.
+     */
+    @Before
+    public void setUp() throws Exception {
+        json = ResourceCache.string("activities-sample.json").getBytes("UTF-8");
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/activities", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                byte[] body = json;
+                if ("gzip".equals(accept)) {
+                    body = gzip(json);
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                } else if ("deflate".equals(accept)) {
+                    body = deflate(json, false);
+                    exchange.getResponseHeaders().set("Content-Encoding", "deflate");
+                }
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void profilesEveryCombination() throws Exception {
+        CompressionProfiler profiler = new CompressionProfiler(
+            "http://localhost:" + server.getAddress().getPort() + "/api/activities", 2, 5000);
+        Map<String, Map<String, String>> shapes = ActivitiesQueries.select("default,title");
+        List<CompressionProfiler.Sample> samples = profiler.run(shapes, new int[]{10},
+            new String[]{CompressionProfiler.NO_FLAGS, "titles"}, CompressionProfiler.ENCODINGS);
+        CompressionProfiler.print(samples, System.out);
+
+        Assert.assertThat(samples.size(), equalTo(2 * 2 * CompressionProfiler.ENCODINGS.length));
+        for (CompressionProfiler.Sample sample : samples) {
+            Assert.assertThat(sample.getRecords(), equalTo(3L));
+            Assert.assertThat(sample.getDecodedBytes(), equalTo((long) json.length));
+        }
+        CompressionProfiler.Sample identity = samples.get(0);
+        CompressionProfiler.Sample gzip = samples.get(1);
+        CompressionProfiler.Sample br = samples.get(3);
+        Assert.assertThat(identity.getContentEncoding(), nullValue());
+        Assert.assertThat(gzip.getContentEncoding(), equalTo("gzip"));
+        Assert.assertTrue(gzip.getWireBytes() < identity.getWireBytes());
+        Assert.assertTrue(gzip.getRatio() > 1);
+        // not supported by the server, sent unencoded
+        Assert.assertThat(br.getContentEncoding(), nullValue());
+        Assert.assertThat(br.getWireBytes(), equalTo(identity.getWireBytes()));
+    }
+
+    @Test
+    public void decodesRawAndZlibDeflate() throws Exception {
+        Assert.assertArrayEquals(json, CompressionProfiler.decode("deflate", deflate(json, false)));
+        Assert.assertArrayEquals(json, CompressionProfiler.decode("deflate", deflate(json, true)));
+        Assert.assertArrayEquals(json, CompressionProfiler.decode(null, json));
+        try {
+            CompressionProfiler.decode("compress", json);
+            Assert.fail();
+        } catch (IOException expected) {
+            Assert.assertTrue(expected.getMessage().contains("compress"));
+        }
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream out = new GZIPOutputStream(bytes);
+        out.write(data);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] data, boolean raw) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream out = new DeflaterOutputStream(bytes, new Deflater(Deflater.DEFAULT_COMPRESSION, raw));
+        out.write(data);
+        out.close();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,77 @@
+import com.jayway.restassured.RestAssured;
+import com.jayway.restassured.config.RestAssuredConfig;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Properties;
+
+import static com.jayway.restassured.RestAssured.given;
+import static org.hamcrest.number.OrderingComparison.lessThanOrEqualTo;
+
+/**
+ * Compares connection and TLS handshake counts and wall time of the read only requests
+ * with and without the pooled HTTP client.
+ * Only runs when pool_comparison_rounds is set in config.properties.
+ */
+public class ConnectionPoolingTest {
+
+    private static Properties props;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        props = ApiConfig.current().toProperties();
+        RestAssured.useRelaxedHTTPSValidation();
+        Instrumentation.install(props);
+    }
+
+    @Test
+    public void comparePooling() {
+        int rounds = Integer.parseInt(props.getProperty("pool_comparison_rounds", "0").trim());
+        Assume.assumeTrue(rounds > 0);
+
+        int maxConnections = Integer.parseInt(props.getProperty("http_max_connections", "20").trim());
+        long keepAlive = Long.parseLong(props.getProperty("http_keep_alive_ms", "30000").trim());
+        InstrumentedHttpClientFactory unpooled = new InstrumentedHttpClientFactory();
+        InstrumentedHttpClientFactory pooled = new InstrumentedHttpClientFactory(true, maxConnections, keepAlive);
+
+        long unpooledNanos = run(unpooled, rounds);
+        long pooledNanos = run(pooled, rounds);
+
+        int requests = rounds * (3 + ActivitiesQueries.select(props.getProperty("pool_comparison_queries")).size());
+        System.out.printf("%-10s %9s %12s %15s %18s %13s %10s %12s%n",
+            "client", "requests", "connections", "full handshakes", "resumed handshakes", "handshake ms",
+            "wall ms", "ms/request");
+        print("unpooled", unpooled.getStats(), requests, unpooledNanos);
+        print("pooled", pooled.getStats(), requests, pooledNanos);
+
+        Assert.assertThat(pooled.getStats().getConnections(),
+            lessThanOrEqualTo(unpooled.getStats().getConnections()));
+    }
+
+    private long run(InstrumentedHttpClientFactory factory, int rounds) {
+        RestAssuredConfig config = RestAssured.config().httpClient(factory.httpClientConfig());
+        String serviceUrl = props.getProperty("service_url");
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            given().config(config).when().get(props.getProperty("base_url")).then().statusCode(200);
+            given().config(config).when().get(serviceUrl).then().statusCode(200);
+            given().config(config).when().get(serviceUrl + "status.xml/").then().statusCode(200);
+            for (Map<String, String> query :
+                ActivitiesQueries.select(props.getProperty("pool_comparison_queries")).values()) {
+                given().config(config).queryParams(query)
+                    .when().get(props.getProperty("grant_api_url"))
+                    .then().statusCode(200);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void print(String name, ConnectionStats stats, int requests, long nanos) {
+        System.out.printf("%-10s %9d %12d %15d %18d %13.1f %10.0f %12.1f%n",
+            name, requests, stats.getConnections(), stats.getFullHandshakes(), stats.getResumedHandshakes(),
+            stats.getMeanHandshakeMillis(), nanos / 1e6, nanos / 1e6 / requests);
+    }
+}
@@ -0,0 +1,41 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connections opened by one HTTP client setup, and how many of their TLS handshakes
+ * were full handshakes rather than resumed sessions.
+ */
+public class ConnectionStats {
+
+    final AtomicLong connections = new AtomicLong();
+    final AtomicLong fullHandshakes = new AtomicLong();
+    final AtomicLong resumedHandshakes = new AtomicLong();
+    final AtomicLong handshakeNanos = new AtomicLong();
+
+    void opened(boolean tls, boolean resumed, long tlsNanos) {
+        connections.incrementAndGet();
+        if (tls) {
+            (resumed ? resumedHandshakes : fullHandshakes).incrementAndGet();
+            handshakeNanos.addAndGet(tlsNanos);
+        }
+    }
+
+    public long getConnections() {
+        return connections.get();
+    }
+
+    public long getFullHandshakes() {
+        return fullHandshakes.get();
+    }
+
+    public long getResumedHandshakes() {
+        return resumedHandshakes.get();
+    }
+
+    /**
+     * @return mean TLS handshake time in milliseconds
+     */
+    public double getMeanHandshakeMillis() {
+        long handshakes = fullHandshakes.get() + resumedHandshakes.get();
+        return handshakes == 0 ? 0 : handshakeNanos.get() / 1e6 / handshakes;
+    }
+}
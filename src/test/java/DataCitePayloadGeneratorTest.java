@@ -0,0 +1,63 @@
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+public class DataCitePayloadGeneratorTest {
+
+    private final DataCitePayloadGenerator generator = new DataCitePayloadGenerator("10.5072/00/test-");
+
+    @Test
+    public void variantsAreWellFormedAndSubstituted() throws Exception {
+        for (long n : new long[]{0, 1, 9, 10, 12345, Long.MAX_VALUE}) {
+            Document document = parse(generator.generate(n));
+            Assert.assertEquals(generator.doi(n), text(document, "identifier"));
+            Assert.assertTrue(text(document, "title").endsWith(" dataset " + n));
+            Assert.assertTrue(text(document, "creatorName").contains(", "));
+            int year = Integer.parseInt(text(document, "publicationYear"));
+            Assert.assertTrue(year >= 1990 && year <= 2025);
+            Assert.assertEquals("ANDS", text(document, "publisher"));
+        }
+    }
+
+    @Test
+    public void variantsAreUniqueAndRepeatable() {
+        Set<String> payloads = new HashSet<String>();
+        for (long n = 0; n < 1000; n++) {
+            Assert.assertTrue(payloads.add(new String(generator.generate(n))));
+        }
+        Assert.assertArrayEquals(generator.generate(42), generator.generate(42));
+    }
+
+    @Test
+    public void writesIntoAReusedBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocate(generator.getMaxLength());
+        int length = generator.writeTo(Long.MAX_VALUE, buffer);
+        Assert.assertEquals(length, buffer.position());
+        Assert.assertTrue(length <= generator.getMaxLength());
+        buffer.clear();
+        generator.writeTo(7, buffer);
+        Assert.assertArrayEquals(generator.generate(7), Arrays.copyOf(buffer.array(), buffer.position()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTemplatesWithoutTheSlots() {
+        new DataCitePayloadGenerator("<resource><titles/></resource>".getBytes(), "10.5072/");
+    }
+
+    private static Document parse(byte[] xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+    }
+
+    private static String text(Document document, String element) {
+        return document.getElementsByTagNameNS("*", element).item(0).getTextContent();
+    }
+}
@@ -0,0 +1,54 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class DataCiteValidatorTest {
+
+    private final DataCiteValidator validator =
+        DataCiteValidator.forSchema(DataCiteValidatorTest.class.getResource("datacite-kernel-3-subset.xsd"));
+
+    public DataCiteValidatorTest() throws Exception {
+    }
+
+    @Test
+    public void acceptsTheSamplePayload() throws Exception {
+        Assert.assertNull(validator.check(ResourceCache.stream("sample.xml")));
+        Assert.assertEquals(1, validator.getValidated());
+        Assert.assertEquals(0, validator.getRejected());
+    }
+
+    @Test
+    public void rejectsMissingMandatoryProperties() throws Exception {
+        String withoutPublisher = APIProperties.getFileContent("sample.xml")
+            .replace("<publisher>ANDS</publisher>", "");
+        String problem = validator.check(withoutPublisher.getBytes("UTF-8"));
+        Assert.assertNotNull(problem);
+        Assert.assertTrue(problem, problem.contains("publisher"));
+        Assert.assertEquals(1, validator.getRejected());
+    }
+
+    @Test
+    public void validatesInParallel() throws Exception {
+        DataCitePayloadGenerator generator = new DataCitePayloadGenerator("10.5072/00/test-");
+        List<byte[]> documents = new ArrayList<byte[]>();
+        for (int i = 0; i < 2000; i++) {
+            documents.add(generator.generate(i));
+        }
+        documents.set(1234, "<resource xmlns=\"http://datacite.org/schema/kernel-3\"/>".getBytes("UTF-8"));
+
+        DataCiteValidator.Batch batch = validator.checkAll(documents, 4);
+        batch.print(System.out);
+        Assert.assertEquals(2000, batch.getDocuments());
+        Assert.assertEquals(1, batch.getRejected());
+        Assert.assertTrue(batch.getRejections().get(0).startsWith("document 1234: "));
+        Assert.assertEquals(2000, validator.getValidated());
+    }
+
+    @Test
+    public void compilesEachSchemaOnce() throws Exception {
+        Assert.assertSame(DataCiteValidator.compile(DataCiteValidatorTest.class.getResource("datacite-kernel-3-subset.xsd")),
+            DataCiteValidator.compile(DataCiteValidatorTest.class.getResource("datacite-kernel-3-subset.xsd")));
+    }
+}
@@ -0,0 +1,73 @@
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DoiSoakTest {
+
+    private MockDoiService mock;
+
+    @After
+    public void tearDown() {
+        if (mock != null) {
+            mock.stop();
+        }
+    }
+
+    @Test
+    public void soakAgainstMockHasNoViolations() throws Exception {
+        mock = new MockDoiService(0, 2, 2, 0.05).start();
+        DoiServiceClient client = new DoiServiceClient(mock.getServiceUrl(), "mock-app", "Basic bW9jaw==", 5000);
+        DoiSoak.Result result = new DoiSoak(client, "http://example.org/soak", 6, 3, 2000, 500).run();
+        result.print(System.out);
+
+        Assert.assertEquals(result.getMessages().toString(), 0, result.getViolations());
+        Assert.assertTrue(result.getErrors() > 0);
+        for (DoiSoak.Transition transition : DoiSoak.Transition.values()) {
+            Assert.assertTrue(transition.name(), result.getCount(transition) > 0);
+        }
+        Assert.assertTrue(result.getDrift(DoiSoak.Transition.UPDATE) > 0);
+    }
+
+    @Test
+    public void soakReportsWrongAnswers() throws Exception {
+        mock = new MockDoiService(0, 0, 0, 0, 0.2).start();
+        DoiServiceClient client = new DoiServiceClient(mock.getServiceUrl(), "mock-app", "Basic bW9jaw==", 5000);
+        DoiSoak.Result result = new DoiSoak(client, "http://example.org/soak", 6, 3, 1000, 500).run();
+        result.print(System.out);
+
+        // every wrong answer contradicts the model and the DOI it was about is given up on
+        Assert.assertTrue(mock.getWrongAnswerCount() > 0);
+        Assert.assertEquals(mock.getWrongAnswerCount(), result.getViolations());
+        Assert.assertEquals(result.getViolations(), result.getAbandoned());
+        Assert.assertEquals(0, result.getErrors());
+    }
+
+    @Test
+    public void verifyAgainstModel() throws Exception {
+        DoiSoak.Slot slot = new DoiSoak.Slot(0);
+        DoiServiceClient.Response minted = response("MT001", "10.5072/x/1", "http://example.org/a");
+        Assert.assertNull(DoiSoak.verify(DoiSoak.Transition.MINT, slot, "http://example.org/a", minted));
+        DoiSoak.apply(DoiSoak.Transition.MINT, slot, "http://example.org/a", minted);
+        Assert.assertTrue(slot.active);
+
+        // deactivating an active DOI must answer MT003 for the same DOI and keep the URL
+        Assert.assertNull(DoiSoak.verify(DoiSoak.Transition.DEACTIVATE, slot, null,
+            response("MT003", "10.5072/x/1", "http://example.org/a")));
+        Assert.assertNotNull(DoiSoak.verify(DoiSoak.Transition.DEACTIVATE, slot, null,
+            response("MT004", "10.5072/x/1", "http://example.org/a")));
+        Assert.assertNotNull(DoiSoak.verify(DoiSoak.Transition.DEACTIVATE, slot, null,
+            response("MT003", "10.5072/x/2", "http://example.org/a")));
+        Assert.assertNotNull(DoiSoak.verify(DoiSoak.Transition.DEACTIVATE, slot, null,
+            response("MT003", "10.5072/x/1", "http://example.org/stale")));
+
+        // an update is expected to echo the new URL
+        Assert.assertNotNull(DoiSoak.verify(DoiSoak.Transition.UPDATE, slot, "http://example.org/b",
+            response("MT002", "10.5072/x/1", "http://example.org/a")));
+    }
+
+    private static DoiServiceClient.Response response(String code, String doi, String url) throws Exception {
+        String xml = "<response type=\"success\"><responsecode>" + code + "</responsecode><message>ok</message>"
+            + "<doi>" + doi + "</doi><url>" + url + "</url></response>";
+        return DoiServiceClient.Response.parse(200, xml.getBytes("UTF-8"));
+    }
+}
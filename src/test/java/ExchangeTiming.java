@@ -0,0 +1,43 @@
+/**
+ * Timestamps of the HTTP exchange currently running on this thread. REST-assured
+ * executes requests on the calling thread, so the filter, connection operator and
+ * protocol interceptors all see the same instance.
+ */
+public class ExchangeTiming {
+
+    private static final ThreadLocal<ExchangeTiming> CURRENT = new ThreadLocal<ExchangeTiming>();
+
+    final long started = System.nanoTime();
+    long connectNanos;
+    long tlsNanos;
+    int connections;
+    int resumed;
+    long requestSent;
+    long headersReceived;
+
+    static ExchangeTiming begin() {
+        ExchangeTiming timing = new ExchangeTiming();
+        CURRENT.set(timing);
+        return timing;
+    }
+
+    /**
+     * @return the exchange running on this thread, or null outside of an instrumented request
+     */
+    static ExchangeTiming current() {
+        return CURRENT.get();
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    void connected(long connectNanos, long tlsNanos, boolean resumed) {
+        this.connectNanos += connectNanos;
+        this.tlsNanos += tlsNanos;
+        connections++;
+        if (resumed) {
+            this.resumed++;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a test that shares server side state with the other tests of its group, e.g. the
+ * mint, update, deactivate and activate calls on test_doi2. {@link ParallelRunner} runs
+ * a group's tests one after another by order, never alongside each other.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Exclusive {
+
+    /**
+     * The name of the shared resource.
+     */
+    String value();
+
+    /**
+     * Position within the group, lowest first.
+     */
+    int order() default 0;
+}
@@ -0,0 +1,87 @@
+import com.jayway.restassured.builder.RequestSpecBuilder;
+import com.jayway.restassured.specification.RequestSpecification;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+
+import static com.jayway.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.equalTo;
+
+public class FixtureServerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void keyIgnoresParameterOrderAndEncoding() {
+        Assert.assertEquals("/api/activities/?q=fish&rows=10",
+            FixtureStore.key("/api/activities/", "rows=10&q=fish"));
+        Assert.assertEquals(FixtureStore.key("/api/activities/", "q=chorizo%20risotto"),
+            FixtureStore.key("/api/activities/", "q=chorizo+risotto"));
+    }
+
+    @Test
+    public void recordsAndReplays() throws Exception {
+        MockDoiService mock = new MockDoiService(0, 0, 0, 0).start();
+        mock.register(MockDoiService.DOI_PREFIX + "1", "http://example.org/1");
+        FixtureStore store = new FixtureStore(folder.getRoot());
+        RequestSpecification recording = new RequestSpecBuilder()
+            .addFilter(new RecordingFilter(store, mock.getServiceUrl())).build();
+        try {
+            given().spec(recording).queryParam("doi", MockDoiService.DOI_PREFIX + "1")
+                .when().get(mock.getServiceUrl() + "xml.xml")
+                .then().statusCode(200);
+            given().spec(recording)
+                .when().get(mock.getServiceUrl() + "status.xml/")
+                .then().statusCode(200);
+        } finally {
+            mock.stop();
+        }
+
+        FixtureServer server = new FixtureServer(store, 0).start();
+        try {
+            Assert.assertEquals(2, server.getFixtureCount());
+            String serviceUrl = "http://localhost:" + server.getPort() + MockDoiService.SERVICE_PATH;
+            given().queryParam("doi", MockDoiService.DOI_PREFIX + "1")
+                .when().get(serviceUrl + "xml.xml")
+                .then().statusCode(200)
+                .body("resource.identifier", equalTo(MockDoiService.DOI_PREFIX + "1"));
+            given().when().get(serviceUrl + "status.xml/")
+                .then().statusCode(200)
+                .body("response.responsecode", equalTo("MT090"));
+            given().when().get(serviceUrl + "mint.xml/")
+                .then().statusCode(404);
+            Assert.assertEquals(1, server.getMissCount());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void servesLargeBodiesOverKeepAlive() throws Exception {
+        byte[] body = new byte[3 * 1024 * 1024 + 17];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) ('a' + i % 26);
+        }
+        FixtureStore store = new FixtureStore(folder.getRoot());
+        store.save("/api/activities/", "rows=1000", 200, "application/json", body);
+
+        FixtureServer server = new FixtureServer(store, 0).start();
+        try {
+            String url = "http://localhost:" + server.getPort() + "/api/activities/";
+            for (int i = 0; i < 3; i++) {
+                byte[] replayed = given().queryParam("rows", "1000")
+                    .when().get(url)
+                    .then().statusCode(200).contentType("application/json")
+                    .extract().asByteArray();
+                Assert.assertTrue(Arrays.equals(body, replayed));
+            }
+            Assert.assertEquals(3, server.getRequestCount());
+        } finally {
+            server.stop();
+        }
+    }
+}
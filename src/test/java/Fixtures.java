@@ -0,0 +1,43 @@
+import com.jayway.restassured.RestAssured;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Properties;
+
+/**
+ * Record/replay of the activities API. With fixture_mode=record every grant_api_url response
+ * is saved to fixture_dir; with fixture_mode=replay grant_api_url is pointed at a local
+ * FixtureServer serving those responses, so timings and results no longer depend on the
+ * live index. Call {@link #install(Properties)} from each @BeforeClass after Instrumentation.
+ */
+public class Fixtures {
+
+    private static RecordingFilter recorder;
+    private static FixtureServer server;
+
+    public static synchronized void install(Properties props) throws IOException {
+        String mode = props.getProperty("fixture_mode", "off").trim();
+        FixtureStore store = new FixtureStore(new File(props.getProperty("fixture_dir", "fixtures")));
+        String grantApiUrl = props.getProperty("grant_api_url");
+        if (mode.equals("record")) {
+            if (recorder == null) {
+                recorder = new RecordingFilter(store, grantApiUrl);
+                RestAssured.filters(recorder);
+                System.out.println("Recording " + grantApiUrl + " responses into " + store.getDir());
+            }
+        } else if (mode.equals("replay")) {
+            if (server == null) {
+                server = new FixtureServer(store, Integer.parseInt(props.getProperty("fixture_port", "0").trim()))
+                    .start();
+                System.out.println("Replaying " + server.getFixtureCount() + " fixtures from " + store.getDir()
+                    + " on port " + server.getPort());
+            }
+            String replayUrl = "http://localhost:" + server.getPort() + URI.create(grantApiUrl).getRawPath();
+            props.setProperty("grant_api_url", replayUrl);
+            ApiConfig.override("grant_api_url", replayUrl);
+        } else if (!mode.equals("off")) {
+            throw new IllegalArgumentException("Unknown fixture_mode " + mode + ", expected off, record or replay");
+        }
+    }
+}
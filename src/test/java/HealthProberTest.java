@@ -0,0 +1,60 @@
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+public class HealthProberTest {
+
+    private MockDoiService mock;
+    private HealthProber prober;
+
+    @Before
+    public void setUp() throws Exception {
+        mock = new MockDoiService(0, 0, 0, 0).start();
+    }
+
+    @After
+    public void tearDown() {
+        if (prober != null) {
+            prober.stop();
+        }
+        mock.stop();
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        prober = new HealthProber(Arrays.asList(
+            new AsyncCheckRunner.Check("status.xml", mock.getServiceUrl() + "status.xml/", 200, "MT090"),
+            new AsyncCheckRunner.Check("missing", mock.getServiceUrl() + "missing.xml/", 200, null)),
+            60000, 5000, new long[]{60, 300}, 16, 1);
+        prober.start(0);
+        prober.probeAll();
+        prober.probeAll();
+
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + prober.getPort()
+            + "/metrics").openConnection();
+        Assert.assertThat(connection.getResponseCode(), equalTo(200));
+        Assert.assertThat(connection.getContentType(), containsString("text/plain"));
+        String metrics = new String(ResourceCache.readFully(connection.getInputStream()), "UTF-8");
+        System.out.print(metrics);
+
+        Assert.assertThat(metrics, containsString("# TYPE ands_probe_latency_seconds summary\n"));
+        Assert.assertThat(metrics, containsString("ands_probe_up{probe=\"status.xml\"} 1\n"));
+        Assert.assertThat(metrics, containsString("ands_probe_up{probe=\"missing\"} 0\n"));
+        Assert.assertThat(metrics, containsString("ands_probe_availability{probe=\"status.xml\",window=\"60s\"} 1.0\n"));
+        Assert.assertThat(metrics, containsString("ands_probe_availability{probe=\"missing\",window=\"300s\"} 0.0\n"));
+        // the scheduled first run of status.xml may or may not have happened yet
+        Assert.assertThat(metrics, containsString("ands_probe_window_count{probe=\"missing\",window=\"60s\"} 2\n"));
+        Assert.assertThat(metrics, containsString("ands_probe_window_latency_seconds{probe=\"status.xml\",window=\"60s\",quantile=\"0.99\"} "));
+        // the summary is cumulative, without a window label
+        Assert.assertThat(metrics, containsString("ands_probe_latency_seconds_count{probe=\"missing\"} 2\n"));
+        Assert.assertThat(metrics, containsString("ands_probe_latency_seconds_sum{probe=\"missing\"} "));
+    }
+}
@@ -0,0 +1,53 @@
+import com.jayway.restassured.RestAssured;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * Shared HTTP client setup and latency instrumentation for the endpoint tests, applied to
+ * every request to base_url, service_url and grant_api_url. Call {@link #install(Properties)}
+ * from each @BeforeClass; the summary is written to latency_report_dir when the JVM exits,
+ * and the run appended to the results_store when one is set.
+ */
+public class Instrumentation {
+
+    private static LatencyRegistry registry;
+
+    public static synchronized LatencyRegistry install(Properties props) {
+        if (registry == null) {
+            final LatencyRegistry installed = new LatencyRegistry();
+            final File reportDir = new File(props.getProperty("latency_report_dir", "target"));
+            final String resultsStore = props.getProperty("results_store", "").trim();
+            final String resultsLabel = props.getProperty("results_label", "").trim();
+
+            RestAssured.config = RestAssured.config().httpClient(
+                InstrumentedHttpClientFactory.fromProperties(props).httpClientConfig());
+            RestAssured.filters(new LatencyFilter(installed));
+
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        installed.writeSummary(reportDir);
+                    } catch (IOException e) {
+                        System.err.println("Unable to write latency summary: " + e.getMessage());
+                    }
+                    if (!resultsStore.isEmpty()) {
+                        try {
+                            new ResultsStore(new File(resultsStore)).append(ResultsStore.fromRegistry(installed, resultsLabel));
+                        } catch (IOException e) {
+                            System.err.println("Unable to append to " + resultsStore + ": " + e.getMessage());
+                        }
+                    }
+                }
+            });
+            registry = installed;
+        }
+        return registry;
+    }
+
+    public static synchronized LatencyRegistry registry() {
+        return registry;
+    }
+}
@@ -0,0 +1,130 @@
+import com.jayway.restassured.config.HttpClientConfig;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.HttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.protocol.HttpContext;
+
+import java.util.Properties;
+
+/**
+ * Creates the DefaultHttpClient REST-assured uses, with hooks that timestamp connection
+ * setup, the request being sent and the response headers arriving for the exchange
+ * running on the calling thread.
+ *
+ * Unpooled, every client gets a single connection of its own, which is REST-assured's
+ * default behaviour. Pooled, one client with a persistent connection pool is meant to be
+ * shared by every request (see HttpClientConfig#reuseHttpClientInstance) so connections
+ * are kept alive between requests, and new connections to a host resume the TLS session
+ * of earlier ones through the shared SSLContext's session cache.
+ */
+@SuppressWarnings("deprecation")
+public class InstrumentedHttpClientFactory implements HttpClientConfig.HttpClientFactory {
+
+    private final boolean pooled;
+    private final int maxConnections;
+    private final long keepAliveMillis;
+    private final ConnectionStats stats = new ConnectionStats();
+
+    /**
+     * REST-assured's default, a new connection for every request.
+     */
+    public InstrumentedHttpClientFactory() {
+        this(false, 1, 0);
+    }
+
+    /**
+     * @param pooled          share a persistent connection pool between requests
+     * @param maxConnections  pool size, per host and in total
+     * @param keepAliveMillis how long to keep idle connections when the server does not say
+     */
+    public InstrumentedHttpClientFactory(boolean pooled, int maxConnections, long keepAliveMillis) {
+        this.pooled = pooled;
+        this.maxConnections = maxConnections;
+        this.keepAliveMillis = keepAliveMillis;
+    }
+
+    /**
+     * Reads http_pooling, http_max_connections and http_keep_alive_ms.
+     */
+    public static InstrumentedHttpClientFactory fromProperties(Properties props) {
+        return new InstrumentedHttpClientFactory(
+            Boolean.parseBoolean(props.getProperty("http_pooling", "true").trim()),
+            Integer.parseInt(props.getProperty("http_max_connections", "20").trim()),
+            Long.parseLong(props.getProperty("http_keep_alive_ms", "30000").trim()));
+    }
+
+    public boolean isPooled() {
+        return pooled;
+    }
+
+    public ConnectionStats getStats() {
+        return stats;
+    }
+
+    /**
+     * @return an HttpClientConfig using this factory, reusing the client when pooled
+     */
+    public HttpClientConfig httpClientConfig() {
+        HttpClientConfig config = HttpClientConfig.httpClientConfig().httpClientFactory(this);
+        return pooled ? config.reuseHttpClientInstance() : config;
+    }
+
+    public HttpClient createHttpClient() {
+        org.apache.http.conn.scheme.SchemeRegistry schemes =
+            org.apache.http.impl.conn.SchemeRegistryFactory.createDefault();
+        org.apache.http.conn.ClientConnectionManager manager;
+        if (pooled) {
+            org.apache.http.impl.conn.PoolingClientConnectionManager pool =
+                new org.apache.http.impl.conn.PoolingClientConnectionManager(schemes) {
+                @Override
+                protected org.apache.http.conn.ClientConnectionOperator createConnectionOperator(
+                    org.apache.http.conn.scheme.SchemeRegistry registry) {
+                    return new TimingConnectionOperator(registry, stats);
+                }
+            };
+            pool.setMaxTotal(maxConnections);
+            pool.setDefaultMaxPerRoute(maxConnections);
+            manager = pool;
+        } else {
+            manager = new org.apache.http.impl.conn.BasicClientConnectionManager(schemes) {
+                @Override
+                protected org.apache.http.conn.ClientConnectionOperator createConnectionOperator(
+                    org.apache.http.conn.scheme.SchemeRegistry registry) {
+                    return new TimingConnectionOperator(registry, stats);
+                }
+            };
+        }
+
+        org.apache.http.impl.client.DefaultHttpClient client =
+            new org.apache.http.impl.client.DefaultHttpClient(manager);
+        if (pooled) {
+            client.setKeepAliveStrategy(new DefaultConnectionKeepAliveStrategy() {
+                @Override
+                public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+                    long duration = super.getKeepAliveDuration(response, context);
+                    return duration > 0 ? duration : keepAliveMillis;
+                }
+            });
+        }
+        client.addRequestInterceptor(new HttpRequestInterceptor() {
+            public void process(HttpRequest request, HttpContext context) {
+                ExchangeTiming timing = ExchangeTiming.current();
+                if (timing != null) {
+                    timing.requestSent = System.nanoTime();
+                }
+            }
+        });
+        client.addResponseInterceptor(new HttpResponseInterceptor() {
+            public void process(HttpResponse response, HttpContext context) {
+                ExchangeTiming timing = ExchangeTiming.current();
+                if (timing != null) {
+                    timing.headersReceived = System.nanoTime();
+                }
+            }
+        });
+        return client;
+    }
+}
@@ -0,0 +1,90 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+
+public class IsoTimestampsTest {
+
+    @Test
+    public void testAgreesWithInstant() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            long millis = (long) (random.nextDouble() * 8e12) - 2_000_000_000_000L;
+            String value = Instant.ofEpochMilli(millis).toString();
+            Assert.assertThat(value, IsoTimestamps.parse(value), equalTo(millis));
+            byte[] bytes = ("[" + value + "]").getBytes(StandardCharsets.US_ASCII);
+            Assert.assertThat(value, IsoTimestamps.tryParse(bytes, 1, bytes.length - 2), equalTo(millis));
+            char[] chars = ("[" + value + "]").toCharArray();
+            Assert.assertThat(value, IsoTimestamps.tryParse(chars, 1, chars.length - 2), equalTo(millis));
+        }
+    }
+
+    @Test
+    public void testZonesAndPrecisions() {
+        long expected = Instant.parse("2015-11-28T13:15:30Z").toEpochMilli();
+        Assert.assertThat(IsoTimestamps.parse("2015-11-28T13:15:30z"), equalTo(expected));
+        Assert.assertThat(IsoTimestamps.parse("2015-11-28T13:15:30"), equalTo(expected));
+        Assert.assertThat(IsoTimestamps.parse("2015-11-28 13:15:30"), equalTo(expected));
+        Assert.assertThat(IsoTimestamps.parse("2015-11-29T00:15:30+11:00"), equalTo(expected));
+        Assert.assertThat(IsoTimestamps.parse("2015-11-29T00:15:30+1100"), equalTo(expected));
+        Assert.assertThat(IsoTimestamps.parse("2015-11-28T03:15:30-10"), equalTo(expected));
+        Assert.assertThat(IsoTimestamps.parse("2015-11-28T13:15:30.000000Z"), equalTo(expected));
+        Assert.assertThat(IsoTimestamps.parse("2015-11-28T13:15:30.1239Z"), equalTo(expected + 123));
+        Assert.assertThat(IsoTimestamps.parse("2015-11-28T13:15Z"), equalTo(expected - 30000));
+        Assert.assertThat(IsoTimestamps.parse("2015-11-28"),
+            equalTo(Instant.parse("2015-11-28T00:00:00Z").toEpochMilli()));
+        Assert.assertThat(IsoTimestamps.parse("2016-02-29T23:59:59+05:30"),
+            equalTo(OffsetDateTime.parse("2016-02-29T23:59:59+05:30").toInstant().toEpochMilli()));
+    }
+
+    @Test
+    public void testInvalid() {
+        String[] invalid = {"", "2015", "2015-11-2", "2015-13-01", "2015-02-29", "2015-11-31T00:00:00Z",
+            "2015-11-28T24:00:00Z", "2015-11-28T13:60:00Z", "2015-11-28T13:15:60Z", "2015-11-28T13:15:30.Z",
+            "2015-11-28T13:15:30+", "2015-11-28T13:15:30+1", "2015-11-28T13:15:30+11:0", "2015-11-28T13",
+            "2015-11-28T13:15:30ZZ", "2015/11/28", "Y015-11-28", "2015-11-28x"};
+        for (String value : invalid) {
+            Assert.assertThat(value, IsoTimestamps.tryParse(value), equalTo(IsoTimestamps.INVALID));
+        }
+        Assert.assertThat(IsoTimestamps.tryParse((CharSequence) null), equalTo(IsoTimestamps.INVALID));
+        try {
+            IsoTimestamps.parse("2015-11-31");
+            Assert.fail();
+        } catch (IllegalArgumentException expected) {
+            Assert.assertTrue(expected.getMessage().contains("2015-11-31"));
+        }
+    }
+
+    @Test
+    public void testConcurrentUse() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        Future<?>[] futures = new Future<?>[4];
+        for (int t = 0; t < futures.length; t++) {
+            final long seed = t;
+            futures[t] = pool.submit(new Runnable() {
+                public void run() {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 20000; i++) {
+                        long millis = (long) (random.nextDouble() * 2e12);
+                        String value = Instant.ofEpochMilli(millis).toString();
+                        Assert.assertThat(value, IsoTimestamps.parse(value), equalTo(millis));
+                    }
+                }
+            });
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+        Assert.assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+    }
+}
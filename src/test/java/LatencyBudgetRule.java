@@ -0,0 +1,87 @@
+import org.HdrHistogram.Histogram;
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Turns a functional test into a performance gate for the endpoints it calls.
+ * The test runs once as usual; if any endpoint it hit has a latency_budget.* entry
+ * in config.properties the test is repeated until the budget's sample count is
+ * reached and fails when the measured percentile is over budget.
+ * Tests marked {@link Exclusive}, such as mint, update, deactivate and activate, change
+ * server side state and are never repeated; their budgets are checked against the one run.
+ * Relies on the LatencyFilter installed by {@link Instrumentation}.
+ */
+public class LatencyBudgetRule implements TestRule {
+
+    private static Map<String, LatencyBudget> budgets() {
+        return ApiConfig.current().getLatencyBudgets();
+    }
+
+    public Statement apply(final Statement base, final Description description) {
+        return new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                Map<String, Histogram> captured;
+                LatencyFilter.startCapture();
+                try {
+                    base.evaluate();
+                } finally {
+                    captured = LatencyFilter.stopCapture();
+                }
+                verify(base, description, captured);
+            }
+        };
+    }
+
+    private void verify(Statement base, Description description, Map<String, Histogram> captured) throws Throwable {
+        List<LatencyBudget> applicable = new ArrayList<LatencyBudget>();
+        int samples = 1;
+        for (String endpoint : captured.keySet()) {
+            LatencyBudget budget = budgets().get(endpoint);
+            if (budget != null) {
+                applicable.add(budget);
+                samples = Math.max(samples, budget.getSamples());
+            }
+        }
+        if (applicable.isEmpty()) {
+            return;
+        }
+        if (description.getAnnotation(Exclusive.class) != null) {
+            samples = 1;
+        }
+
+        for (int i = 1; i < samples; i++) {
+            LatencyFilter.startCapture();
+            try {
+                base.evaluate();
+            } finally {
+                for (Map.Entry<String, Histogram> entry : LatencyFilter.stopCapture().entrySet()) {
+                    Histogram histogram = captured.get(entry.getKey());
+                    if (histogram == null) {
+                        captured.put(entry.getKey(), entry.getValue());
+                    } else {
+                        histogram.add(entry.getValue());
+                    }
+                }
+            }
+        }
+
+        List<String> violations = new ArrayList<String>();
+        for (LatencyBudget budget : applicable) {
+            Histogram histogram = captured.get(budget.getEndpoint());
+            double measured = histogram.getValueAtPercentile(budget.getPercentile()) / 1000.0;
+            if (measured > budget.getMillis()) {
+                violations.add(String.format(Locale.ROOT, "expected %s but was %.1f ms", budget, measured));
+            }
+        }
+        if (!violations.isEmpty()) {
+            throw new AssertionError("Latency budget exceeded: " + violations);
+        }
+    }
+}
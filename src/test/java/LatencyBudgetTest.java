@@ -0,0 +1,69 @@
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+import java.lang.annotation.Annotation;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+
+public class LatencyBudgetTest {
+
+    @After
+    public void tearDown() {
+        ApiConfig.clearOverride("latency_budget.mint.xml?app_id&url");
+    }
+
+    @Test
+    public void testParse() {
+        LatencyBudget budget = LatencyBudget.parse("activities?q", "p95:300:50", 20);
+        Assert.assertThat(budget.getEndpoint(), equalTo("activities?q"));
+        Assert.assertThat(budget.getPercentile(), equalTo(95.0));
+        Assert.assertThat(budget.getMillis(), equalTo(300L));
+        Assert.assertThat(budget.getSamples(), equalTo(50));
+    }
+
+    @Test
+    public void testParseDefaultSamples() {
+        LatencyBudget budget = LatencyBudget.parse("status.xml", "p99.9:500", 20);
+        Assert.assertThat(budget.getPercentile(), equalTo(99.9));
+        Assert.assertThat(budget.getSamples(), equalTo(20));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseInvalid() {
+        LatencyBudget.parse("status.xml", "300ms", 20);
+    }
+
+    @Test
+    public void testRuleRepeatsUntilSampleCount() throws Throwable {
+        ApiConfig.override("latency_budget.mint.xml?app_id&url", "p95:1000:5");
+        Assert.assertThat(runs(Description.createTestDescription(CMDEndPointTest.class, "getServiceStatus")),
+            equalTo(5));
+    }
+
+    @Test
+    public void testRuleRunsExclusiveTestsOnce() throws Throwable {
+        ApiConfig.override("latency_budget.mint.xml?app_id&url", "p95:1000:5");
+        Annotation exclusive = CMDEndPointTest.class.getMethod("postMint").getAnnotation(Exclusive.class);
+        Assert.assertThat(runs(Description.createTestDescription(CMDEndPointTest.class, "postMint", exclusive)),
+            equalTo(1));
+    }
+
+    /**
+     * @return how many times the rule ran a test capturing one mint.xml request
+     */
+    private static int runs(Description description) throws Throwable {
+        final AtomicInteger runs = new AtomicInteger();
+        new LatencyBudgetRule().apply(new Statement() {
+            @Override
+            public void evaluate() {
+                runs.incrementAndGet();
+                LatencyFilter.capture("mint.xml?app_id&url", 2000000);
+            }
+        }, description).evaluate();
+        return runs.get();
+    }
+}
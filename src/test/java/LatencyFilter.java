@@ -0,0 +1,144 @@
+import com.jayway.restassured.filter.Filter;
+import com.jayway.restassured.filter.FilterContext;
+import com.jayway.restassured.response.Response;
+import com.jayway.restassured.specification.FilterableRequestSpecification;
+import com.jayway.restassured.specification.FilterableResponseSpecification;
+import org.HdrHistogram.Histogram;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the latency of every REST-assured request into a LatencyRegistry, split into
+ * connect, TLS handshake, time to first byte and body download. Requests are grouped
+ * by endpoint, see {@link #endpointName(FilterableRequestSpecification)}. Responses the
+ * CachingFilter answers from its cache (X-Cache: HIT) are not recorded.
+ */
+public class LatencyFilter implements Filter {
+
+    private static final ThreadLocal<Map<String, Histogram>> CAPTURE = new ThreadLocal<Map<String, Histogram>>();
+
+    private final LatencyRegistry registry;
+
+    public LatencyFilter(LatencyRegistry registry) {
+        this.registry = registry;
+    }
+
+    public Response filter(FilterableRequestSpecification requestSpec,
+                           FilterableResponseSpecification responseSpec,
+                           FilterContext ctx) {
+        String endpoint = endpointName(requestSpec);
+        ExchangeTiming timing = ExchangeTiming.begin();
+        try {
+            Response response = ctx.next(requestSpec, responseSpec);
+            if ("HIT".equals(response.getHeader("X-Cache"))) {
+                // answered by the CachingFilter without a request, nothing to time
+                return response;
+            }
+            // make sure the body has been downloaded before the clock stops
+            response.asByteArray();
+            long finished = System.nanoTime();
+
+            registry.record(endpoint, LatencyRegistry.Phase.TOTAL, finished - timing.started);
+            capture(endpoint, finished - timing.started);
+            if (timing.connections > 0) {
+                registry.record(endpoint, LatencyRegistry.Phase.CONNECT, timing.connectNanos);
+                if (timing.tlsNanos > 0) {
+                    registry.record(endpoint, LatencyRegistry.Phase.TLS, timing.tlsNanos);
+                }
+                for (int i = 0; i < timing.connections; i++) {
+                    registry.recordConnection(endpoint, timing.tlsNanos > 0, i < timing.resumed);
+                }
+            }
+            if (timing.headersReceived > 0) {
+                registry.record(endpoint, LatencyRegistry.Phase.TTFB, timing.headersReceived - timing.requestSent);
+                registry.record(endpoint, LatencyRegistry.Phase.DOWNLOAD, finished - timing.headersReceived);
+            }
+            if (response.getStatusCode() >= 400) {
+                registry.recordError(endpoint);
+            }
+            return response;
+        } catch (RuntimeException e) {
+            registry.recordError(endpoint);
+            throw e;
+        } finally {
+            ExchangeTiming.end();
+        }
+    }
+
+    /**
+     * Records the total latency of a request made outside REST-assured, e.g. one whose body is
+     * streamed, with the clock stopped once the body has been consumed.
+     */
+    public static void recordTotal(String endpoint, long nanos) {
+        LatencyRegistry registry = Instrumentation.registry();
+        if (registry != null) {
+            registry.record(endpoint, LatencyRegistry.Phase.TOTAL, nanos);
+        }
+        capture(endpoint, nanos);
+    }
+
+    /**
+     * Starts collecting the total latency of requests made on this thread, in microseconds.
+     */
+    public static void startCapture() {
+        CAPTURE.set(new HashMap<String, Histogram>());
+    }
+
+    /**
+     * @return the latencies captured since {@link #startCapture()}, keyed by endpoint
+     */
+    public static Map<String, Histogram> stopCapture() {
+        Map<String, Histogram> captured = CAPTURE.get();
+        CAPTURE.remove();
+        return captured == null ? new HashMap<String, Histogram>() : captured;
+    }
+
+    static void capture(String endpoint, long nanos) {
+        Map<String, Histogram> captured = CAPTURE.get();
+        if (captured != null) {
+            Histogram histogram = captured.get(endpoint);
+            if (histogram == null) {
+                histogram = new Histogram(3);
+                captured.put(endpoint, histogram);
+            }
+            histogram.recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(nanos)));
+        }
+    }
+
+    /**
+     * The last path segment followed by the sorted query parameter names,
+     * e.g. activities?flags&amp;title or xml.xml?doi
+     */
+    public static String endpointName(FilterableRequestSpecification requestSpec) {
+        return endpointName(requestSpec.getURI(), requestSpec.getQueryParams().keySet());
+    }
+
+    /**
+     * @see #endpointName(FilterableRequestSpecification)
+     */
+    public static String endpointName(String uri, Collection<String> queryParams) {
+        int query = uri.indexOf('?');
+        String path = query < 0 ? uri : uri.substring(0, query);
+        while (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        String name = path.substring(path.lastIndexOf('/') + 1);
+
+        TreeSet<String> params = new TreeSet<String>(queryParams);
+        if (params.isEmpty()) {
+            return name;
+        }
+        StringBuilder sb = new StringBuilder(name).append('?');
+        for (String param : params) {
+            if (sb.charAt(sb.length() - 1) != '?') {
+                sb.append('&');
+            }
+            sb.append(param);
+        }
+        return sb.toString();
+    }
+}
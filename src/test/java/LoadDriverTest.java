@@ -0,0 +1,65 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.number.OrderingComparison.greaterThan;
+import static org.hamcrest.number.OrderingComparison.lessThanOrEqualTo;
+
+public class LoadDriverTest {
+
+    @Test
+    public void testRateAndErrorCounting() throws Exception {
+        Map<String, LoadDriver.Request> shapes = new LinkedHashMap<String, LoadDriver.Request>();
+        shapes.put("ok", new LoadDriver.Request() {
+            public void execute() {
+            }
+        });
+        shapes.put("fail", new LoadDriver.Request() {
+            public void execute() {
+                throw new IllegalStateException("expected");
+            }
+        });
+
+        LoadReport report = new LoadDriver(4, 200, 1000).run(shapes);
+
+        long ok = report.histogram("ok").getTotalCount();
+        long fail = report.histogram("fail").getTotalCount();
+        Assert.assertThat(ok + fail, greaterThan(100L));
+        Assert.assertThat(ok + fail, lessThanOrEqualTo(201L));
+        Assert.assertThat(report.errors("ok"), equalTo(0L));
+        Assert.assertThat(report.errors("fail"), equalTo(fail));
+    }
+
+    @Test
+    public void testRateChangeWhileRunning() throws Exception {
+        Map<String, LoadDriver.Request> shapes = new LinkedHashMap<String, LoadDriver.Request>();
+        shapes.put("ok", new LoadDriver.Request() {
+            public void execute() {
+            }
+        });
+        final LoadDriver driver = new LoadDriver(4, 10, 1000);
+        Thread throttle = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                driver.setRate(200);
+            }
+        };
+        throttle.start();
+
+        LoadReport report = driver.run(shapes);
+        throttle.join();
+
+        // about 5 requests at 10 req/s then about 100 at 200 req/s, not 200 from catching up on the first half second
+        long ok = report.histogram("ok").getTotalCount();
+        Assert.assertThat(ok, greaterThan(50L));
+        Assert.assertThat(ok, lessThanOrEqualTo(150L));
+    }
+}
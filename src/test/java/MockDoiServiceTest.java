@@ -0,0 +1,117 @@
+import com.jayway.restassured.http.ContentType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.jayway.restassured.RestAssured.given;
+import static com.jayway.restassured.RestAssured.when;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.startsWith;
+
+public class MockDoiServiceTest {
+
+    private static final String AUTH = "Basic bW9jay1hcHA6bW9jaw==";
+
+    private MockDoiService mock;
+    private String serviceUrl;
+
+    @Before
+    public void setUp() throws Exception {
+        mock = new MockDoiService(0, 0, 0, 0).start();
+        mock.register(MockDoiService.DOI_PREFIX + "1", "http://example.org/1");
+        serviceUrl = mock.getServiceUrl();
+    }
+
+    @After
+    public void tearDown() {
+        mock.stop();
+    }
+
+    @Test
+    public void status() {
+        when().get(serviceUrl + "status.xml/")
+            .then().statusCode(200).contentType(ContentType.XML)
+            .body("response.@type", equalTo("success"))
+            .body("response.responsecode", equalTo("MT090"));
+    }
+
+    @Test
+    public void metadataOfUnknownDoi() {
+        given().queryParam("doi", "DOESNOTEXISTDOI")
+            .when().get(serviceUrl + "xml.xml")
+            .then().statusCode(200)
+            .body("response.@type", equalTo("failure"))
+            .body("response.responsecode", equalTo("MT011"));
+    }
+
+    @Test
+    public void lifecycle() {
+        String doi = given().header("Authorization", AUTH)
+            .queryParam("url", "http://example.org/minted")
+            .queryParam("app_id", "mock-app")
+            .body(APIProperties.getFileContent("sample.xml"))
+            .when().post(serviceUrl + "mint.xml/")
+            .then().statusCode(200)
+            .body("response.responsecode", equalTo("MT001"))
+            .body("response.doi", startsWith(MockDoiService.DOI_PREFIX))
+            .extract().path("response.doi");
+
+        given().queryParam("doi", doi)
+            .when().get(serviceUrl + "xml.xml")
+            .then().statusCode(200)
+            .body("resource.identifier", equalTo(doi));
+
+        String[][] transitions = {{"update.xml", "MT002"}, {"deactivate.xml", "MT003"}, {"activate.xml", "MT004"}};
+        for (String[] transition : transitions) {
+            given().header("Authorization", AUTH)
+                .queryParam("doi", doi)
+                .queryParam("app_id", "mock-app")
+                .when().get(serviceUrl + transition[0] + "/")
+                .then().statusCode(200)
+                .body("response.@type", equalTo("success"))
+                .body("response.responsecode", equalTo(transition[1]))
+                .body("response.doi", equalTo(doi))
+                .body("response.app_id", equalTo("mock-app"));
+        }
+    }
+
+    @Test
+    public void rejectsTransitionsToTheCurrentState() {
+        String doi = MockDoiService.DOI_PREFIX + "1";
+        String[][] transitions = {{"activate.xml", "failure", "MT010"}, {"deactivate.xml", "success", "MT003"},
+            {"deactivate.xml", "failure", "MT010"}, {"activate.xml", "success", "MT004"}};
+        for (String[] transition : transitions) {
+            given().header("Authorization", AUTH)
+                .queryParam("doi", doi)
+                .queryParam("app_id", "mock-app")
+                .when().get(serviceUrl + transition[0] + "/")
+                .then().statusCode(200)
+                .body("response.@type", equalTo(transition[1]))
+                .body("response.responsecode", equalTo(transition[2]));
+        }
+    }
+
+    @Test
+    public void rejectsMissingCredentials() {
+        given().queryParam("doi", MockDoiService.DOI_PREFIX + "1")
+            .when().get(serviceUrl + "activate.xml/")
+            .then().statusCode(415)
+            .body("response.responsecode", equalTo("MT009"));
+    }
+
+    @Test
+    public void injectsLatencyAndErrors() throws Exception {
+        MockDoiService failing = new MockDoiService(0, 50, 0, 1.0).start();
+        try {
+            long start = System.nanoTime();
+            when().get(failing.getServiceUrl() + "status.xml/")
+                .then().statusCode(503)
+                .body("response.responsecode", equalTo("MT005"));
+            Assert.assertTrue(System.nanoTime() - start >= 50000000L);
+            Assert.assertEquals(1, failing.getInjectedErrorCount());
+        } finally {
+            failing.stop();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.BlockJUnit4ClassRunner;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerScheduler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a test class's methods concurrently on parallel_threads threads, as most of an
+ * endpoint test is spent waiting on the network. Methods annotated {@link Exclusive}
+ * with the same group run on a single thread in their given order, so stateful chains
+ * stay ordered and isolated while everything else runs alongside them.
+ * Filtering and sorting of the methods work as with the default runner; @BeforeClass
+ * and @AfterClass still run once, before and after all of them.
+ */
+public class ParallelRunner extends BlockJUnit4ClassRunner {
+
+    private final List<FrameworkMethod> scheduled = new ArrayList<FrameworkMethod>();
+    private final int threads;
+    private RunNotifier notifier;
+
+    public ParallelRunner(Class<?> klass) throws InitializationError {
+        this(klass, 0);
+    }
+
+    /**
+     * @param threads threads to run on, 0 to read parallel_threads from config.properties
+     */
+    protected ParallelRunner(Class<?> klass, int threads) throws InitializationError {
+        super(klass);
+        this.threads = threads;
+        setScheduler(new RunnerScheduler() {
+            public void schedule(Runnable childStatement) {
+                // collects the method through runChild below
+                childStatement.run();
+            }
+
+            public void finished() {
+                runScheduled();
+            }
+        });
+    }
+
+    @Override
+    protected void runChild(FrameworkMethod method, RunNotifier notifier) {
+        this.notifier = notifier;
+        scheduled.add(method);
+    }
+
+    private void runScheduled() {
+        List<List<FrameworkMethod>> tasks = partition(scheduled);
+        scheduled.clear();
+        if (tasks.isEmpty()) {
+            return;
+        }
+        int threads = Math.max(1, Math.min(this.threads > 0 ? this.threads : configuredThreads(), tasks.size()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger created = new AtomicInteger();
+
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, getName() + "-" + created.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        final AtomicLong serialNanos = new AtomicLong();
+        long started = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (final List<FrameworkMethod> task : tasks) {
+                futures.add(pool.submit(new Runnable() {
+                    public void run() {
+                        for (FrameworkMethod method : task) {
+                            long methodStarted = System.nanoTime();
+                            ParallelRunner.super.runChild(method, notifier);
+                            serialNanos.addAndGet(System.nanoTime() - methodStarted);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long elapsed = System.nanoTime() - started;
+        System.out.println(String.format(Locale.ROOT,
+            "%s: %d tasks on %d threads in %.0f ms, %.0f ms summed over the tests (%.1fx)",
+            getName(), tasks.size(), threads, elapsed / 1e6, serialNanos.get() / 1e6,
+            elapsed == 0 ? 0 : (double) serialNanos.get() / elapsed));
+    }
+
+    /**
+     * One task per unannotated method, plus one per {@link Exclusive} group holding its
+     * methods by order. Tasks keep the order in which their first method was scheduled.
+     */
+    static List<List<FrameworkMethod>> partition(List<FrameworkMethod> methods) {
+        Map<Object, List<FrameworkMethod>> tasks = new LinkedHashMap<Object, List<FrameworkMethod>>();
+        for (FrameworkMethod method : methods) {
+            Exclusive exclusive = method.getAnnotation(Exclusive.class);
+            Object key = exclusive == null ? method : exclusive.value();
+            List<FrameworkMethod> task = tasks.get(key);
+            if (task == null) {
+                task = new ArrayList<FrameworkMethod>();
+                tasks.put(key, task);
+            }
+            task.add(method);
+        }
+        for (List<FrameworkMethod> task : tasks.values()) {
+            // stable, so methods of the same order keep their scheduled order
+            Collections.sort(task, new Comparator<FrameworkMethod>() {
+                public int compare(FrameworkMethod a, FrameworkMethod b) {
+                    return Integer.compare(order(a), order(b));
+                }
+            });
+        }
+        return new ArrayList<List<FrameworkMethod>>(tasks.values());
+    }
+
+    private static int order(FrameworkMethod method) {
+        Exclusive exclusive = method.getAnnotation(Exclusive.class);
+        return exclusive == null ? 0 : exclusive.order();
+    }
+
+    /**
+     * parallel_threads from the configuration, 1 runs the methods one at a time.
+     */
+    private static int configuredThreads() {
+        return ApiConfig.current().getInt("parallel_threads", 1);
+    }
+}
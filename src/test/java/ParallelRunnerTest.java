@@ -0,0 +1,94 @@
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.junit.runners.model.InitializationError;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+
+public class ParallelRunnerTest {
+
+    public static class FourThreads extends ParallelRunner {
+        public FourThreads(Class<?> klass) throws InitializationError {
+            super(klass, 4);
+        }
+    }
+
+    /**
+     * Three free tests that only pass if they run at the same time, and a chain that
+     * records its order and whether any two of its tests ever overlapped.
+     */
+    @RunWith(FourThreads.class)
+    public static class Sample {
+        static final CountDownLatch free = new CountDownLatch(3);
+        static final List<String> chain = Collections.synchronizedList(new ArrayList<String>());
+        static final AtomicInteger inChain = new AtomicInteger();
+        static volatile boolean overlapped;
+
+        private static void awaitOthers() throws InterruptedException {
+            free.countDown();
+            Assert.assertTrue(free.await(10, TimeUnit.SECONDS));
+        }
+
+        private static void step(String name) throws InterruptedException {
+            if (inChain.incrementAndGet() > 1) {
+                overlapped = true;
+            }
+            Thread.sleep(20);
+            chain.add(name);
+            inChain.decrementAndGet();
+        }
+
+        @Test
+        public void a() throws Exception {
+            awaitOthers();
+        }
+
+        @Test
+        public void b() throws Exception {
+            awaitOthers();
+        }
+
+        @Test
+        public void c() throws Exception {
+            awaitOthers();
+        }
+
+        @Test
+        @Exclusive(value = "chain", order = 3)
+        public void activate() throws Exception {
+            step("activate");
+        }
+
+        @Test
+        @Exclusive(value = "chain", order = 1)
+        public void mint() throws Exception {
+            step("mint");
+        }
+
+        @Test
+        @Exclusive(value = "chain", order = 2)
+        public void deactivate() throws Exception {
+            step("deactivate");
+        }
+    }
+
+    @Test
+    public void testParallelAndExclusive() {
+        Result result = JUnitCore.runClasses(Sample.class);
+
+        Assert.assertThat(result.getFailures().toString(), result.getFailureCount(), equalTo(0));
+        Assert.assertThat(result.getRunCount(), equalTo(6));
+        Assert.assertThat(Sample.chain, equalTo(Arrays.asList("mint", "deactivate", "activate")));
+        Assert.assertFalse(Sample.overlapped);
+    }
+}
@@ -0,0 +1,46 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+
+public class ProbeWindowTest {
+
+    @Test
+    public void testRollingWindow() {
+        ProbeWindow window = new ProbeWindow(8, 0);
+        // one result a second for 6 seconds, the last two failing
+        for (int second = 0; second < 6; second++) {
+            window.record(TimeUnit.SECONDS.toMillis(second), TimeUnit.MILLISECONDS.toNanos(10 * (second + 1)), second < 4);
+        }
+
+        ProbeWindow.Stats all = window.stats(0, 5000);
+        Assert.assertThat(all.getCount(), equalTo(6));
+        Assert.assertThat(all.getFailures(), equalTo(2));
+        Assert.assertThat(all.getLatencyMicros(0.5), equalTo(30000L));
+        Assert.assertThat(all.getLatencyMicros(1), equalTo(60000L));
+        Assert.assertThat(all.getSumMicros(), equalTo(210000L));
+
+        ProbeWindow.Stats recent = window.stats(3000, 5000);
+        Assert.assertThat(recent.getCount(), equalTo(4));
+        Assert.assertThat(recent.getAvailability(), equalTo(0.5));
+        Assert.assertTrue(Double.isNaN(window.stats(1000, 60000).getAvailability()));
+    }
+
+    @Test
+    public void testFixedCapacity() {
+        ProbeWindow window = new ProbeWindow(5, 0);
+        Assert.assertThat(window.capacity(), equalTo(8));
+        for (int i = 0; i < 100; i++) {
+            window.record(i, TimeUnit.MILLISECONDS.toNanos(i), i % 2 == 0);
+        }
+        // only the last 8 results are kept, all from within the first second
+        ProbeWindow.Stats stats = window.stats(0, 100);
+        Assert.assertThat(stats.getCount(), equalTo(8));
+        Assert.assertThat(stats.getLatencyMicros(0), equalTo(92000L));
+        Assert.assertThat(stats.getFailures(), equalTo(4));
+        Assert.assertThat(window.getTotal(), equalTo(100L));
+        Assert.assertThat(window.getTotalMicros(), equalTo(4950000L));
+    }
+}
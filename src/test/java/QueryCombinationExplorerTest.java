@@ -0,0 +1,87 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+
+public class QueryCombinationExplorerTest {
+
+    @Test
+    public void pairwiseCoversEveryPair() {
+        int factors = QueryCombinationExplorer.PARAMETERS.length;
+        List<boolean[]> rows = QueryCombinationExplorer.pairwise(factors, 1);
+        for (int i = 0; i < factors; i++) {
+            for (int j = i + 1; j < factors; j++) {
+                boolean[] seen = new boolean[4];
+                for (boolean[] row : rows) {
+                    seen[(row[i] ? 2 : 0) + (row[j] ? 1 : 0)] = true;
+                }
+                for (boolean pair : seen) {
+                    Assert.assertTrue(i + "," + j, pair);
+                }
+            }
+        }
+        // far fewer than the 2048 exhaustive combinations
+        Assert.assertTrue(rows.size() + " rows", rows.size() <= 16);
+    }
+
+    /**
+     * Against a server that is slow only when funder and subject are combined.
+     */
+    @Test
+    public void ranksSlowestCombinationFirst() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/activities", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                String query = exchange.getRequestURI().getRawQuery();
+                boolean slow = query != null && query.contains("funder=") && query.contains("subject=");
+                if (slow) {
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                byte[] body = ("{\"status\":\"OK\",\"data\":{\"numFound\":" + (slow ? 7 : 42)
+                    + ",\"records\":[]}}").getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+        try {
+            QueryCombinationExplorer explorer = new QueryCombinationExplorer(
+                "http://localhost:" + server.getAddress().getPort() + "/api/activities", 3, 5000);
+            Map<String, String> values = QueryCombinationExplorer.parameterValues();
+            List<QueryCombinationExplorer.Combination> combinations =
+                explorer.explore(values, QueryCombinationExplorer.pairwise(values.size(), 1));
+            QueryCombinationExplorer.print(combinations, 5, System.out);
+
+            QueryCombinationExplorer.Combination slowest = combinations.get(0);
+            Assert.assertTrue(slowest.getParams().containsKey("funder"));
+            Assert.assertTrue(slowest.getParams().containsKey("subject"));
+            Assert.assertThat(slowest.getNumFound(), equalTo(7L));
+            Assert.assertTrue(slowest.getSlowdown() > 1);
+            QueryCombinationExplorer.Combination fastest = combinations.get(combinations.size() - 1);
+            Assert.assertFalse(fastest.getParams().containsKey("funder") && fastest.getParams().containsKey("subject"));
+
+            // an all-absent row is the unfiltered query, timed once
+            List<boolean[]> rows = new ArrayList<boolean[]>();
+            rows.add(new boolean[values.size()]);
+            Assert.assertThat(explorer.explore(values, rows).size(), equalTo(1));
+        } finally {
+            server.stop(0);
+        }
+    }
+}
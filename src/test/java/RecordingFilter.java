@@ -0,0 +1,40 @@
+import com.jayway.restassured.filter.Filter;
+import com.jayway.restassured.filter.FilterContext;
+import com.jayway.restassured.response.Response;
+import com.jayway.restassured.specification.FilterableRequestSpecification;
+import com.jayway.restassured.specification.FilterableResponseSpecification;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * Saves every response to a request under the given URL prefix into a FixtureStore,
+ * so it can be replayed later by a FixtureServer.
+ */
+public class RecordingFilter implements Filter {
+
+    private final FixtureStore store;
+    private final String urlPrefix;
+
+    public RecordingFilter(FixtureStore store, String urlPrefix) {
+        this.store = store;
+        this.urlPrefix = urlPrefix;
+    }
+
+    public Response filter(FilterableRequestSpecification requestSpec,
+                           FilterableResponseSpecification responseSpec,
+                           FilterContext ctx) {
+        Response response = ctx.next(requestSpec, responseSpec);
+        String url = requestSpec.getURI();
+        if (url.startsWith(urlPrefix) && "GET".equals(requestSpec.getMethod().name())) {
+            URI uri = URI.create(url);
+            try {
+                store.save(uri.getRawPath(), uri.getRawQuery(), response.getStatusCode(),
+                    response.getContentType(), response.asByteArray());
+            } catch (IOException e) {
+                System.err.println("Unable to record " + url + ": " + e.getMessage());
+            }
+        }
+        return response;
+    }
+}
@@ -0,0 +1,79 @@
+import org.HdrHistogram.Histogram;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.number.OrderingComparison.greaterThan;
+import static org.hamcrest.number.OrderingComparison.lessThan;
+
+public class RegressionComparatorTest {
+
+    private static Histogram latencies(long seed, int count, double medianMicros) {
+        Random random = new Random(seed);
+        Histogram histogram = new Histogram(3);
+        for (int i = 0; i < count; i++) {
+            histogram.recordValue((long) (medianMicros * Math.exp(0.3 * random.nextGaussian())));
+        }
+        return histogram;
+    }
+
+    private static ResultsStore.Run run(String label, long started, double funderMicros, double statusMicros) {
+        ResultsStore.Run run = new ResultsStore.Run(label, started, 60000);
+        run.add(new ResultsStore.Endpoint("activities?funder", latencies(started, 200, funderMicros), 0, 3));
+        run.add(new ResultsStore.Endpoint("status.xml", latencies(started + 1, 200, statusMicros), 0, 3));
+        return run;
+    }
+
+    @Test
+    public void testFlagsRegression() {
+        RegressionComparator comparator = new RegressionComparator(0.01, 0.1, 0.5, 500, 5000, 1);
+        List<RegressionComparator.Comparison> comparisons =
+            comparator.compare(run("last week", 1, 20000, 5000), run("today", 2, 28000, 5000));
+        comparator.print(comparisons, System.out);
+
+        RegressionComparator.Comparison funder = comparisons.get(0);
+        Assert.assertThat(funder.getEndpoint(), equalTo("activities?funder"));
+        Assert.assertThat(funder.getVerdict(), equalTo(RegressionComparator.Verdict.REGRESSED));
+        Assert.assertThat(funder.getLow(), greaterThan(1.2));
+        Assert.assertThat(funder.getHigh(), lessThan(1.6));
+        Assert.assertThat(comparisons.get(1).getVerdict(), equalTo(RegressionComparator.Verdict.UNCHANGED));
+        Assert.assertThat(RegressionComparator.regressions(comparisons), equalTo(1));
+    }
+
+    @Test
+    public void testMannWhitney() {
+        Histogram a = new Histogram(3);
+        Histogram b = new Histogram(3);
+        for (long value : new long[]{10, 20, 30, 40, 50}) {
+            a.recordValue(value);
+            b.recordValue(value);
+        }
+        Assert.assertThat(RegressionComparator.mannWhitneyPValue(a, b), greaterThan(0.4));
+        Histogram slower = new Histogram(3);
+        for (long value : new long[]{60, 70, 80, 90, 100}) {
+            slower.recordValue(value);
+        }
+        // U = 25, the largest possible, z = (25 - 12.5 - 0.5) / sqrt(25 * 11 / 12)
+        Assert.assertThat(RegressionComparator.mannWhitneyPValue(a, slower),
+            equalTo(1 - RegressionComparator.normalCdf(12 / Math.sqrt(25.0 * 11 / 12))));
+        Assert.assertThat(RegressionComparator.mannWhitneyPValue(a, slower), lessThan(0.02));
+        Assert.assertThat(RegressionComparator.mannWhitneyPValue(slower, a), greaterThan(0.98));
+        Assert.assertThat(Math.abs(RegressionComparator.normalCdf(1.96) - 0.975), lessThan(1e-4));
+    }
+
+    @Test
+    public void testBaseline() {
+        long day = 24 * 3600 * 1000L;
+        List<ResultsStore.Run> runs = Arrays.asList(run("v1", 0, 1, 1), run("v2", 5 * day, 1, 1),
+            run("v3", 9 * day, 1, 1));
+        Assert.assertThat(RegressionComparator.baseline(runs, "previous").getLabel(), equalTo("v2"));
+        Assert.assertThat(RegressionComparator.baseline(runs, "7d").getLabel(), equalTo("v1"));
+        Assert.assertThat(RegressionComparator.baseline(runs, "v1").getLabel(), equalTo("v1"));
+        Assert.assertThat(RegressionComparator.baseline(runs, "30d"), nullValue());
+    }
+}
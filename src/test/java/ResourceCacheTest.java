@@ -0,0 +1,44 @@
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
+public class ResourceCacheTest {
+
+    @Test
+    public void loadsOnceAndMatchesTheResource() {
+        String content = APIProperties.getFileContent("sample.xml");
+        Assert.assertTrue(content.contains("<identifier identifierType=\"DOI\">"));
+        Assert.assertSame(content, APIProperties.getFileContent("sample.xml"));
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void viewsAreReadOnly() {
+        ResourceCache.bytes("sample.xml").put(0, (byte) 'x');
+    }
+
+    @Test
+    public void viewsHaveIndependentPositions() {
+        ByteBuffer first = ResourceCache.bytes("sample.xml");
+        first.get(new byte[10]);
+        ByteBuffer second = ResourceCache.bytes("sample.xml");
+        Assert.assertEquals(0, second.position());
+        Assert.assertEquals(ResourceCache.length("sample.xml"), second.remaining());
+    }
+
+    @Test
+    public void documentsAreCopies() {
+        Document first = ResourceCache.document("sample.xml");
+        first.getElementsByTagNameNS("*", "identifier").item(0).setTextContent("changed");
+        Document second = ResourceCache.document("sample.xml");
+        Assert.assertEquals("10.5072/00/56661486C5285",
+            second.getElementsByTagNameNS("*", "identifier").item(0).getTextContent());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingResource() {
+        ResourceCache.string("does-not-exist.xml");
+    }
+}
@@ -0,0 +1,74 @@
+import org.HdrHistogram.Histogram;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+
+public class ResultsStoreTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("results", ".bin");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private static ResultsStore.Run run(String label, long started, long micros) {
+        ResultsStore.Run run = new ResultsStore.Run(label, started, 60000);
+        Histogram histogram = new Histogram(3);
+        for (int i = 0; i < 100; i++) {
+            histogram.recordValue(micros + i);
+        }
+        run.add(new ResultsStore.Endpoint("activities?funder", histogram, 2, 1.5));
+        run.add(new ResultsStore.Endpoint("status.xml", histogram, 0, 1.5));
+        return run;
+    }
+
+    @Test
+    public void testAppendAndRead() throws Exception {
+        ResultsStore store = new ResultsStore(file);
+        store.append(run("abc123", 1000, 20000));
+        store.append(run("", 2000, 30000));
+
+        List<ResultsStore.Run> runs = store.read();
+        Assert.assertThat(runs.size(), equalTo(2));
+        Assert.assertThat(runs.get(0).getLabel(), equalTo("abc123"));
+        Assert.assertThat(runs.get(1).getStartedMillis(), equalTo(2000L));
+        ResultsStore.Endpoint funder = runs.get(1).getEndpoints().get("activities?funder");
+        Assert.assertThat(funder.getHistogram(), equalTo(run("", 2000, 30000).getEndpoints()
+            .get("activities?funder").getHistogram()));
+        Assert.assertThat(funder.getErrors(), equalTo(2L));
+        Assert.assertThat(funder.getThroughput(), equalTo(1.5));
+        // compressed histograms, not a value per request
+        Assert.assertTrue(file.length() < 2000);
+    }
+
+    @Test
+    public void testTornFrameIgnoredAndOverwritten() throws Exception {
+        ResultsStore store = new ResultsStore(file);
+        store.append(run("first", 1000, 20000));
+        long complete = file.length();
+        store.append(run("torn", 2000, 20000));
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(complete + 20);
+        raf.close();
+
+        Assert.assertThat(store.read().size(), equalTo(1));
+        store.append(run("third", 3000, 20000));
+        List<ResultsStore.Run> runs = store.read();
+        Assert.assertThat(runs.size(), equalTo(2));
+        Assert.assertThat(runs.get(1).getLabel(), equalTo("third"));
+    }
+}
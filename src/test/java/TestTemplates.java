@@ -0,0 +1,95 @@
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.TestClass;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns the @Test methods of the endpoint tests into {@link LoadDriver.Request}s, so the
+ * calls and assertions the functional tests already make can be replayed as load. Each
+ * class's @BeforeClass runs once when it is added and its @AfterClass on {@link #close()};
+ * every request runs the method on a new instance, without the test's rules. @Exclusive
+ * methods are left out, they change shared state and depend on running in order.
+ */
+public class TestTemplates {
+
+    private final Map<String, LoadDriver.Request> requests = new LinkedHashMap<String, LoadDriver.Request>();
+    private final List<TestClass> classes = new ArrayList<TestClass>();
+
+    /**
+     * @param templates comma separated test classes and Class.method names, e.g.
+     *                  ActivitiesAPITest,CMDEndPointTest.getServiceStatus
+     */
+    public static TestTemplates of(String templates) throws Throwable {
+        Map<String, List<String>> selected = new LinkedHashMap<String, List<String>>();
+        for (String template : templates.trim().split("\\s*,\\s*")) {
+            if (template.isEmpty()) {
+                continue;
+            }
+            int dot = template.indexOf('.');
+            String className = dot < 0 ? template : template.substring(0, dot);
+            if (!selected.containsKey(className)) {
+                selected.put(className, new ArrayList<String>());
+            }
+            if (dot >= 0) {
+                selected.get(className).add(template.substring(dot + 1));
+            }
+        }
+        TestTemplates result = new TestTemplates();
+        for (Map.Entry<String, List<String>> entry : selected.entrySet()) {
+            result.add(Class.forName(entry.getKey()), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * @param methods the methods to use, all of them when empty
+     */
+    public void add(Class<?> testClass, List<String> methods) throws Throwable {
+        final TestClass test = new TestClass(testClass);
+        for (FrameworkMethod before : test.getAnnotatedMethods(BeforeClass.class)) {
+            before.invokeExplosively(null);
+        }
+        classes.add(test);
+        for (final FrameworkMethod method : test.getAnnotatedMethods(Test.class)) {
+            if (method.getAnnotation(Exclusive.class) != null || method.getAnnotation(Ignore.class) != null
+                || (!methods.isEmpty() && !methods.contains(method.getName()))) {
+                continue;
+            }
+            requests.put(testClass.getSimpleName() + "." + method.getName(), new LoadDriver.Request() {
+                public void execute() throws Exception {
+                    try {
+                        method.getMethod().invoke(test.getOnlyConstructor().newInstance());
+                    } catch (InvocationTargetException e) {
+                        if (e.getCause() instanceof Error) {
+                            throw (Error) e.getCause();
+                        }
+                        throw (Exception) e.getCause();
+                    }
+                }
+            });
+        }
+    }
+
+    public Map<String, LoadDriver.Request> getRequests() {
+        return requests;
+    }
+
+    /**
+     * Runs the @AfterClass methods of every class added.
+     */
+    public void close() throws Throwable {
+        for (TestClass test : classes) {
+            for (FrameworkMethod after : test.getAnnotatedMethods(AfterClass.class)) {
+                after.invokeExplosively(null);
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+import org.apache.http.HttpHost;
+import org.apache.http.protocol.HttpContext;
+
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Opens connections in two steps, a plain TCP connect followed by the TLS layer,
+ * so that the connect and handshake time of each new connection can be reported
+ * separately. REST-assured re-registers its own https scheme on every request, so
+ * the split is done here rather than by wrapping the socket factory.
+ */
+@SuppressWarnings("deprecation")
+public class TimingConnectionOperator extends org.apache.http.impl.conn.DefaultClientConnectionOperator {
+
+    private final ConnectionStats stats;
+
+    public TimingConnectionOperator(org.apache.http.conn.scheme.SchemeRegistry schemes, ConnectionStats stats) {
+        super(schemes);
+        this.stats = stats;
+    }
+
+    @Override
+    public void openConnection(org.apache.http.conn.OperatedClientConnection conn, HttpHost target, InetAddress local,
+                               HttpContext context, org.apache.http.params.HttpParams params) throws IOException {
+        org.apache.http.conn.scheme.SchemeRegistry registry = (org.apache.http.conn.scheme.SchemeRegistry)
+            context.getAttribute(org.apache.http.client.protocol.ClientContext.SCHEME_REGISTRY);
+        if (registry == null) {
+            registry = schemeRegistry;
+        }
+        org.apache.http.conn.scheme.Scheme scheme = registry.getScheme(target.getSchemeName());
+        org.apache.http.conn.scheme.SchemeSocketFactory sf = scheme.getSchemeSocketFactory();
+
+        long start = System.nanoTime();
+        if (!(sf instanceof org.apache.http.conn.scheme.SchemeLayeredSocketFactory)) {
+            super.openConnection(conn, target, local, context, params);
+            connected(System.nanoTime() - start, 0, false, false);
+            return;
+        }
+
+        org.apache.http.conn.scheme.PlainSocketFactory plain =
+            org.apache.http.conn.scheme.PlainSocketFactory.getSocketFactory();
+        InetAddress[] addresses = resolveHostname(target.getHostName());
+        int port = scheme.resolvePort(target.getPort());
+        for (int i = 0; i < addresses.length; i++) {
+            boolean last = i == addresses.length - 1;
+
+            Socket sock = plain.createSocket(params);
+            conn.opening(sock, target);
+            InetSocketAddress remoteAddress = new org.apache.http.conn.HttpInetSocketAddress(target, addresses[i], port);
+            InetSocketAddress localAddress = local == null ? null : new InetSocketAddress(local, 0);
+            try {
+                sock = plain.connectSocket(sock, remoteAddress, localAddress, params);
+            } catch (ConnectException ex) {
+                if (last) {
+                    throw ex;
+                }
+                continue;
+            }
+            long tcpConnected = System.nanoTime();
+            long handshakeStarted = System.currentTimeMillis();
+
+            Socket layered = ((org.apache.http.conn.scheme.SchemeLayeredSocketFactory) sf)
+                .createLayeredSocket(sock, target.getHostName(), port, params);
+            // a resumed session was created by an earlier handshake; JSSE gives TLS 1.3 PSK
+            // resumptions a fresh session object, so those are only visible in the TLS time
+            boolean resumed = layered instanceof SSLSocket
+                && ((SSLSocket) layered).getSession().getCreationTime() < handshakeStarted;
+            connected(tcpConnected - start, System.nanoTime() - tcpConnected, true, resumed);
+
+            conn.opening(layered, target);
+            prepareSocket(layered, context, params);
+            conn.openCompleted(sf.isSecure(layered), params);
+            return;
+        }
+    }
+
+    private void connected(long connectNanos, long tlsNanos, boolean tls, boolean resumed) {
+        if (stats != null) {
+            stats.opened(tls, resumed, tlsNanos);
+        }
+        ExchangeTiming timing = ExchangeTiming.current();
+        if (timing != null) {
+            timing.connected(connectNanos, tlsNanos, resumed);
+        }
+    }
+}